@@ -0,0 +1,58 @@
+package com.simon.smile.auth;
+
+import com.simon.smile.user.AppUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a principal from a loaded user, which parses its roles or takes the pooled list, and reading its
+ * authorities, which every authorization decision does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppUserPrincipalBenchmark {
+
+    @Param({"ROLE_USER", "ROLE_ADMIN ROLE_USER"})
+    private String roles;
+
+    private AppUser user;
+
+    private AppUserPrincipal principal;
+
+    @Setup
+    public void setUp() {
+        user = new AppUser()
+                .setId(1)
+                .setUsername("admin")
+                .setRoles(roles)
+                .setEnabled(true);
+        principal = new AppUserPrincipal(user);
+    }
+
+    @Benchmark
+    public AppUserPrincipal create() {
+        return new AppUserPrincipal(user);
+    }
+
+    @Benchmark
+    public List<GrantedAuthority> getAuthorities() {
+        return principal.getAuthorities();
+    }
+}
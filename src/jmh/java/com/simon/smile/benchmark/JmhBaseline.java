@@ -0,0 +1,136 @@
+package com.simon.smile.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * Compares the results of a JMH run, {@code target/jmh-result.json}, to the baseline stored in
+ * {@code src/jmh/jmh-baseline.json} and fails the build when a benchmark got slower than its baseline by more than
+ * {@code jmh.tolerance}: a throughput dropped, or an average or sampled time grew.
+ * <p>
+ * Both files are in JMH's JSON format, benchmarks are matched by name and parameters. Benchmarks without a baseline
+ * are reported but don't fail. The comparison is written to {@code target/jmh-comparison.json}.
+ * <p>
+ * Run with {@code -Djmh.record=true} to store the results as the baseline instead, after an intended change or on a
+ * new reference machine. Results of benchmarks left out by {@code jmh.includes} keep their stored baseline.
+ */
+public final class JmhBaseline {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private JmhBaseline() {
+    }
+
+    /**
+     * @param args the result file, the baseline file, the tolerance as a fraction, e.g. 0.15, and the comparison file.
+     */
+    public static void main(String[] args) throws IOException {
+        Path resultFile = Path.of(args[0]);
+        Path baselineFile = Path.of(args[1]);
+        double tolerance = Double.parseDouble(args[2]);
+        Path comparisonFile = Path.of(args[3]);
+
+        Map<String, JsonNode> results = read(resultFile);
+        Map<String, JsonNode> baselines = Files.exists(baselineFile) ? read(baselineFile) : Map.of();
+        if (Boolean.getBoolean("jmh.record")) {
+            record(baselines, results, baselineFile);
+            return;
+        }
+        if (baselines.isEmpty()) {
+            // Every benchmark is reported without a baseline, nothing can regress.
+            System.out.printf("No baseline at %s, store one with -Djmh.record=true%n", baselineFile);
+        }
+
+        List<Comparison> comparisons = new ArrayList<>();
+        results.forEach((key, result) -> comparisons.add(compare(key, result, baselines.get(key), tolerance)));
+        Files.createDirectories(comparisonFile.toAbsolutePath().getParent());
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(comparisonFile.toFile(), comparisons);
+        print(comparisons, tolerance);
+
+        long regressions = comparisons.stream().filter(Comparison::regression).count();
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%, see %s%n", regressions, tolerance * 100, comparisonFile);
+            System.exit(1);
+        }
+    }
+
+    private static Comparison compare(String key, JsonNode result, JsonNode baseline, double tolerance) {
+        String mode = result.path("mode").asText();
+        double score = result.path("primaryMetric").path("score").asDouble();
+        String unit = result.path("primaryMetric").path("scoreUnit").asText();
+        if (baseline == null || !mode.equals(baseline.path("mode").asText())
+                || !unit.equals(baseline.path("primaryMetric").path("scoreUnit").asText())) {
+            return new Comparison(key, mode, unit, score, null, null, false);
+        }
+        double baselineScore = baseline.path("primaryMetric").path("score").asDouble();
+        double change = score / baselineScore - 1;
+        // Throughput is better when higher, the other modes measure time.
+        boolean regression = "thrpt".equals(mode) ? change < -tolerance : change > tolerance;
+        return new Comparison(key, mode, unit, score, baselineScore, change, regression);
+    }
+
+    private static void print(List<Comparison> comparisons, double tolerance) {
+        System.out.printf("%nComparison to the baseline, tolerance %.0f%%:%n", tolerance * 100);
+        for (Comparison comparison : comparisons) {
+            if (comparison.baseline() == null) {
+                System.out.printf("  %-100s %12.3f %-8s no baseline%n", comparison.benchmark(), comparison.score(), comparison.unit());
+            } else {
+                System.out.printf("  %-100s %12.3f %-8s %+7.1f%%%s%n", comparison.benchmark(), comparison.score(), comparison.unit(),
+                        comparison.change() * 100, comparison.regression() ? "  REGRESSION" : "");
+            }
+        }
+    }
+
+    private static void record(Map<String, JsonNode> baselines, Map<String, JsonNode> results, Path baselineFile) throws IOException {
+        Map<String, JsonNode> recorded = new TreeMap<>(baselines);
+        recorded.putAll(results);
+        ArrayNode array = OBJECT_MAPPER.createArrayNode();
+        recorded.values().forEach(array::add);
+        Files.createDirectories(baselineFile.toAbsolutePath().getParent());
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(baselineFile.toFile(), array);
+        System.out.printf("Stored %d result(s) as the baseline in %s%n", results.size(), baselineFile);
+    }
+
+    private static Map<String, JsonNode> read(Path file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : OBJECT_MAPPER.readTree(file.toFile())) {
+            results.put(key(result), result);
+        }
+        return results;
+    }
+
+    /**
+     * E.g. {@code com.simon.smile.common.ResultSerializationBenchmark.serialize[users=100]}.
+     */
+    private static String key(JsonNode result) {
+        String benchmark = result.path("benchmark").asText();
+        if (!(result.get("params") instanceof ObjectNode params) || params.isEmpty()) {
+            return benchmark;
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        params.fields().forEachRemaining(param -> sorted.put(param.getKey(), param.getValue().asText()));
+        StringJoiner joiner = new StringJoiner(",", "[", "]");
+        sorted.forEach((name, value) -> joiner.add(name + "=" + value));
+        return benchmark + joiner;
+    }
+
+    /**
+     * @param baseline the baseline score, {@code null} when the benchmark has none.
+     * @param change   the relative change of the score, 0.1 is 10% higher than the baseline.
+     */
+    record Comparison(String benchmark, String mode, String unit, double score, Double baseline, Double change,
+                      boolean regression) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.simon.smile.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simon.smile.user.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Writing the {@link Result} of a user listing, from a single user to a large page, with an {@link ObjectMapper}
+ * configured like the one Spring Boot gives the message converters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSerializationBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int users;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private Result result;
+
+    @Setup
+    public void setUp() {
+        List<UserDto> userDtos = IntStream.rangeClosed(1, users)
+                .mapToObj(id -> new UserDto(id, "user" + id, "User " + id, "user" + id + "@smile.com", "ROLE_USER", true))
+                .toList();
+        result = Result.success("Find user(s) success").setData(userDtos);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(result);
+    }
+}
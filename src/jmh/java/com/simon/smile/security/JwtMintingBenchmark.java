@@ -0,0 +1,133 @@
+package com.simon.smile.security;
+
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import java.security.KeyPair;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares minting an access token through the {@link JwtEncoder} API, with a {@link JwtClaimsSet} and a joined
+ * authorities string, to the {@link JwtClaimsWriter} path {@link JwtProvider} uses. {@code nimbus} is the baseline,
+ * Spring Security's {@link NimbusJwtEncoder} selecting the key from a JWK set for every token; it can't sign EdDSA.
+ * Runs on 4 threads, like logins arriving together at shift start.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtMintingBenchmark {
+
+    private static final List<GrantedAuthority> AUTHORITIES = AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_USER");
+
+    @State(Scope.Benchmark)
+    public static class SigningKey {
+
+        @Param({"RS256", "ES256", "EdDSA"})
+        private JwtSigningAlgorithm algorithm;
+
+        private SigningKeyJwtEncoder encoder;
+
+        @Setup
+        public void setUp() throws Exception {
+            KeyPair keyPair = algorithm.generateKeyPair();
+            encoder = new SigningKeyJwtEncoder(algorithm, keyPair.getPrivate(), UUID.randomUUID().toString());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class NimbusKey {
+
+        @Param({"RS256", "ES256"})
+        private JwtSigningAlgorithm algorithm;
+
+        private NimbusJwtEncoder encoder;
+
+        // Without one, NimbusJwtEncoder looks for an RS256 key.
+        private JwsHeader header;
+
+        @Setup
+        public void setUp() throws Exception {
+            KeyPair keyPair = algorithm.generateKeyPair();
+            String keyId = UUID.randomUUID().toString();
+            JWK jwk = algorithm == JwtSigningAlgorithm.RS256
+                    ? new RSAKey.Builder((RSAPublicKey) keyPair.getPublic()).privateKey(keyPair.getPrivate()).keyID(keyId).build()
+                    : new ECKey.Builder(Curve.P_256, (ECPublicKey) keyPair.getPublic()).privateKey(keyPair.getPrivate()).keyID(keyId).build();
+            encoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(jwk)));
+            header = JwsHeader.with(SignatureAlgorithm.from(algorithm.name())).build();
+        }
+    }
+
+    @Benchmark
+    public String nimbus(NimbusKey key) {
+        return key.encoder.encode(JwtEncoderParameters.from(key.header, claimsSet())).getTokenValue();
+    }
+
+    @Benchmark
+    public String encode(SigningKey key) {
+        return key.encoder.encode(JwtEncoderParameters.from(claimsSet())).getTokenValue();
+    }
+
+    @Benchmark
+    public String mint(SigningKey key) {
+        long now = Instant.now().getEpochSecond();
+        JwtClaimsWriter claims = new JwtClaimsWriter()
+                .claim("iss", "self")
+                .claim("iat", now)
+                .claim("exp", now + 7200)
+                .claim("sub", "admin")
+                .claim("jti", UUID.randomUUID().toString())
+                .claim(JwtProvider.TOKEN_USE, JwtProvider.ACCESS)
+                .claim("authorities", AUTHORITIES);
+        return key.encoder.sign(claims);
+    }
+
+    private static JwtClaimsSet claimsSet() {
+        Instant now = Instant.now();
+        String joinedAuthorities = AUTHORITIES.stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(" "));
+        return JwtClaimsSet.builder()
+                .issuer("self")
+                .issuedAt(now)
+                .expiresAt(now.plus(2, ChronoUnit.HOURS))
+                .subject("admin")
+                .id(UUID.randomUUID().toString())
+                .claim(JwtProvider.TOKEN_USE, JwtProvider.ACCESS)
+                .claim("authorities", joinedAuthorities)
+                .build();
+    }
+}
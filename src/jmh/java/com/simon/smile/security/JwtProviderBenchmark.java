@@ -0,0 +1,98 @@
+package com.simon.smile.security;
+
+import com.simon.smile.auth.AppUserPrincipal;
+import com.simon.smile.user.AppUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minting an access token at login through {@link JwtProvider#createToken}, with the user snapshot claim, and decoding
+ * it on every request, by the verifying decoder alone and through the token cache as {@link SecurityConfiguration}
+ * wires them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtProviderBenchmark {
+
+    @Param({"RS256", "ES256", "EdDSA"})
+    private JwtSigningAlgorithm algorithm;
+
+    private JwtProvider jwtProvider;
+
+    private Authentication authentication;
+
+    private JwtDecoder verifyingDecoder;
+
+    private JwtDecoder cachingDecoder;
+
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        SigningKeyStore signingKeyStore = new SigningKeyStore(algorithm, "", Duration.ofDays(7), Duration.ofMinutes(1), 2, 168);
+        // No token is revoked, the denylist only answers from its filter.
+        TokenDenylist tokenDenylist = new TokenDenylist(Mockito.mock(RevokedTokenRepository.class), 10_000, 0.001);
+        jwtProvider = new JwtProvider(signingKeyStore, tokenDenylist, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtProvider, "expireHours", 2);
+        ReflectionTestUtils.setField(jwtProvider, "refreshExpireHours", 168);
+
+        AppUserPrincipal principal = new AppUserPrincipal(new AppUser()
+                .setId(1)
+                .setUsername("admin")
+                .setNickname("Administrator")
+                .setEmail("admin@smile.com")
+                .setRoles("ROLE_ADMIN ROLE_USER")
+                .setEnabled(true)
+                .setProfileVersion(0));
+        authentication = UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+
+        NimbusJwtDecoder nimbusJwtDecoder = JwtSigningAlgorithm.createDecoder(signingKeyStore);
+        nimbusJwtDecoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(JwtValidators.createDefault(),
+                new JwtClaimValidator<String>(JwtProvider.TOKEN_USE, tokenUse -> !JwtProvider.REFRESH.equals(tokenUse))));
+        verifyingDecoder = nimbusJwtDecoder;
+        cachingDecoder = new RevocationCheckingJwtDecoder(new CachingJwtDecoder(nimbusJwtDecoder, 10_000), tokenDenylist);
+        token = jwtProvider.createToken(authentication);
+    }
+
+    @Benchmark
+    public String createToken() {
+        return jwtProvider.createToken(authentication);
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        return verifyingDecoder.decode(token);
+    }
+
+    @Benchmark
+    public Jwt decodeCached() {
+        return cachingDecoder.decode(token);
+    }
+}
@@ -0,0 +1,74 @@
+package com.simon.smile.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing a password at registration and matching it at login with BCrypt at the strength the application would
+ * calibrate on this machine, from the {@code password-hashing} settings of the {@code application.yaml}. System
+ * properties of the same names override them, e.g. {@code -Dpassword-hashing.minimum-strength=12}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "PassW0rd";
+
+    private BCryptPasswordEncoder passwordEncoder;
+
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        Properties properties = applicationProperties();
+        Duration latencyBudget = Duration.parse(property(properties, "password-hashing.latency-budget"));
+        int minimumStrength = Integer.parseInt(property(properties, "password-hashing.minimum-strength"));
+        int strength = PasswordHashingCalibration.bcryptStrength(latencyBudget, minimumStrength);
+        System.out.printf("%nBCrypt strength: %d%n", strength);
+        passwordEncoder = new BCryptPasswordEncoder(strength);
+        hash = passwordEncoder.encode(PASSWORD);
+    }
+
+    private static Properties applicationProperties() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yaml"));
+        return yaml.getObject();
+    }
+
+    private static String property(Properties properties, String name) {
+        String value = System.getProperty(name, properties.getProperty(name));
+        if (value == null) {
+            throw new IllegalStateException(name + " is missing from the application.yaml");
+        }
+        return value;
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(PASSWORD, hash);
+    }
+}
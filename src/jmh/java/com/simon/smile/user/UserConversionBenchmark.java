@@ -0,0 +1,58 @@
+package com.simon.smile.user;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a user for a response and validating the password of a new or updated user, outside of a request so
+ * no {@link com.simon.smile.system.ServerTiming} is recorded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserConversionBenchmark {
+
+    /**
+     * A strong password, and one without an upper case letter that is rejected with an exception.
+     */
+    @Param({"PassW0rd", "passw0rd"})
+    private String password;
+
+    private final UserToUserDtoConverter converter = new UserToUserDtoConverter();
+
+    private final AppUser user = new AppUser()
+            .setId(42)
+            .setUsername("user42")
+            .setNickname("User 42")
+            .setEmail("user42@smile.com")
+            .setRoles("ROLE_USER")
+            .setEnabled(true);
+
+    @Benchmark
+    public UserDto convert() {
+        return converter.convert(user);
+    }
+
+    @Benchmark
+    public boolean validatePassword() {
+        try {
+            UserController.validatePassword(password);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.simon.smile.user.address;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping an address to its response and a request to the entity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddressMapperBenchmark {
+
+    private final AddressMapper addressMapper = new AddressMapper();
+
+    private final Address address = new Address()
+            .setId(7)
+            .setFullAddress("No. 88 Century Avenue, Pudong, Shanghai")
+            .setPhone("13800138000")
+            .setDefault(true);
+
+    private final AddressDto addressDto = new AddressDto(7, "No. 88 Century Avenue, Pudong, Shanghai", "13800138000", true);
+
+    @Benchmark
+    public AddressDto toDto() {
+        return addressMapper.toDto(address);
+    }
+
+    @Benchmark
+    public Address toEntity() {
+        return addressMapper.toEntity(addressDto);
+    }
+}
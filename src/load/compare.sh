@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Runs the load test on two commits and compares the second to the first:
+#
+#   src/load/compare.sh <base> <head> [-Dload.concurrency=1,16 ...]
+#
+# Each commit is checked out in a worktree under target/load-compare, both run the load test sources of this tree.
+# The commits need the `load` Maven profile. The reports end up in target/load-compare/reports/{base,head}, the
+# comparison in the head report.
+set -euo pipefail
+
+if [ $# -lt 2 ]; then
+  echo "Usage: $0 <base commit> <head commit> [maven arguments]" >&2
+  exit 2
+fi
+base=$1
+head=$2
+shift 2
+maven_args=("$@")
+
+root=$(git rev-parse --show-toplevel)
+work="$root/target/load-compare"
+mkdir -p "$work/reports"
+
+run() {
+  local commit=$1 name=$2 baseline=$3
+  local dir="$work/$name"
+  git -C "$root" worktree remove --force "$dir" 2>/dev/null || true
+  git -C "$root" worktree add --detach "$dir" "$commit"
+  rm -rf "$dir/src/load"
+  cp -R "$root/src/load" "$dir/src/load"
+  local args=(-B -Pload verify -DskipTests
+    "-Dload.label=$commit ($(git -C "$root" rev-parse --short "$commit"))"
+    "-Dload.report-dir=$work/reports/$name")
+  if [ -n "$baseline" ]; then
+    args+=("-Dload.baseline=$baseline")
+  fi
+  # mvnw is checked in without the executable bit.
+  (cd "$dir" && sh ./mvnw "${args[@]}" "${maven_args[@]}")
+  git -C "$root" worktree remove --force "$dir"
+  if [ ! -f "$work/reports/$name/load-report.json" ]; then
+    echo "No report for $commit, does it have the load profile?" >&2
+    exit 1
+  fi
+}
+
+rm -rf "$work/reports/base" "$work/reports/head"
+run "$base" base ""
+run "$head" head "$work/reports/base/load-report.json"
+echo "Comparison: $work/reports/head/load-report.html"
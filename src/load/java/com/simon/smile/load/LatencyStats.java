@@ -0,0 +1,63 @@
+package com.simon.smile.load;
+
+import java.util.Arrays;
+
+/**
+ * Collects the latencies of requests and summarizes them into percentiles, all of them are kept so the percentiles
+ * are exact.
+ */
+final class LatencyStats {
+
+    private long[] latencies = new long[1024];
+
+    private int count;
+
+    private int errors;
+
+    synchronized void record(long nanos, boolean error) {
+        if (this.count == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+        }
+        this.latencies[this.count++] = nanos;
+        if (error) {
+            this.errors++;
+        }
+    }
+
+    synchronized Summary summary() {
+        long[] sorted = Arrays.copyOf(this.latencies, this.count);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long latency : sorted) {
+            total += latency;
+        }
+        return new Summary(this.count,
+                this.count == 0 ? 0 : (double) this.errors / this.count,
+                millis(this.count == 0 ? 0 : total / this.count),
+                millis(percentile(sorted, 0.5)),
+                millis(percentile(sorted, 0.9)),
+                millis(percentile(sorted, 0.99)),
+                millis(percentile(sorted, 0.999)),
+                millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        // Nearest rank.
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * @param errorRate the fraction of requests failing with an exception or a 4xx or 5xx status.
+     */
+    record Summary(int count, double errorRate, double meanMillis, double p50Millis, double p90Millis,
+                   double p99Millis, double p999Millis, double maxMillis) {
+    }
+}
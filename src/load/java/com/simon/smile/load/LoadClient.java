@@ -0,0 +1,127 @@
+package com.simon.smile.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends the requests of the scenarios and records their latencies, in total and per route, while recording is on.
+ * Shared by all workers.
+ */
+final class LoadClient {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final URI baseUri;
+
+    private final String adminAuthorization;
+
+    private volatile Recording recording;
+
+    LoadClient(URI baseUri, String adminUsername, String adminPassword) throws IOException, InterruptedException {
+        this.baseUri = baseUri;
+        JsonNode login = send("POST /login", post("/api/v1/login", null)
+                .header("Authorization", basic(adminUsername, adminPassword)));
+        if (login == null) {
+            throw new IllegalStateException("Login of " + adminUsername + " failed");
+        }
+        this.adminAuthorization = "Bearer " + login.path("data").path("token").asText();
+    }
+
+    /**
+     * Records the requests sent from now on, until {@link #stopRecording()}.
+     */
+    void startRecording() {
+        this.recording = new Recording(new LatencyStats(), new ConcurrentHashMap<>());
+    }
+
+    Recording stopRecording() {
+        Recording stopped = this.recording;
+        this.recording = null;
+        return stopped;
+    }
+
+    HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(this.baseUri.resolve(path)).GET();
+    }
+
+    HttpRequest.Builder post(String path, Object body) throws IOException {
+        return withBody(path, "POST", body);
+    }
+
+    HttpRequest.Builder put(String path, Object body) throws IOException {
+        return withBody(path, "PUT", body);
+    }
+
+    HttpRequest.Builder delete(String path) {
+        return HttpRequest.newBuilder(this.baseUri.resolve(path)).DELETE();
+    }
+
+    /**
+     * Sends the request as the admin.
+     */
+    JsonNode sendAsAdmin(String route, HttpRequest.Builder request) throws IOException, InterruptedException {
+        return send(route, request.header("Authorization", this.adminAuthorization));
+    }
+
+    /**
+     * @param route the name the request is recorded under, e.g. {@code GET /users/{id}}.
+     * @return the response body, {@code null} when the request failed.
+     */
+    JsonNode send(String route, HttpRequest.Builder request) throws IOException, InterruptedException {
+        Recording current = this.recording;
+        long startTime = System.nanoTime();
+        HttpResponse<byte[]> response;
+        try {
+            response = this.httpClient.send(request.timeout(Duration.ofSeconds(30)).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException ex) {
+            if (current != null) {
+                current.record(route, System.nanoTime() - startTime, true);
+            }
+            return null;
+        }
+        boolean error = response.statusCode() >= 400;
+        if (current != null) {
+            current.record(route, System.nanoTime() - startTime, error);
+        }
+        return error ? null : this.objectMapper.readTree(response.body());
+    }
+
+    static String basic(String username, String password) {
+        String credentials = username + ":" + password;
+        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HttpRequest.Builder withBody(String path, String method, Object body) throws IOException {
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(this.objectMapper.writeValueAsBytes(body));
+        return HttpRequest.newBuilder(this.baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .method(method, publisher);
+    }
+
+    record Recording(LatencyStats total, Map<String, LatencyStats> routes) {
+
+        private void record(String route, long nanos, boolean error) {
+            this.total.record(nanos, error);
+            this.routes.computeIfAbsent(route, key -> new LatencyStats()).record(nanos, error);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.simon.smile.load;
+
+import com.simon.smile.user.AppUser;
+import com.simon.smile.user.Roles;
+import com.simon.smile.user.UserRepository;
+import com.simon.smile.user.address.Address;
+import com.simon.smile.user.address.AddressRepository;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The users and addresses the scenarios work on, written straight to the repositories of a {@link LocalInstance}.
+ * <p>
+ * All users share one password hash, hashing it for every user would take longer than the load test.
+ *
+ * @param userIds the IDs of the seeded users, logging in as {@code load<index>} with {@link #PASSWORD}.
+ */
+record LoadData(List<Integer> userIds) {
+
+    static final String PASSWORD = "PassW0rd";
+
+    static LoadData seed(LocalInstance instance, int users, int addressesPerUser) {
+        String hash = instance.getBean(PasswordEncoder.class).encode(PASSWORD);
+        List<AppUser> appUsers = IntStream.range(0, users)
+                .mapToObj(index -> new AppUser()
+                        .setUsername(username(index))
+                        .setNickname("Load User " + index)
+                        .setEmail(username(index) + "@load.smile.com")
+                        .setPassword(hash)
+                        .setRoles(Roles.ROLE_USER.getRole())
+                        .setEnabled(true))
+                .toList();
+        List<AppUser> saved = instance.getBean(UserRepository.class).saveAll(appUsers);
+        List<Address> addresses = new ArrayList<>(users * addressesPerUser);
+        for (AppUser appUser : saved) {
+            for (int index = 0; index < addressesPerUser; index++) {
+                addresses.add(new Address()
+                        .setFullAddress(index + 1 + " Load Street, " + appUser.getUsername())
+                        .setPhone("1380013" + String.format("%04d", index))
+                        .setDefault(index == 0)
+                        .setOwner(appUser));
+            }
+        }
+        instance.getBean(AddressRepository.class).saveAll(addresses);
+        return new LoadData(saved.stream().map(AppUser::getId).toList());
+    }
+
+    static String username(int index) {
+        return "load" + index;
+    }
+}
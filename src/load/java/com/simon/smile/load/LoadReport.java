@@ -0,0 +1,134 @@
+package com.simon.smile.load;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The results of a load test, written as {@code load-report.json} to be compared later and as
+ * {@code load-report.html} to be read.
+ *
+ * @param label    what was measured, e.g. the commit.
+ * @param baseline the label of the report this one is compared to, {@code null} when it isn't.
+ * @param changes  the changes against the baseline, per scenario and concurrency both reports ran.
+ */
+record LoadReport(String label, Instant startedAt, Settings settings, List<Run> runs, String baseline,
+                  List<Change> changes) {
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .build();
+
+    static LoadReport read(Path file) throws IOException {
+        return OBJECT_MAPPER.readValue(file.toFile(), LoadReport.class);
+    }
+
+    /**
+     * Relative changes are positive when the value grew, a throughput change of -0.1 is 10% fewer requests per second.
+     */
+    LoadReport compareTo(LoadReport baselineReport) {
+        List<Change> comparison = new ArrayList<>();
+        for (Run run : this.runs) {
+            baselineReport.runs.stream()
+                    .filter(baselineRun -> baselineRun.scenario().equals(run.scenario()) && baselineRun.concurrency() == run.concurrency())
+                    .findFirst()
+                    .ifPresent(baselineRun -> comparison.add(new Change(run.scenario(), run.concurrency(),
+                            change(run.throughputPerSecond(), baselineRun.throughputPerSecond()),
+                            change(run.total().p50Millis(), baselineRun.total().p50Millis()),
+                            change(run.total().p99Millis(), baselineRun.total().p99Millis()),
+                            baselineRun.total().errorRate(), run.total().errorRate())));
+        }
+        return new LoadReport(this.label, this.startedAt, this.settings, this.runs, baselineReport.label, comparison);
+    }
+
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        OBJECT_MAPPER.writeValue(directory.resolve("load-report.json").toFile(), this);
+        Files.writeString(directory.resolve("load-report.html"), html(), StandardCharsets.UTF_8);
+    }
+
+    private String html() {
+        StringBuilder html = new StringBuilder()
+                .append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n")
+                .append("<title>Load test ").append(escape(this.label)).append("</title>\n")
+                .append("<style>body{font-family:sans-serif;margin:2em}table{border-collapse:collapse;margin-bottom:2em}")
+                .append("th,td{border:1px solid #ccc;padding:4px 8px;text-align:right}th:first-child,td:first-child{text-align:left}")
+                .append(".worse{color:#b00}.better{color:#080}</style>\n</head>\n<body>\n")
+                .append("<h1>Load test ").append(escape(this.label)).append("</h1>\n")
+                .append(String.format(Locale.ROOT, "<p>Started %s, %d users with %d addresses each, %.0f s warm-up and %.0f s per run.</p>%n",
+                        this.startedAt, this.settings.users(), this.settings.addressesPerUser(),
+                        this.settings.warmupSeconds(), this.settings.durationSeconds()));
+        if (this.baseline != null) {
+            html.append("<h2>Compared to ").append(escape(this.baseline)).append("</h2>\n<table>\n")
+                    .append("<tr><th>Scenario</th><th>Concurrency</th><th>Throughput</th><th>p50</th><th>p99</th><th>Errors</th></tr>\n");
+            for (Change change : this.changes) {
+                html.append("<tr><td>").append(change.scenario()).append("</td><td>").append(change.concurrency()).append("</td>")
+                        .append(changeCell(change.throughputChange(), true))
+                        .append(changeCell(change.p50Change(), false))
+                        .append(changeCell(change.p99Change(), false))
+                        .append(String.format(Locale.ROOT, "<td>%.2f%% &rarr; %.2f%%</td></tr>%n",
+                                change.baselineErrorRate() * 100, change.errorRate() * 100));
+            }
+            html.append("</table>\n");
+        }
+        for (Run run : this.runs) {
+            html.append(String.format(Locale.ROOT, "<h2>%s, %d concurrent</h2>%n<p>%.1f requests/s</p>%n",
+                            run.scenario(), run.concurrency(), run.throughputPerSecond()))
+                    .append("<table>\n<tr><th>Route</th><th>Requests</th><th>Errors</th><th>Mean ms</th><th>p50 ms</th>")
+                    .append("<th>p90 ms</th><th>p99 ms</th><th>p99.9 ms</th><th>Max ms</th></tr>\n")
+                    .append(summaryRow("All", run.total()));
+            run.routes().forEach((route, summary) -> html.append(summaryRow(route, summary)));
+            html.append("</table>\n");
+        }
+        return html.append("</body>\n</html>\n").toString();
+    }
+
+    private static String summaryRow(String name, LatencyStats.Summary summary) {
+        return String.format(Locale.ROOT, "<tr><td>%s</td><td>%d</td><td>%.2f%%</td><td>%.2f</td><td>%.2f</td><td>%.2f</td>"
+                        + "<td>%.2f</td><td>%.2f</td><td>%.2f</td></tr>%n",
+                escape(name), summary.count(), summary.errorRate() * 100, summary.meanMillis(), summary.p50Millis(),
+                summary.p90Millis(), summary.p99Millis(), summary.p999Millis(), summary.maxMillis());
+    }
+
+    private static String changeCell(double change, boolean higherIsBetter) {
+        String direction = change == 0 ? "" : (change > 0) == higherIsBetter ? " class=\"better\"" : " class=\"worse\"";
+        return String.format(Locale.ROOT, "<td%s>%+.1f%%</td>", direction, change * 100);
+    }
+
+    private static double change(double value, double baselineValue) {
+        return baselineValue == 0 ? 0 : value / baselineValue - 1;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    record Settings(int users, int addressesPerUser, double warmupSeconds, double durationSeconds,
+                    List<Integer> concurrency) {
+    }
+
+    /**
+     * One scenario at one concurrency.
+     */
+    record Run(String scenario, int concurrency, double durationSeconds, double throughputPerSecond,
+               LatencyStats.Summary total, Map<String, LatencyStats.Summary> routes) {
+    }
+
+    record Change(String scenario, int concurrency, double throughputChange, double p50Change, double p99Change,
+                  double baselineErrorRate, double errorRate) {
+    }
+}
@@ -0,0 +1,137 @@
+package com.simon.smile.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * What each worker of a load test does in a loop, one iteration after the other.
+ */
+enum LoadScenario {
+
+    /**
+     * Seeded users logging in with Basic credentials, all at once as at the start of a shift. Bound by BCrypt.
+     */
+    LOGIN("login") {
+        @Override
+        void iterate(LoadClient client, LoadData data, ThreadLocalRandom random) throws IOException, InterruptedException {
+            login(client, data, random);
+        }
+    },
+
+    /**
+     * The admin listing all users.
+     */
+    LIST_USERS("list-users") {
+        @Override
+        void iterate(LoadClient client, LoadData data, ThreadLocalRandom random) throws IOException, InterruptedException {
+            client.sendAsAdmin("GET /users", client.get("/api/v1/users"));
+        }
+    },
+
+    /**
+     * The admin filtering users by part of the username, by role and by nickname of enabled users in turn.
+     */
+    FILTER_USERS("filter-users") {
+        @Override
+        void iterate(LoadClient client, LoadData data, ThreadLocalRandom random) throws IOException, InterruptedException {
+            filter(client, data, random);
+        }
+    },
+
+    /**
+     * Creating, reading, updating, listing and deleting an address of a random user.
+     */
+    ADDRESS_CRUD("address-crud") {
+        @Override
+        void iterate(LoadClient client, LoadData data, ThreadLocalRandom random) throws IOException, InterruptedException {
+            int userId = randomUser(data, random);
+            JsonNode created = client.sendAsAdmin("POST /users/{id}/address",
+                    client.post("/api/v1/users/" + userId + "/address", address("1 Load Street", true)));
+            if (created == null) {
+                return;
+            }
+            int addressId = created.path("data").path("id").asInt();
+            client.sendAsAdmin("GET /users/address/{id}", client.get("/api/v1/users/address/" + addressId));
+            client.sendAsAdmin("PUT /users/{id}/address/{id}",
+                    client.put("/api/v1/users/" + userId + "/address/" + addressId, address("2 Load Street", false)));
+            client.sendAsAdmin("GET /users/{id}/address", client.get("/api/v1/users/" + userId + "/address"));
+            client.sendAsAdmin("DELETE /users/address/{id}", client.delete("/api/v1/users/address/" + addressId));
+        }
+    },
+
+    /**
+     * Mostly reads, some logins and address changes.
+     */
+    MIXED("mixed") {
+        @Override
+        void iterate(LoadClient client, LoadData data, ThreadLocalRandom random) throws IOException, InterruptedException {
+            int dice = random.nextInt(100);
+            if (dice < 5) {
+                login(client, data, random);
+            } else if (dice < 15) {
+                LIST_USERS.iterate(client, data, random);
+            } else if (dice < 30) {
+                filter(client, data, random);
+            } else if (dice < 55) {
+                client.sendAsAdmin("GET /users/{id}", client.get("/api/v1/users/" + randomUser(data, random)));
+            } else if (dice < 90) {
+                client.sendAsAdmin("GET /users/{id}/address", client.get("/api/v1/users/" + randomUser(data, random) + "/address"));
+            } else {
+                ADDRESS_CRUD.iterate(client, data, random);
+            }
+        }
+    };
+
+    private final String id;
+
+    LoadScenario(String id) {
+        this.id = id;
+    }
+
+    String id() {
+        return this.id;
+    }
+
+    abstract void iterate(LoadClient client, LoadData data, ThreadLocalRandom random) throws IOException, InterruptedException;
+
+    static LoadScenario of(String id) {
+        for (LoadScenario scenario : values()) {
+            if (scenario.id.equals(id)) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario " + id + ", use one of " + List.of(values()));
+    }
+
+    @Override
+    public String toString() {
+        return this.id;
+    }
+
+    private static void login(LoadClient client, LoadData data, ThreadLocalRandom random) throws IOException, InterruptedException {
+        String username = LoadData.username(random.nextInt(data.userIds().size()));
+        client.send("POST /login", client.post("/api/v1/login", null)
+                .header("Authorization", LoadClient.basic(username, LoadData.PASSWORD)));
+    }
+
+    private static void filter(LoadClient client, LoadData data, ThreadLocalRandom random) throws IOException, InterruptedException {
+        Map<String, Object> example = switch (random.nextInt(3)) {
+            case 0 -> Map.of("username", String.valueOf(random.nextInt(100)));
+            case 1 -> Map.of("roles", "ROLE_USER");
+            default -> Map.of("nickname", "user " + random.nextInt(10), "enabled", true);
+        };
+        client.sendAsAdmin("POST /users/filter", client.post("/api/v1/users/filter", example));
+    }
+
+    private static int randomUser(LoadData data, ThreadLocalRandom random) {
+        return data.userIds().get(random.nextInt(data.userIds().size()));
+    }
+
+    private static Map<String, Object> address(String fullAddress, boolean isDefault) {
+        return Map.of("fullAddress", fullAddress, "phone", "13800138000", "isDefault", isDefault);
+    }
+}
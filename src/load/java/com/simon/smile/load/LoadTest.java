@@ -0,0 +1,126 @@
+package com.simon.smile.load;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the whole stack, from Tomcat through the security filter chain, the {@code LogFilter}, JPA and Jackson,
+ * on the application started here on the in-memory H2 database of the test configuration.
+ * <p>
+ * After seeding users and addresses, every scenario runs at every concurrency: that many workers send requests one
+ * after the other, first for the warm-up and then, recorded, for the duration. Throughput and latency percentiles,
+ * in total and per route, are written to {@code load-report.json} and {@code load-report.html}.
+ * <p>
+ * Run with {@code ./mvnw -Pload verify -DskipTests}, configured by system properties:
+ * <ul>
+ *     <li>{@code load.scenarios}: the {@link LoadScenario}s, e.g. {@code login,list-users,filter-users,address-crud,mixed}.</li>
+ *     <li>{@code load.concurrency}: the numbers of workers, e.g. {@code 1,8,32}.</li>
+ *     <li>{@code load.warmup} and {@code load.duration}: e.g. {@code PT10S} and {@code PT30S} per run.</li>
+ *     <li>{@code load.users} and {@code load.addresses-per-user}: the seeded data.</li>
+ *     <li>{@code load.label}: what is measured, e.g. the commit.</li>
+ *     <li>{@code load.baseline}: a {@code load-report.json} of an earlier run to compare to.</li>
+ *     <li>{@code load.report-dir}: where the reports are written.</li>
+ * </ul>
+ * {@code src/load/compare.sh} runs this for two commits and compares them.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<LoadScenario> scenarios = Arrays.stream(System.getProperty("load.scenarios", "login,list-users,filter-users,address-crud,mixed").split(","))
+                .map(String::trim)
+                .map(LoadScenario::of)
+                .toList();
+        List<Integer> concurrencyLevels = Arrays.stream(System.getProperty("load.concurrency", "1,8,32").split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .toList();
+        Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT10S"));
+        Duration duration = Duration.parse(System.getProperty("load.duration", "PT30S"));
+        int users = Integer.getInteger("load.users", 1000);
+        int addressesPerUser = Integer.getInteger("load.addresses-per-user", 3);
+        String label = System.getProperty("load.label", "current");
+        String baseline = System.getProperty("load.baseline", "");
+        Path reportDirectory = Path.of(System.getProperty("load.report-dir", "target/load"));
+
+        Instant startedAt = Instant.now();
+        List<LoadReport.Run> runs = new ArrayList<>();
+        // Measures the stack, not the quotas, which would reject most of the requests of the admin.
+        try (LocalInstance instance = LocalInstance.start("api.quota.enabled=false")) {
+            LoadData data = LoadData.seed(instance, users, addressesPerUser);
+            LoadClient client = new LoadClient(instance.baseUri(), "admin", LoadData.PASSWORD);
+            for (LoadScenario scenario : scenarios) {
+                for (int concurrency : concurrencyLevels) {
+                    System.out.printf("%s with %d workers...%n", scenario, concurrency);
+                    run(scenario, concurrency, client, data, warmup);
+                    client.startRecording();
+                    double seconds = run(scenario, concurrency, client, data, duration);
+                    LoadReport.Run run = toRun(scenario, concurrency, seconds, client.stopRecording());
+                    System.out.printf("  %.1f requests/s, p50 %.2f ms, p99 %.2f ms, %.2f%% errors%n", run.throughputPerSecond(),
+                            run.total().p50Millis(), run.total().p99Millis(), run.total().errorRate() * 100);
+                    runs.add(run);
+                }
+            }
+        }
+
+        LoadReport report = new LoadReport(label, startedAt, new LoadReport.Settings(users, addressesPerUser,
+                warmup.toMillis() / 1000.0, duration.toMillis() / 1000.0, concurrencyLevels), runs, null, List.of());
+        if (!baseline.isBlank()) {
+            report = report.compareTo(LoadReport.read(Path.of(baseline)));
+            report.changes().forEach(change -> System.out.printf("%s with %d workers: throughput %+.1f%%, p99 %+.1f%%%n",
+                    change.scenario(), change.concurrency(), change.throughputChange() * 100, change.p99Change() * 100));
+        }
+        report.write(reportDirectory);
+        System.out.println("Reports written to " + reportDirectory.toAbsolutePath());
+        // The HTTP client's selector thread would keep the JVM alive.
+        System.exit(0);
+    }
+
+    /**
+     * Lets the workers iterate until the duration has passed and returns how long they took in seconds, including the
+     * iterations still running at the end.
+     */
+    private static double run(LoadScenario scenario, int concurrency, LoadClient client, LoadData data,
+                              Duration duration) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long startTime = System.nanoTime();
+        long deadline = startTime + duration.toNanos();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int worker = 0; worker < concurrency; worker++) {
+                futures.add(workers.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        scenario.iterate(client, data, random);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return (System.nanoTime() - startTime) / 1e9;
+    }
+
+    private static LoadReport.Run toRun(LoadScenario scenario, int concurrency, double seconds, LoadClient.Recording recording) {
+        LatencyStats.Summary total = recording.total().summary();
+        Map<String, LatencyStats.Summary> routes = new TreeMap<>();
+        recording.routes().forEach((route, stats) -> routes.put(route, stats.summary()));
+        return new LoadReport.Run(scenario.id(), concurrency, seconds, total.count() / seconds, total, routes);
+    }
+}
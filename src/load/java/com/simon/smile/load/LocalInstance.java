@@ -0,0 +1,44 @@
+package com.simon.smile.load;
+
+import com.simon.smile.SmileApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.net.URI;
+
+/**
+ * The application started in this JVM on a free port, configured by the {@code application.yaml} of the test
+ * resources: an in-memory H2 database seeded with the {@code admin} and {@code invalid} users.
+ */
+final class LocalInstance implements AutoCloseable {
+
+    private final ServletWebServerApplicationContext context;
+
+    private LocalInstance(ServletWebServerApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @param properties overrides of the test configuration, e.g. {@code api.quota.enabled=false}.
+     */
+    static LocalInstance start(String... properties) {
+        ServletWebServerApplicationContext context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(SmileApplication.class)
+                .properties("server.port=0")
+                .properties(properties)
+                .run();
+        return new LocalInstance(context);
+    }
+
+    URI baseUri() {
+        return URI.create("http://localhost:" + this.context.getWebServer().getPort());
+    }
+
+    <T> T getBean(Class<T> type) {
+        return this.context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        this.context.close();
+    }
+}
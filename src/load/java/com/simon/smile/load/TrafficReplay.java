@@ -0,0 +1,273 @@
+package com.simon.smile.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.simon.smile.system.CapturedRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays a traffic capture written by the {@code access-log.capture} against the application and reports throughput,
+ * latency percentiles and error rates, in total and per route.
+ * <p>
+ * Run with {@code ./mvnw -Preplay verify -DskipTests}, configured by system properties:
+ * <ul>
+ *     <li>{@code replay.capture}: the NDJSON capture file.</li>
+ *     <li>{@code replay.speed}: 1 replays at the recorded pace, 10 ten times faster, 0 as fast as
+ *     {@code replay.max-in-flight} allows.</li>
+ *     <li>{@code replay.url}: an instance to replay against; when empty the application is started here on the
+ *     in-memory H2 database of the test configuration.</li>
+ *     <li>{@code replay.username} and {@code replay.password}: the credentials replacing the ones the capture left
+ *     out, for bearer tokens, Basic credentials and redacted password fields.</li>
+ *     <li>{@code replay.report}: the JSON report written at the end.</li>
+ * </ul>
+ * Requests are sent in the order and, scaled by the speed, at the offsets they were captured at, so two versions
+ * replaying the same capture see the same load. Requests whose body was cut off in the capture are skipped.
+ * <p>
+ * Refreshing tokens and logging out revoke the tokens they are sent with, so each of those requests gets a session of
+ * its own. These sessions are logged in before the replay starts, so their logins neither delay the pacing nor count in
+ * the results.
+ */
+public final class TrafficReplay {
+
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+    private static final Pattern REDACTED_PASSWORD = Pattern.compile("(\"password\"\\s*:\\s*)\"\\*{6}\"", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern REDACTED_REFRESH_TOKEN = Pattern.compile("(\"refreshToken\"\\s*:\\s*)\"\\*{6}\"", Pattern.CASE_INSENSITIVE);
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final URI baseUri;
+
+    private final String username;
+
+    private final String password;
+
+    private final int maxInFlight;
+
+    private final Semaphore inFlight;
+
+    private final LatencyStats total = new LatencyStats();
+
+    private final Map<String, LatencyStats> routes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger statusMismatches = new AtomicInteger();
+
+    private final AtomicLong maxScheduleLagNanos = new AtomicLong();
+
+    private final Queue<Session> spareSessions = new ArrayDeque<>();
+
+    private Session session;
+
+    private TrafficReplay(URI baseUri, String username, String password, int maxInFlight) {
+        this.baseUri = baseUri;
+        this.username = username;
+        this.password = password;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path capture = Path.of(System.getProperty("replay.capture", "captures/traffic.ndjson"));
+        double speed = Double.parseDouble(System.getProperty("replay.speed", "1"));
+        String url = System.getProperty("replay.url", "");
+        String username = System.getProperty("replay.username", "admin");
+        String password = System.getProperty("replay.password", "PassW0rd");
+        int maxInFlight = Integer.getInteger("replay.max-in-flight", 256);
+        Path report = Path.of(System.getProperty("replay.report", "target/replay-report.json"));
+
+        // Every request is replayed as the same user, its quota would throttle traffic captured from many users.
+        try (LocalInstance instance = url.isBlank() ? LocalInstance.start("api.quota.enabled=false") : null) {
+            URI baseUri = instance != null ? instance.baseUri() : URI.create(url);
+            TrafficReplay replay = new TrafficReplay(baseUri, username, password, maxInFlight);
+            List<CapturedRequest> requests = replay.read(capture);
+            ReplayReport replayReport = replay.replay(capture, requests, speed);
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            replay.objectMapper.writerWithDefaultPrettyPrinter()
+                    .without(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .writeValue(report.toFile(), replayReport);
+            System.out.println(replay.objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(replayReport));
+            System.out.println("Report written to " + report.toAbsolutePath());
+        }
+        // The HTTP client's selector thread would keep the JVM alive.
+        System.exit(0);
+    }
+
+    private List<CapturedRequest> read(Path capture) throws IOException {
+        List<CapturedRequest> requests = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(capture, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    requests.add(this.objectMapper.readValue(line, CapturedRequest.class));
+                }
+            }
+        }
+        // Written in the order requests completed, replayed in the order they arrived.
+        requests.sort(Comparator.comparing(CapturedRequest::time));
+        return requests;
+    }
+
+    private ReplayReport replay(Path capture, List<CapturedRequest> requests, double speed) throws Exception {
+        this.session = login();
+        long revoking = requests.stream().filter(request -> !request.bodyTruncated() && revokesTokens(request)).count();
+        for (long index = 0; index < revoking; index++) {
+            this.spareSessions.add(login());
+        }
+        int skipped = 0;
+        long startTime = System.nanoTime();
+        long firstCaptured = requests.isEmpty() ? 0 : micros(requests.get(0));
+        for (CapturedRequest request : requests) {
+            if (request.bodyTruncated()) {
+                skipped++;
+                continue;
+            }
+            if (speed > 0) {
+                long due = startTime + (long) ((micros(request) - firstCaptured) * 1000 / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else {
+                    this.maxScheduleLagNanos.accumulateAndGet(-wait, Math::max);
+                }
+            }
+            this.inFlight.acquire();
+            send(request);
+        }
+        // Wait for the requests still in flight.
+        this.inFlight.acquire(this.maxInFlight);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        LatencyStats.Summary summary = this.total.summary();
+        Map<String, LatencyStats.Summary> routeSummaries = new TreeMap<>();
+        this.routes.forEach((route, stats) -> routeSummaries.put(route, stats.summary()));
+        return new ReplayReport(capture.toString(), this.baseUri.toString(), speed, requests.size(), skipped,
+                seconds, seconds == 0 ? 0 : summary.count() / seconds,
+                summary.count() == 0 ? 0 : (double) this.statusMismatches.get() / summary.count(),
+                this.maxScheduleLagNanos.get() / 1_000_000.0,
+                summary, routeSummaries);
+    }
+
+    private void send(CapturedRequest request) {
+        Session requestSession = revokesTokens(request) ? this.spareSessions.remove() : this.session;
+        HttpRequest httpRequest = toHttpRequest(request, requestSession);
+        LatencyStats routeStats = this.routes.computeIfAbsent(route(request), route -> new LatencyStats());
+        long sendTime = System.nanoTime();
+        this.httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, failure) -> {
+                    long latency = System.nanoTime() - sendTime;
+                    boolean error = failure != null || response.statusCode() >= 400;
+                    this.total.record(latency, error);
+                    routeStats.record(latency, error);
+                    if (failure != null || response.statusCode() != request.status()) {
+                        this.statusMismatches.incrementAndGet();
+                    }
+                    this.inFlight.release();
+                });
+    }
+
+    private HttpRequest toHttpRequest(CapturedRequest request, Session requestSession) {
+        String target = request.path() + (request.query() == null ? "" : "?" + request.query());
+        HttpRequest.Builder builder = HttpRequest.newBuilder(this.baseUri.resolve(target))
+                .timeout(Duration.ofSeconds(30));
+        if (request.contentType() != null) {
+            builder.header("Content-Type", request.contentType());
+        }
+        if ("Bearer".equalsIgnoreCase(request.authorization())) {
+            builder.header("Authorization", "Bearer " + requestSession.token());
+        } else if ("Basic".equalsIgnoreCase(request.authorization())) {
+            builder.header("Authorization", basic());
+        }
+        HttpRequest.BodyPublisher body = request.body() == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(restoreCredentials(request.body(), requestSession));
+        return builder.method(request.method(), body).build();
+    }
+
+    private String restoreCredentials(String body, Session requestSession) {
+        String restored = replaceMasked(body, REDACTED_PASSWORD, this.password);
+        return replaceMasked(restored, REDACTED_REFRESH_TOKEN, requestSession.refreshToken());
+    }
+
+    private static String replaceMasked(String body, Pattern pattern, String value) {
+        return pattern.matcher(body).replaceAll(match -> Matcher.quoteReplacement(match.group(1) + "\"" + value + "\""));
+    }
+
+    private static boolean revokesTokens(CapturedRequest request) {
+        return request.path().endsWith("/token/refresh") || request.path().endsWith("/logout");
+    }
+
+    private Session login() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(this.baseUri.resolve("/api/v1/login"))
+                .header("Authorization", basic())
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login of " + this.username + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        JsonNode data = this.objectMapper.readTree(response.body()).path("data");
+        return new Session(data.path("token").asText(), data.path("refreshToken").asText());
+    }
+
+    private String basic() {
+        String credentials = this.username + ":" + this.password;
+        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long micros(CapturedRequest request) {
+        return request.time().getEpochSecond() * 1_000_000 + request.time().getNano() / 1000;
+    }
+
+    /**
+     * E.g. {@code GET /api/v1/users/{id}}, so the requests for different users are summarized together.
+     */
+    private static String route(CapturedRequest request) {
+        return request.method() + " " + NUMERIC_SEGMENT.matcher(request.path()).replaceAll("/{id}");
+    }
+
+    private record Session(String token, String refreshToken) {
+    }
+
+    /**
+     * @param statusMismatchRate  the fraction of requests answered with another status than captured.
+     * @param maxScheduleLagMillis how far the replay fell behind the captured pace, when it couldn't keep up.
+     */
+    record ReplayReport(String capture, String target, double speed, int captured, int skipped,
+                        double durationSeconds, double throughputPerSecond, double statusMismatchRate,
+                        double maxScheduleLagMillis, LatencyStats.Summary total,
+                        Map<String, LatencyStats.Summary> routes) {
+    }
+}
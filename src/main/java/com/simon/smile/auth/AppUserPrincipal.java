@@ -2,22 +2,21 @@ package com.simon.smile.auth;
 
 import com.simon.smile.user.AppUser;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.util.StringUtils;
 
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.List;
 
-public record AppUserPrincipal(AppUser appUser) implements UserDetails {
+public record AppUserPrincipal(AppUser appUser, List<GrantedAuthority> authorities) implements UserDetails {
 
-    @Override
-    public Collection<? extends GrantedAuthority> getAuthorities() {
-        // Convert a user's roles from space-delimited string to a list of SimpleGrantedAuthority objects.
+    public AppUserPrincipal(AppUser appUser) {
+        // Convert a user's roles from space-delimited string to a list of GrantedAuthority objects once.
         // E.g., John's roles are stored in a string like "admin user moderator", we need to convert it to a list of GrantedAuthority.
-        return Arrays.stream(StringUtils.tokenizeToStringArray(appUser.getRoles(), " "))
-                .map(SimpleGrantedAuthority::new)
-                .toList();
+        this(appUser, RoleAuthorities.of(appUser.getRoles()));
+    }
+
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
     }
 
     @Override
@@ -1,29 +1,79 @@
 package com.simon.smile.auth;
 
 import com.simon.smile.common.Result;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.Authentication;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.web.authentication.www.BasicAuthenticationConverter;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 @RestController
 @RequestMapping("${api.base-url}")
 public class AuthController {
     private static final Logger LOGGER = LoggerFactory.getLogger(AuthController.class);
     private final AuthService authService;
+    private final Executor applicationTaskExecutor;
+    private final BasicAuthenticationConverter basicAuthenticationConverter = new BasicAuthenticationConverter();
 
-    public AuthController(AuthService authService) {
+    public AuthController(AuthService authService,
+                          @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor applicationTaskExecutor) {
         this.authService = authService;
+        this.applicationTaskExecutor = applicationTaskExecutor;
     }
 
+    /**
+     * The Basic credentials are checked asynchronously, the request thread is released while the password is hashed.
+     * The tokens are minted on the application task executor, the hashing threads only hash.
+     */
     @PostMapping("/login")
-    public Result getLoginInfo(Authentication authentication) {
-        String username = ((AppUserPrincipal) authentication.getPrincipal()).appUser().getUsername();
-        LOGGER.debug("Authentication user: '{}'", username);
-        LOGGER.debug("Authentication authorities: '{}'", authentication.getAuthorities());
-        return Result.success("welcome " + username)
-                .setData(authService.createLoginInfo(authentication));
+    public CompletableFuture<Result> getLoginInfo(HttpServletRequest request) {
+        UsernamePasswordAuthenticationToken credentials = basicAuthenticationConverter.convert(request);
+        if (credentials == null) {
+            throw new InsufficientAuthenticationException("Full authentication is required to access this resource");
+        }
+        return authService.authenticate(credentials).thenApplyAsync(authentication -> {
+            String username = ((AppUserPrincipal) authentication.getPrincipal()).appUser().getUsername();
+            LOGGER.debug("Authentication user: '{}'", username);
+            LOGGER.debug("Authentication authorities: '{}'", authentication.getAuthorities());
+            return Result.success("welcome " + username)
+                    .setData(authService.createLoginInfo(authentication));
+        }, applicationTaskExecutor);
+    }
+
+    /**
+     * Issues new tokens for a refresh token, the refresh token can't be used again.
+     */
+    @PostMapping("/token/refresh")
+    public Result refreshToken(@RequestBody @Valid RefreshTokenRequest refreshTokenRequest) {
+        return Result.success("token refreshed")
+                .setData(authService.refresh(refreshTokenRequest.refreshToken()));
+    }
+
+    /**
+     * Revokes the access token and, when it is sent along, the refresh token. Only a bearer token can be logged out,
+     * Basic credentials have nothing to revoke.
+     */
+    @PostMapping("/logout")
+    public Result logout(@AuthenticationPrincipal Jwt jwt,
+                         @RequestBody(required = false) RefreshTokenRequest refreshTokenRequest) {
+        if (jwt == null) {
+            throw new IllegalArgumentException("Logout requires a bearer token");
+        }
+        authService.logout(jwt, refreshTokenRequest == null ? null : refreshTokenRequest.refreshToken());
+        LOGGER.debug("Logout user: '{}'", jwt.getSubject());
+        return Result.success("logout success");
     }
 }
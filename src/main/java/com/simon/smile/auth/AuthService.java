@@ -1,14 +1,28 @@
 package com.simon.smile.auth;
 
 import com.simon.smile.security.JwtProvider;
+import com.simon.smile.security.LoginThrottle;
+import com.simon.smile.security.PasswordHashingExecutor;
+import com.simon.smile.security.TokenDenylist;
+import com.simon.smile.system.FlightEvents.LoginEvent;
 import com.simon.smile.user.UserDto;
 import com.simon.smile.user.UserToUserDtoConverter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -17,7 +31,32 @@ public class AuthService {
 
     private final UserToUserDtoConverter userToUserDtoConverter;
 
+    private final AuthenticationProvider authenticationProvider;
+
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private final UserDetailsService userDetailsService;
+
+    private final TokenDenylist tokenDenylist;
+
+    private final LoginThrottle loginThrottle;
+
+    private final AccountStatusUserDetailsChecker userDetailsChecker = new AccountStatusUserDetailsChecker();
+
+    /**
+     * Checks the username and password on the password hashing executor.
+     * <p>
+     * The {@link LoginThrottle} is checked on the calling thread first, a throttled login is rejected without taking a
+     * slot of the executor's queue.
+     */
+    public CompletableFuture<Authentication> authenticate(Authentication credentials) {
+        loginThrottle.checkAllowed(credentials);
+        return passwordHashingExecutor.supplyAsync(() -> authenticationProvider.authenticate(credentials));
+    }
+
     public Map<String, Object> createLoginInfo(Authentication authentication) {
+        LoginEvent event = new LoginEvent();
+        event.begin();
         Map<String, Object> loginInfo = new HashMap<>();
         // create user info
         AppUserPrincipal principal = (AppUserPrincipal) authentication.getPrincipal();
@@ -26,6 +65,42 @@ public class AuthService {
         // create a JWT
         String token = this.jwtProvider.createToken(authentication);
         loginInfo.put("token", token);
+        loginInfo.put("refreshToken", this.jwtProvider.createRefreshToken(authentication));
+        event.username = authentication.getName();
+        event.commit();
         return loginInfo;
     }
+
+    /**
+     * Exchanges a refresh token for new tokens without checking the password again.
+     * <p>
+     * The refresh token is claimed before anything is minted, so each one can only be used once, even by concurrent
+     * requests. The user is loaded again, a user who was disabled or lost a role meanwhile doesn't get the old
+     * authorities back.
+     */
+    public Map<String, Object> refresh(String refreshToken) {
+        Jwt jwt = this.jwtProvider.decodeRefreshToken(refreshToken);
+        if (!this.tokenDenylist.claim(jwt.getId(), jwt.getExpiresAt())) {
+            throw new BadJwtException("Token has been revoked");
+        }
+        UserDetails principal = this.userDetailsService.loadUserByUsername(jwt.getSubject());
+        this.userDetailsChecker.check(principal);
+        return createLoginInfo(UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+    }
+
+    /**
+     * Revokes the access token of the current request and, when given, the refresh token issued with it.
+     */
+    public void logout(Jwt accessToken, String refreshToken) {
+        if (accessToken.getId() != null) {
+            this.tokenDenylist.revoke(accessToken.getId(), accessToken.getExpiresAt());
+        }
+        if (StringUtils.hasText(refreshToken)) {
+            Jwt jwt = this.jwtProvider.decodeRefreshToken(refreshToken);
+            if (!Objects.equals(jwt.getSubject(), accessToken.getSubject())) {
+                throw new BadJwtException("The refresh token was issued to another user");
+            }
+            this.tokenDenylist.revoke(jwt.getId(), jwt.getExpiresAt());
+        }
+    }
 }
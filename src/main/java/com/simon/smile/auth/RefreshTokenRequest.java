@@ -0,0 +1,6 @@
+package com.simon.smile.auth;
+
+import jakarta.validation.constraints.NotEmpty;
+
+public record RefreshTokenRequest(@NotEmpty(message = "refresh token is required") String refreshToken) {
+}
@@ -0,0 +1,52 @@
+package com.simon.smile.auth;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A shared pool of authority lists, so principals with the same roles share one immutable list of the same
+ * {@link GrantedAuthority} instances instead of each parsing the roles string again.
+ */
+final class RoleAuthorities {
+
+    // Role combinations are few in practice, the bound only keeps unusual data from growing the pool forever.
+    private static final int MAXIMUM_SIZE = 1024;
+
+    private static final Map<String, GrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+
+    private static final Map<String, List<GrantedAuthority>> AUTHORITY_LISTS = new ConcurrentHashMap<>();
+
+    private RoleAuthorities() {
+    }
+
+    /**
+     * Returns the authorities of a space-delimited roles string, e.g. "ROLE_ADMIN ROLE_USER".
+     */
+    static List<GrantedAuthority> of(String roles) {
+        String key = roles == null ? "" : roles;
+        List<GrantedAuthority> authorities = AUTHORITY_LISTS.get(key);
+        if (authorities != null) {
+            return authorities;
+        }
+        authorities = Arrays.stream(StringUtils.tokenizeToStringArray(key, " "))
+                .map(RoleAuthorities::authority)
+                .toList();
+        if (AUTHORITY_LISTS.size() < MAXIMUM_SIZE) {
+            AUTHORITY_LISTS.putIfAbsent(key, authorities);
+        }
+        return authorities;
+    }
+
+    private static GrantedAuthority authority(String role) {
+        if (AUTHORITIES.size() >= MAXIMUM_SIZE) {
+            return AUTHORITIES.getOrDefault(role, new SimpleGrantedAuthority(role));
+        }
+        return AUTHORITIES.computeIfAbsent(role, SimpleGrantedAuthority::new);
+    }
+}
@@ -1,12 +1,20 @@
 package com.simon.smile.common.exception;
 
 import com.simon.smile.common.Result;
+import com.simon.smile.security.LoginThrottledException;
+import com.simon.smile.security.PasswordHashingBusyException;
+import com.simon.smile.security.QuotaExceededException;
+import com.simon.smile.security.StripedTokenBuckets;
+import com.simon.smile.system.RequestBodyTooLargeException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.AccountStatusException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.InsufficientAuthenticationException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
 import org.springframework.validation.FieldError;
 import org.springframework.validation.ObjectError;
@@ -89,4 +97,43 @@ public class ExceptionHandleAdvice {
         return Result.fail("The access token provided is expired, revoked, malformed, or invalid for other reasons")
                 .setData(ex.getMessage());
     }
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    Result handlePasswordHashingBusyException(Exception ex, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        return Result.fail("The server is busy, please retry later")
+                .setData(ex.getMessage());
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    Result handleLoginThrottledException(LoginThrottledException ex, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(StripedTokenBuckets.wholeSeconds(ex.getRetryAfter())));
+        return Result.fail("Too many failed logins, please retry later")
+                .setData(ex.getMessage());
+    }
+
+    // Only tokens the client sent; failing to mint or to verify for other reasons is a server error.
+    @ExceptionHandler(BadJwtException.class)
+    @ResponseStatus(HttpStatus.UNAUTHORIZED)
+    Result handleBadJwtException(Exception ex) {
+        return Result.fail("The refresh token provided is expired, revoked, malformed, or invalid for other reasons")
+                .setData(ex.getMessage());
+    }
+
+    @ExceptionHandler(QuotaExceededException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    Result handleQuotaExceededException(QuotaExceededException ex, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(StripedTokenBuckets.wholeSeconds(ex.getRetryAfter())));
+        return Result.fail("Too many requests, please retry later")
+                .setData(ex.getMessage());
+    }
+
+    @ExceptionHandler(RequestBodyTooLargeException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    Result handleRequestBodyTooLargeException(Exception ex) {
+        return Result.fail("The request body is too large")
+                .setData(ex.getMessage());
+    }
 }
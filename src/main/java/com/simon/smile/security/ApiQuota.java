@@ -0,0 +1,92 @@
+package com.simon.smile.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Limits the requests of each caller to each {@link ApiQuotaGroup}.
+ * <p>
+ * Every group has its own {@link StripedTokenBuckets}: a caller may send {@code capacity} requests in a burst and one
+ * more every {@code refill-interval}, memory stays bounded by the stripes however many callers there are. Rejections
+ * are counted as {@code api.quota.rejected}, tagged by group.
+ */
+@Component
+public class ApiQuota {
+
+    private static final String REJECTED_METRIC = "api.quota.rejected";
+
+    private final boolean enabled;
+
+    private final Map<ApiQuotaGroup, Limit> limits = new EnumMap<>(ApiQuotaGroup.class);
+
+    public ApiQuota(@Value("${api.quota.enabled}") boolean enabled,
+                    @Value("${api.quota.query.capacity}") int queryCapacity,
+                    @Value("${api.quota.query.refill-interval}") Duration queryRefillInterval,
+                    @Value("${api.quota.read.capacity}") int readCapacity,
+                    @Value("${api.quota.read.refill-interval}") Duration readRefillInterval,
+                    @Value("${api.quota.write.capacity}") int writeCapacity,
+                    @Value("${api.quota.write.refill-interval}") Duration writeRefillInterval,
+                    @Value("${api.quota.stripes}") int stripes,
+                    MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.limits.put(ApiQuotaGroup.QUERY, new Limit(queryCapacity, queryRefillInterval, stripes, ApiQuotaGroup.QUERY, meterRegistry));
+        this.limits.put(ApiQuotaGroup.READ, new Limit(readCapacity, readRefillInterval, stripes, ApiQuotaGroup.READ, meterRegistry));
+        this.limits.put(ApiQuotaGroup.WRITE, new Limit(writeCapacity, writeRefillInterval, stripes, ApiQuotaGroup.WRITE, meterRegistry));
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Takes one request from the caller's quota of the group.
+     *
+     * @param caller identifies the caller, e.g. the username or the client IP address.
+     */
+    public Usage acquire(ApiQuotaGroup group, String caller) {
+        Limit limit = this.limits.get(group);
+        boolean allowed = limit.buckets.tryAcquire(caller);
+        if (!allowed) {
+            limit.rejections.increment();
+        }
+        return new Usage(allowed,
+                limit.capacity,
+                limit.buckets.available(caller),
+                limit.buckets.timeUntilFull(caller),
+                limit.buckets.timeUntilAvailable(caller));
+    }
+
+    /**
+     * The state of a quota after a request.
+     *
+     * @param allowed    whether the request may proceed.
+     * @param limit      the requests allowed in a burst.
+     * @param remaining  the requests left now.
+     * @param reset      how long until the full burst is available again.
+     * @param retryAfter how long until the next request is allowed, zero when one is allowed now.
+     */
+    public record Usage(boolean allowed, long limit, long remaining, Duration reset, Duration retryAfter) {
+    }
+
+    private static final class Limit {
+
+        private final int capacity;
+
+        private final StripedTokenBuckets buckets;
+
+        private final Counter rejections;
+
+        private Limit(int capacity, Duration refillInterval, int stripes, ApiQuotaGroup group, MeterRegistry meterRegistry) {
+            this.capacity = capacity;
+            this.buckets = new StripedTokenBuckets(capacity, refillInterval, stripes);
+            this.rejections = meterRegistry.counter(REJECTED_METRIC, "group", group.name().toLowerCase(Locale.ROOT));
+        }
+    }
+}
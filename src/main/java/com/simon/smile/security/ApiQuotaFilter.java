@@ -0,0 +1,81 @@
+package com.simon.smile.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Enforces the {@link ApiQuota} once the caller is authenticated, anonymous callers are limited by client IP address.
+ * <p>
+ * Every limited response carries the {@code RateLimit-Limit}, {@code RateLimit-Remaining} and {@code RateLimit-Reset}
+ * headers; a rejected request is answered with 429 and {@code Retry-After}.
+ */
+class ApiQuotaFilter extends OncePerRequestFilter {
+
+    private final ApiQuota apiQuota;
+
+    // The first matching entry decides the group, requests matching none are not limited.
+    private final Map<RequestMatcher, ApiQuotaGroup> groups;
+
+    private final HandlerExceptionResolver resolver;
+
+    ApiQuotaFilter(ApiQuota apiQuota, Map<RequestMatcher, ApiQuotaGroup> groups, HandlerExceptionResolver resolver) {
+        this.apiQuota = apiQuota;
+        this.groups = groups;
+        this.resolver = resolver;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !this.apiQuota.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ApiQuotaGroup group = group(request);
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        ApiQuota.Usage usage = this.apiQuota.acquire(group, caller(request));
+        response.setHeader("RateLimit-Limit", String.valueOf(usage.limit()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(usage.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(StripedTokenBuckets.wholeSeconds(usage.reset())));
+        if (!usage.allowed()) {
+            this.resolver.resolveException(request, response, null,
+                    new QuotaExceededException("Quota exceeded for " + group.name().toLowerCase(Locale.ROOT) + " requests", usage.retryAfter()));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private ApiQuotaGroup group(HttpServletRequest request) {
+        for (Map.Entry<RequestMatcher, ApiQuotaGroup> entry : this.groups.entrySet()) {
+            if (entry.getKey().matches(request)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String caller(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
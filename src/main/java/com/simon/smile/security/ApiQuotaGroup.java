@@ -0,0 +1,19 @@
+package com.simon.smile.security;
+
+/**
+ * The groups of endpoints that have their own quota, a caller exhausting one group can still use the others.
+ */
+public enum ApiQuotaGroup {
+    /**
+     * Listing and filtering users, the requests that are expensive for the database.
+     */
+    QUERY,
+    /**
+     * Any other read.
+     */
+    READ,
+    /**
+     * Creating, updating and deleting.
+     */
+    WRITE
+}
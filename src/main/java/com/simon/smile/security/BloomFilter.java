@@ -0,0 +1,68 @@
+package com.simon.smile.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter over strings.
+ * <p>
+ * {@link #mightContain(String)} never misses a string that was {@link #put(String) put}, and wrongly reports a string
+ * that wasn't with about the false positive rate it was sized for. Strings can't be removed, the filter is rebuilt
+ * instead.
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+
+    private final long bits;
+
+    private final int hashFunctions;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(expectedInsertions, 1);
+        // The optimal sizes for n insertions at rate p: m = -n ln(p) / ln(2)^2 bits and k = m / n ln(2) hash functions.
+        long m = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        this.words = new AtomicLongArray(Math.toIntExact((m + 63) / 64));
+        this.bits = this.words.length() * 64L;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) this.bits / n * Math.log(2)));
+    }
+
+    void put(String value) {
+        long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < this.hashFunctions; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, this.bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = this.words.get(word);
+            } while ((current & mask) == 0 && !this.words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < this.hashFunctions; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, this.bits);
+            if ((this.words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(String value, long seed) {
+        // FNV-1a over the chars followed by a 64-bit finalizer, two seeds give the two hashes of double hashing.
+        long hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,52 @@
+package com.simon.smile.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Converts a verified {@link Jwt} to a {@link JwtAuthenticationToken}, remembering the granted authorities
+ * of every {@link Jwt} instance it has seen.
+ * <p>
+ * {@link CachingJwtDecoder} hands out the same {@link Jwt} instance for the same token, so the cache is keyed by
+ * identity and its entries disappear once the decoder has dropped the token. A fresh token is still built per
+ * request because the authentication filter attaches request specific details to it.
+ */
+public class CachingJwtAuthenticationConverter implements Converter<Jwt, AbstractAuthenticationToken> {
+
+    private final Converter<Jwt, Collection<GrantedAuthority>> jwtGrantedAuthoritiesConverter;
+
+    private final Cache<Jwt, Collection<GrantedAuthority>> cache;
+
+    public CachingJwtAuthenticationConverter(Converter<Jwt, Collection<GrantedAuthority>> jwtGrantedAuthoritiesConverter,
+                                             long maximumSize) {
+        this.jwtGrantedAuthoritiesConverter = jwtGrantedAuthoritiesConverter;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .weakKeys()
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public AbstractAuthenticationToken convert(Jwt jwt) {
+        Collection<GrantedAuthority> authorities = cache.get(jwt, this::extractAuthorities);
+        return new JwtAuthenticationToken(jwt, authorities, jwt.getClaimAsString(JwtClaimNames.SUB));
+    }
+
+    public Cache<Jwt, Collection<GrantedAuthority>> getCache() {
+        return cache;
+    }
+
+    private Collection<GrantedAuthority> extractAuthorities(Jwt jwt) {
+        return List.copyOf(jwtGrantedAuthoritiesConverter.convert(jwt));
+    }
+}
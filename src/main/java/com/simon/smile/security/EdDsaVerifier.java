@@ -0,0 +1,41 @@
+package com.simon.smile.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.impl.BaseJWSProvider;
+import com.nimbusds.jose.util.Base64URL;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Set;
+
+/**
+ * Verifies Ed25519 signatures through the JDK provider; nimbus-jose-jwt only ships a verifier built on Google Tink.
+ */
+class EdDsaVerifier extends BaseJWSProvider implements JWSVerifier {
+
+    private final PublicKey publicKey;
+
+    EdDsaVerifier(PublicKey publicKey) {
+        super(Set.of(JWSAlgorithm.EdDSA));
+        this.publicKey = publicKey;
+    }
+
+    @Override
+    public boolean verify(JWSHeader header, byte[] signingInput, Base64URL signature) throws JOSEException {
+        try {
+            Signature verifier = Signature.getInstance("Ed25519");
+            verifier.initVerify(this.publicKey);
+            verifier.update(signingInput);
+            return verifier.verify(signature.decode());
+        } catch (SignatureException e) {
+            return false;
+        } catch (GeneralSecurityException e) {
+            throw new JOSEException("Ed25519 verification failed: " + e.getMessage(), e);
+        }
+    }
+}
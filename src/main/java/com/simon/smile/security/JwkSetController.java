@@ -0,0 +1,21 @@
+package com.simon.smile.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class JwkSetController {
+    private final SigningKeyStore signingKeyStore;
+
+    /**
+     * Publishes the public signing keys as a standard JWK Set (RFC 7517), so it is not wrapped in a Result.
+     */
+    @GetMapping("/.well-known/jwks.json")
+    public Map<String, Object> getJwkSet() {
+        return signingKeyStore.getPublicJwkSet().toJSONObject();
+    }
+}
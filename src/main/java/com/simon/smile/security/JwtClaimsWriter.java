@@ -0,0 +1,126 @@
+package com.simon.smile.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * Writes a JWT claims set straight to JSON, for minting tokens without building a claims map first.
+ * <p>
+ * Claims are written in the order they are added, a {@code null} value leaves the claim out. The caller must not add
+ * a claim twice.
+ */
+public final class JwtClaimsWriter {
+
+    private final StringBuilder json = new StringBuilder(384).append('{');
+
+    private int depth = 1;
+
+    public JwtClaimsWriter claim(String name, String value) {
+        if (value != null) {
+            name(name);
+            string(value);
+        }
+        return this;
+    }
+
+    public JwtClaimsWriter claim(String name, long value) {
+        name(name);
+        this.json.append(value);
+        return this;
+    }
+
+    public JwtClaimsWriter claim(String name, Integer value) {
+        if (value != null) {
+            claim(name, value.longValue());
+        }
+        return this;
+    }
+
+    public JwtClaimsWriter claim(String name, Boolean value) {
+        if (value != null) {
+            name(name);
+            this.json.append(value.booleanValue());
+        }
+        return this;
+    }
+
+    /**
+     * Writes the authorities as one space-delimited string, like the {@code scope} claim.
+     */
+    public JwtClaimsWriter claim(String name, Collection<? extends GrantedAuthority> authorities) {
+        name(name);
+        this.json.append('"');
+        boolean first = true;
+        for (GrantedAuthority authority : authorities) {
+            if (!first) {
+                this.json.append(' ');
+            }
+            escape(authority.getAuthority());
+            first = false;
+        }
+        this.json.append('"');
+        return this;
+    }
+
+    /**
+     * Starts a claim holding a JSON object, the following claims are its members until {@link #endObject()}.
+     */
+    public JwtClaimsWriter beginObject(String name) {
+        name(name);
+        this.json.append('{');
+        this.depth++;
+        return this;
+    }
+
+    public JwtClaimsWriter endObject() {
+        if (this.depth == 1) {
+            throw new IllegalStateException("No object to end");
+        }
+        this.json.append('}');
+        this.depth--;
+        return this;
+    }
+
+    public String toJson() {
+        if (this.depth != 1) {
+            throw new IllegalStateException("An object has not been ended");
+        }
+        return this.json + "}";
+    }
+
+    private void name(String name) {
+        char last = this.json.charAt(this.json.length() - 1);
+        if (last != '{') {
+            this.json.append(',');
+        }
+        string(name);
+        this.json.append(':');
+    }
+
+    private void string(String value) {
+        this.json.append('"');
+        escape(value);
+        this.json.append('"');
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> this.json.append("\\\"");
+                case '\\' -> this.json.append("\\\\");
+                case '\n' -> this.json.append("\\n");
+                case '\r' -> this.json.append("\\r");
+                case '\t' -> this.json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        this.json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        this.json.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,41 +1,134 @@
 package com.simon.smile.security;
 
-import lombok.RequiredArgsConstructor;
+import com.simon.smile.auth.AppUserPrincipal;
+import com.simon.smile.system.FlightEvents.TokenMintEvent;
+import com.simon.smile.user.UserSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.oauth2.jwt.JwtClaimsSet;
-import org.springframework.security.oauth2.jwt.JwtEncoder;
-import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 @Component
-@RequiredArgsConstructor
 public class JwtProvider {
 
-    private final JwtEncoder jwtEncoder;
+    /**
+     * Tells access tokens and refresh tokens apart, so neither is accepted in place of the other.
+     */
+    public static final String TOKEN_USE = "token_use";
+
+    public static final String ACCESS = "access";
+
+    public static final String REFRESH = "refresh";
+
+    /**
+     * Times the signature verification of tokens that are not cached, tagged by {@link #TOKEN_USE}.
+     */
+    public static final String VERIFY_METRIC = "jwt.verify";
+
+    private static final String MINT_METRIC = "jwt.mint";
+
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    private final SigningKeyStore signingKeyStore;
+
+    private final JwtDecoder refreshTokenDecoder;
+
+    private final Timer accessMintTimer;
+
+    private final Timer refreshMintTimer;
 
     @Value("${session.expire-hours}")
     private int expireHours;
 
+    @Value("${session.refresh-expire-hours}")
+    private int refreshExpireHours;
+
+    public JwtProvider(SigningKeyStore signingKeyStore, TokenDenylist tokenDenylist, MeterRegistry meterRegistry) {
+        this.signingKeyStore = signingKeyStore;
+        NimbusJwtDecoder decoder = JwtSigningAlgorithm.createDecoder(signingKeyStore);
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(JwtValidators.createDefault(),
+                new JwtClaimValidator<String>(TOKEN_USE, REFRESH::equals)));
+        Timer verifyTimer = meterRegistry.timer(VERIFY_METRIC, TOKEN_USE, REFRESH);
+        // A refresh token is presented once, caching it like the access tokens would not pay off.
+        this.refreshTokenDecoder = new RevocationCheckingJwtDecoder(
+                token -> verifyTimer.record(() -> decoder.decode(token)), tokenDenylist);
+        this.accessMintTimer = meterRegistry.timer(MINT_METRIC, TOKEN_USE, ACCESS);
+        this.refreshMintTimer = meterRegistry.timer(MINT_METRIC, TOKEN_USE, REFRESH);
+    }
+
     public String createToken(Authentication authentication) {
-        Instant now = Instant.now();
-        String authorities = authentication.getAuthorities()
-                .stream()
-                .map(GrantedAuthority::getAuthority)
-                .collect(Collectors.joining(" "));
-        JwtClaimsSet claimsSet = JwtClaimsSet.builder()
-                .issuer("self")
-                .issuedAt(now)
-                .expiresAt(now.plus(expireHours, ChronoUnit.HOURS)) // Expires after 2 hours.
-                .subject(authentication.getName())
-                .claim("authorities", authorities)
-                .build();
-
-        return jwtEncoder.encode(JwtEncoderParameters.from(claimsSet)).getTokenValue();
+        TokenMintEvent event = new TokenMintEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start();
+        // Written straight to JSON and signed by the current key, no claims map or authorities string is built.
+        long now = Instant.now().getEpochSecond();
+        JwtClaimsWriter claims = new JwtClaimsWriter()
+                .claim(JwtClaimNames.ISS, "self")
+                .claim(JwtClaimNames.IAT, now)
+                .claim(JwtClaimNames.EXP, now + expireHours * SECONDS_PER_HOUR) // Expires after 2 hours.
+                .claim(JwtClaimNames.SUB, authentication.getName())
+                .claim(JwtClaimNames.JTI, UUID.randomUUID().toString())
+                .claim(TOKEN_USE, ACCESS)
+                .claim("authorities", authentication.getAuthorities());
+        // Lets the current user be served from the token.
+        if (authentication.getPrincipal() instanceof AppUserPrincipal principal) {
+            UserSnapshot.of(principal.appUser()).writeClaim(claims);
+        }
+        String token = signingKeyStore.getEncoder().sign(claims);
+        sample.stop(accessMintTimer);
+        commit(event, ACCESS, authentication);
+        return token;
+    }
+
+    /**
+     * Creates a long-lived token that can only be exchanged for a new access token, the authorities are looked up
+     * again on every exchange.
+     */
+    public String createRefreshToken(Authentication authentication) {
+        TokenMintEvent event = new TokenMintEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start();
+        long now = Instant.now().getEpochSecond();
+        JwtClaimsWriter claims = new JwtClaimsWriter()
+                .claim(JwtClaimNames.ISS, "self")
+                .claim(JwtClaimNames.IAT, now)
+                .claim(JwtClaimNames.EXP, now + refreshExpireHours * SECONDS_PER_HOUR)
+                .claim(JwtClaimNames.SUB, authentication.getName())
+                .claim(JwtClaimNames.JTI, UUID.randomUUID().toString())
+                .claim(TOKEN_USE, REFRESH);
+        String token = signingKeyStore.getEncoder().sign(claims);
+        sample.stop(refreshMintTimer);
+        commit(event, REFRESH, authentication);
+        return token;
+    }
+
+    /**
+     * Verifies a refresh token.
+     *
+     * @throws BadJwtException when the token is expired, revoked, not a refresh token or invalid otherwise.
+     */
+    public Jwt decodeRefreshToken(String refreshToken) {
+        return refreshTokenDecoder.decode(refreshToken);
+    }
+
+    private static void commit(TokenMintEvent event, String tokenUse, Authentication authentication) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.tokenUse = tokenUse;
+            event.subject = authentication.getName();
+            event.commit();
+        }
     }
 }
@@ -0,0 +1,242 @@
+package com.simon.smile.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.crypto.impl.BaseJWSProvider;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerifierFactory;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * The algorithms a JWT can be signed with, configured by {@code session.signing-algorithm}.
+ * <p>
+ * RS256 produces the largest tokens and is the slowest to sign; ES256 and EdDSA (over Ed25519) sign much
+ * faster and produce far shorter signatures. The {@code jmh} Maven profile compares them.
+ */
+@Getter
+@AllArgsConstructor
+public enum JwtSigningAlgorithm {
+    RS256(JWSAlgorithm.RS256, "SHA256withRSA") {
+        @Override
+        public KeyPair generateKeyPair() throws GeneralSecurityException {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+            keyPairGenerator.initialize(2048); // The generated key will have a size of 2048
+            return keyPairGenerator.genKeyPair();
+        }
+
+        @Override
+        public JWK toPublicJwk(PublicKey publicKey, String keyId) {
+            return new RSAKey.Builder((RSAPublicKey) publicKey)
+                    .algorithm(getJwsAlgorithm())
+                    .keyID(keyId)
+                    .build();
+        }
+
+        @Override
+        JWSVerifier createVerifier(Key publicKey) {
+            return new RSASSAVerifier((RSAPublicKey) publicKey);
+        }
+
+        @Override
+        PublicKey toPublicKey(JWK jwk) throws JOSEException {
+            return jwk.toRSAKey().toPublicKey();
+        }
+    },
+    ES256(JWSAlgorithm.ES256, "SHA256withECDSAinP1363Format") {
+        @Override
+        public KeyPair generateKeyPair() throws GeneralSecurityException {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+            keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+            return keyPairGenerator.genKeyPair();
+        }
+
+        @Override
+        public JWK toPublicJwk(PublicKey publicKey, String keyId) {
+            return new ECKey.Builder(Curve.P_256, (ECPublicKey) publicKey)
+                    .algorithm(getJwsAlgorithm())
+                    .keyID(keyId)
+                    .build();
+        }
+
+        @Override
+        JWSVerifier createVerifier(Key publicKey) throws JOSEException {
+            return new ECDSAVerifier((ECPublicKey) publicKey);
+        }
+
+        @Override
+        PublicKey toPublicKey(JWK jwk) throws JOSEException {
+            return jwk.toECKey().toPublicKey();
+        }
+    },
+    EdDSA(JWSAlgorithm.EdDSA, "Ed25519") {
+        @Override
+        public KeyPair generateKeyPair() throws GeneralSecurityException {
+            return KeyPairGenerator.getInstance("Ed25519").genKeyPair();
+        }
+
+        @Override
+        public JWK toPublicJwk(PublicKey publicKey, String keyId) {
+            // The raw 32-byte key is the tail of the X.509 encoding.
+            byte[] encoded = publicKey.getEncoded();
+            byte[] x = Arrays.copyOfRange(encoded, ED25519_X509_PREFIX.length, encoded.length);
+            return new OctetKeyPair.Builder(Curve.Ed25519, Base64URL.encode(x))
+                    .algorithm(getJwsAlgorithm())
+                    .keyID(keyId)
+                    .build();
+        }
+
+        @Override
+        JWSVerifier createVerifier(Key publicKey) {
+            return new EdDsaVerifier((PublicKey) publicKey);
+        }
+
+        @Override
+        PublicKey toPublicKey(JWK jwk) throws JOSEException {
+            byte[] x = jwk.toOctetKeyPair().getDecodedX();
+            byte[] encoded = Arrays.copyOf(ED25519_X509_PREFIX, ED25519_X509_PREFIX.length + x.length);
+            System.arraycopy(x, 0, encoded, ED25519_X509_PREFIX.length, x.length);
+            try {
+                return KeyFactory.getInstance("Ed25519").generatePublic(new X509EncodedKeySpec(encoded));
+            } catch (GeneralSecurityException e) {
+                throw new JOSEException("Invalid Ed25519 key: " + e.getMessage(), e);
+            }
+        }
+    };
+
+    // SubjectPublicKeyInfo header of an Ed25519 key (RFC 8410).
+    private static final byte[] ED25519_X509_PREFIX = {
+            0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00};
+
+    private final JWSAlgorithm jwsAlgorithm;
+
+    /**
+     * The JCA signature algorithm producing the JWS signature bytes, for ES256 the IEEE P1363 {@code R || S} format
+     * JWS requires instead of DER.
+     */
+    private final String jcaAlgorithm;
+
+    public abstract KeyPair generateKeyPair() throws GeneralSecurityException;
+
+    /**
+     * Converts the public half of a key pair to a JSON Web Key that can be published.
+     */
+    public abstract JWK toPublicJwk(PublicKey publicKey, String keyId);
+
+    /**
+     * Creates a {@link Signature} initialized for signing with the private key. It can sign any number of tokens, one
+     * thread at a time.
+     */
+    public Signature createSignature(PrivateKey privateKey) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(this.jcaAlgorithm);
+        signature.initSign(privateKey);
+        return signature;
+    }
+
+    abstract JWSVerifier createVerifier(Key publicKey) throws JOSEException;
+
+    abstract PublicKey toPublicKey(JWK jwk) throws JOSEException;
+
+    /**
+     * Finds the algorithm of a key pair generated by {@link #generateKeyPair()}.
+     */
+    public static JwtSigningAlgorithm forKey(PublicKey publicKey) {
+        return switch (publicKey.getAlgorithm()) {
+            case "RSA" -> RS256;
+            case "EC" -> ES256;
+            case "EdDSA", "Ed25519" -> EdDSA;
+            default -> throw new IllegalArgumentException("Unsupported key algorithm: " + publicKey.getAlgorithm());
+        };
+    }
+
+    /**
+     * Creates a decoder that accepts tokens signed by any of the given keys with one of these algorithms.
+     * The key is chosen by the {@code kid} header when the token carries one.
+     */
+    public static NimbusJwtDecoder createDecoder(JWKSource<SecurityContext> jwkSource) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector((header, context) -> selectKeys(jwkSource, header, context));
+        jwtProcessor.setJWSVerifierFactory(new VerifierFactory());
+        // Spring Security validates the claims itself, see NimbusJwtDecoder#setJwtValidator.
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        return new NimbusJwtDecoder(jwtProcessor);
+    }
+
+    private static Optional<JwtSigningAlgorithm> forJwsAlgorithm(JWSAlgorithm jwsAlgorithm) {
+        return Arrays.stream(values())
+                .filter(algorithm -> algorithm.jwsAlgorithm.equals(jwsAlgorithm))
+                .findFirst();
+    }
+
+    private static List<Key> selectKeys(JWKSource<SecurityContext> jwkSource, JWSHeader header, SecurityContext context)
+            throws KeySourceException {
+        Optional<JwtSigningAlgorithm> algorithm = forJwsAlgorithm(header.getAlgorithm());
+        if (algorithm.isEmpty()) {
+            return List.of();
+        }
+        JWKMatcher matcher = new JWKMatcher.Builder()
+                .keyType(KeyType.forAlgorithm(header.getAlgorithm()))
+                .algorithms(header.getAlgorithm())
+                .keyID(header.getKeyID())
+                .build();
+        List<Key> keys = new ArrayList<>();
+        for (JWK jwk : jwkSource.get(new JWKSelector(matcher), context)) {
+            try {
+                keys.add(algorithm.get().toPublicKey(jwk));
+            } catch (JOSEException e) {
+                throw new KeySourceException("Couldn't convert JWK " + jwk.getKeyID() + ": " + e.getMessage(), e);
+            }
+        }
+        return keys;
+    }
+
+    private static class VerifierFactory extends BaseJWSProvider implements JWSVerifierFactory {
+
+        VerifierFactory() {
+            super(Arrays.stream(values()).map(JwtSigningAlgorithm::getJwsAlgorithm).collect(Collectors.toSet()));
+        }
+
+        @Override
+        public JWSVerifier createJWSVerifier(JWSHeader header, Key key) throws JOSEException {
+            return forJwsAlgorithm(header.getAlgorithm())
+                    .orElseThrow(() -> new JOSEException("Unsupported JWS algorithm: " + header.getAlgorithm()))
+                    .createVerifier(key);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.simon.smile.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Limits failed logins per username and per client IP address.
+ * <p>
+ * Every failed login takes a token from the bucket of its username and of its client IP. Once either is empty,
+ * further attempts are rejected before the user is loaded or the password is hashed, so guessing passwords can't
+ * be turned into a CPU denial of service. Successful logins take no token, clients sending valid Basic credentials
+ * on every request are never throttled. Rejections are counted as {@code login.throttle.rejected}, tagged by key.
+ */
+@Component
+public class LoginThrottle {
+
+    private static final String REJECTED_METRIC = "login.throttle.rejected";
+
+    private final StripedTokenBuckets usernameBuckets;
+
+    private final StripedTokenBuckets clientIpBuckets;
+
+    private final Counter usernameRejections;
+
+    private final Counter clientIpRejections;
+
+    public LoginThrottle(@Value("${session.login-throttle.username.capacity}") int usernameCapacity,
+                         @Value("${session.login-throttle.username.refill-interval}") Duration usernameRefillInterval,
+                         @Value("${session.login-throttle.client-ip.capacity}") int clientIpCapacity,
+                         @Value("${session.login-throttle.client-ip.refill-interval}") Duration clientIpRefillInterval,
+                         @Value("${session.login-throttle.stripes}") int stripes,
+                         MeterRegistry meterRegistry) {
+        this.usernameBuckets = new StripedTokenBuckets(usernameCapacity, usernameRefillInterval, stripes);
+        this.clientIpBuckets = new StripedTokenBuckets(clientIpCapacity, clientIpRefillInterval, stripes);
+        this.usernameRejections = meterRegistry.counter(REJECTED_METRIC, "key", "username");
+        this.clientIpRejections = meterRegistry.counter(REJECTED_METRIC, "key", "client-ip");
+    }
+
+    /**
+     * @throws LoginThrottledException when the username or the client IP has no failed attempts left.
+     */
+    public void checkAllowed(Authentication authentication) {
+        String username = username(authentication);
+        Duration usernameWait = this.usernameBuckets.timeUntilAvailable(username);
+        if (!usernameWait.isZero()) {
+            this.usernameRejections.increment();
+            throw new LoginThrottledException("Too many failed logins for this user", usernameWait);
+        }
+        String clientIp = clientIp(authentication);
+        if (clientIp != null) {
+            Duration clientIpWait = this.clientIpBuckets.timeUntilAvailable(clientIp);
+            if (!clientIpWait.isZero()) {
+                this.clientIpRejections.increment();
+                throw new LoginThrottledException("Too many failed logins from this address", clientIpWait);
+            }
+        }
+    }
+
+    public void recordFailure(Authentication authentication) {
+        this.usernameBuckets.consume(username(authentication));
+        String clientIp = clientIp(authentication);
+        if (clientIp != null) {
+            this.clientIpBuckets.consume(clientIp);
+        }
+    }
+
+    private static String username(Authentication authentication) {
+        // Users are looked up ignoring case, so are their buckets.
+        return authentication.getName().toLowerCase(Locale.ROOT);
+    }
+
+    private static String clientIp(Authentication authentication) {
+        return authentication.getDetails() instanceof WebAuthenticationDetails details ? details.getRemoteAddress() : null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.simon.smile.security;
+
+import lombok.Getter;
+import org.springframework.security.core.AuthenticationException;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a login is rejected by the {@link LoginThrottle} before the credentials are checked.
+ */
+@Getter
+public class LoginThrottledException extends AuthenticationException {
+
+    private final Duration retryAfter;
+
+    public LoginThrottledException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,14 @@
+package com.simon.smile.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Thrown when the {@link PasswordHashingExecutor} cannot accept more work.
+ * It is an authentication exception so a rejected Basic login reaches the authentication entry point.
+ */
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+
+    public PasswordHashingBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
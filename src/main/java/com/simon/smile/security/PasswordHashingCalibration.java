@@ -0,0 +1,42 @@
+package com.simon.smile.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+
+/**
+ * Picks the BCrypt work factor from the time a hash takes on this machine.
+ * <p>
+ * Every increment of the work factor doubles the hashing time, so a few hashes at the minimum strength are enough to
+ * extrapolate the strongest work factor that still fits the latency budget.
+ */
+@Slf4j
+final class PasswordHashingCalibration {
+
+    private static final int MAXIMUM_STRENGTH = 31;
+    private static final int SAMPLES = 3;
+
+    private PasswordHashingCalibration() {
+    }
+
+    static int bcryptStrength(Duration latencyBudget, int minimumStrength) {
+        String salt = BCrypt.gensalt("$2a", minimumStrength);
+        long fastestNanos = Long.MAX_VALUE;
+        // The first samples include class loading and JIT compilation, the fastest one is closest to the steady state.
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            fastestNanos = Math.min(fastestNanos, System.nanoTime() - start);
+        }
+        int strength = minimumStrength;
+        long nanos = Math.max(fastestNanos, 1);
+        while (strength < MAXIMUM_STRENGTH && nanos * 2 <= latencyBudget.toNanos()) {
+            nanos *= 2;
+            strength++;
+        }
+        log.info("BCrypt strength {} takes about {} ms per hash, the latency budget is {} ms",
+                strength, Duration.ofNanos(nanos).toMillis(), latencyBudget.toMillis());
+        return strength;
+    }
+}
@@ -0,0 +1,107 @@
+package com.simon.smile.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing and matching on a small, bounded pool so a burst of logins cannot pin every request thread.
+ * <p>
+ * When all threads are busy and the queue is full, the work is rejected with a {@link PasswordHashingBusyException}
+ * instead of waiting. The pool is published as the {@code password.hashing} executor metrics, {@code executor.queued}
+ * being the queue depth.
+ */
+@Slf4j
+@Component
+public class PasswordHashingExecutor {
+
+    private static final String METRIC_NAME = "password.hashing";
+
+    private final ThreadPoolExecutor executor;
+
+    public PasswordHashingExecutor(@Value("${password-hashing.threads}") int threads,
+                                   @Value("${password-hashing.queue-capacity}") int queueCapacity,
+                                   MeterRegistry meterRegistry) {
+        // Hashing is CPU bound, more threads than processors only make every hash slower.
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(this.executor, METRIC_NAME, Tags.empty()).bindTo(meterRegistry);
+        log.info("Password hashing runs on {} threads with a queue of {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * Runs the task on the hashing pool.
+     *
+     * @return a future that fails with {@link PasswordHashingBusyException} when the pool is saturated.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, this.executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new PasswordHashingBusyException("Password hashing queue is full", e));
+        }
+    }
+
+    /**
+     * Runs the task on the hashing pool and waits for its result, or runs it right away when already called from the
+     * hashing pool.
+     *
+     * @throws PasswordHashingBusyException when the pool is saturated.
+     */
+    public <T> T call(Supplier<T> task) {
+        if (isHashingThread()) {
+            return task.get();
+        }
+        try {
+            return supplyAsync(task).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public static boolean isHashingThread() {
+        return Thread.currentThread() instanceof HashingThread;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    private static final class HashingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            HashingThread thread = new HashingThread(runnable, "password-hashing-" + this.threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static final class HashingThread extends Thread {
+
+        private HashingThread(Runnable runnable, String name) {
+            super(runnable, name);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.simon.smile.security;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads and writes a key pair as one PEM file holding a {@code PRIVATE KEY} (PKCS#8) and a
+ * {@code PUBLIC KEY} (X.509) block, the format {@code openssl genpkey} and {@code openssl pkey -pubout} produce.
+ */
+final class PemKeyPairs {
+
+    private static final String PRIVATE_KEY = "PRIVATE KEY";
+    private static final String PUBLIC_KEY = "PUBLIC KEY";
+    private static final String[] KEY_ALGORITHMS = {"RSA", "EC", "Ed25519"};
+
+    private PemKeyPairs() {
+    }
+
+    static KeyPair read(Path file) throws IOException, GeneralSecurityException {
+        String pem = Files.readString(file, StandardCharsets.US_ASCII);
+        X509EncodedKeySpec publicKeySpec = new X509EncodedKeySpec(block(pem, PUBLIC_KEY, file));
+        PKCS8EncodedKeySpec privateKeySpec = new PKCS8EncodedKeySpec(block(pem, PRIVATE_KEY, file));
+        for (String algorithm : KEY_ALGORITHMS) {
+            KeyFactory keyFactory = KeyFactory.getInstance(algorithm);
+            PublicKey publicKey;
+            try {
+                publicKey = keyFactory.generatePublic(publicKeySpec);
+            } catch (InvalidKeySpecException e) {
+                continue;
+            }
+            PrivateKey privateKey = keyFactory.generatePrivate(privateKeySpec);
+            return new KeyPair(publicKey, privateKey);
+        }
+        throw new InvalidKeySpecException("Unsupported key algorithm in " + file);
+    }
+
+    static void write(Path file, KeyPair keyPair) throws IOException {
+        String pem = encode(PRIVATE_KEY, keyPair.getPrivate().getEncoded())
+                + encode(PUBLIC_KEY, keyPair.getPublic().getEncoded());
+        Path directory = file.toAbsolutePath().getParent();
+        // Readable by the owner only from the start, the private key is never exposed while it is written.
+        Path temporaryFile = Files.getFileStore(directory).supportsFileAttributeView("posix")
+                ? Files.createTempFile(directory, file.getFileName().toString(), ".tmp",
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                : Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temporaryFile, pem, StandardCharsets.US_ASCII);
+            // Other nodes scan the same directory, so they must never see a half written file.
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Files.deleteIfExists(temporaryFile);
+            throw ex;
+        }
+    }
+
+    private static byte[] block(String pem, String type, Path file) throws InvalidKeySpecException {
+        Matcher matcher = Pattern.compile("-----BEGIN " + type + "-----(.*?)-----END " + type + "-----", Pattern.DOTALL)
+                .matcher(pem);
+        if (!matcher.find()) {
+            throw new InvalidKeySpecException("No " + type + " block in " + file);
+        }
+        return Base64.getMimeDecoder().decode(matcher.group(1));
+    }
+
+    private static String encode(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+    }
+}
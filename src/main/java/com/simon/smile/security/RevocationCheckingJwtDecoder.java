@@ -0,0 +1,32 @@
+package com.simon.smile.security;
+
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * A {@link JwtDecoder} that rejects tokens found in the {@link TokenDenylist}.
+ * <p>
+ * It wraps the {@link CachingJwtDecoder}, so a token revoked after it was cached is still rejected.
+ */
+public class RevocationCheckingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+
+    private final TokenDenylist tokenDenylist;
+
+    public RevocationCheckingJwtDecoder(JwtDecoder delegate, TokenDenylist tokenDenylist) {
+        this.delegate = delegate;
+        this.tokenDenylist = tokenDenylist;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        Jwt jwt = this.delegate.decode(token);
+        if (jwt.getId() != null && this.tokenDenylist.isRevoked(jwt.getId())) {
+            throw new BadJwtException("Token has been revoked");
+        }
+        return jwt;
+    }
+}
@@ -0,0 +1,34 @@
+package com.simon.smile.security;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A token that was revoked before it expired, identified by its {@code jti} claim.
+ */
+@Entity
+@Table(indexes = {
+        @Index(name = "revoked_token_revoked_at_idx", columnList = "revokedAt"),
+        @Index(name = "revoked_token_expires_at_idx", columnList = "expiresAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class RevokedToken implements Serializable {
+    @Id
+    private String tokenId;
+
+    private Instant expiresAt;
+
+    private Instant revokedAt;
+}
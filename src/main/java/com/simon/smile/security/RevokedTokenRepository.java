@@ -0,0 +1,29 @@
+package com.simon.smile.security;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    List<RevokedToken> findByRevokedAtGreaterThanEqual(Instant revokedAt);
+
+    /**
+     * Inserts the row. Unlike {@code save}, which merges into an existing row, this fails with a
+     * {@link org.springframework.dao.DataIntegrityViolationException} when the token was revoked already.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into revoked_token (token_id, expires_at, revoked_at) values (:tokenId, :expiresAt, :revokedAt)",
+            nativeQuery = true)
+    void insert(String tokenId, Instant expiresAt, Instant revokedAt);
+
+    @Transactional
+    long deleteByExpiresAtBefore(Instant expiresAt);
+}
@@ -1,44 +1,52 @@
 package com.simon.smile.security;
 
-import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.simon.smile.system.FlightRecordingEndpoint;
+import com.simon.smile.system.SlowQueriesEndpoint;
 import com.simon.smile.user.Roles;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.security.web.servlet.util.matcher.MvcRequestMatcher;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.springframework.web.servlet.handler.HandlerMappingIntrospector;
 
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfiguration {
 
-    private final RSAPublicKey publicKey;
-    private final RSAPrivateKey privateKey;
+    private final SigningKeyStore signingKeyStore;
     private final CustomBasicAuthenticationEntryPoint customBasicAuthenticationEntryPoint;
     private final CustomBearerTokenAuthenticationEntryPoint customBearerTokenAuthenticationEntryPoint;
     private final CustomBearerTokenAccessDeniedHandler customBearerTokenAccessDeniedHandler;
@@ -47,50 +55,117 @@ public class SecurityConfiguration {
     @Value("${api.base-url}")
     private String baseUrl;
 
+    @Value("${session.token-cache.maximum-size}")
+    private long tokenCacheMaximumSize;
+
+    @Value("${session.credentials-cache.enabled}")
+    private boolean credentialsCacheEnabled;
+
+    @Value("${session.credentials-cache.time-to-live}")
+    private Duration credentialsCacheTimeToLive;
+
+    @Value("${session.credentials-cache.maximum-size}")
+    private long credentialsCacheMaximumSize;
+
+    @Value("${password-hashing.latency-budget}")
+    private Duration passwordHashingLatencyBudget;
+
+    @Value("${password-hashing.minimum-strength}")
+    private int passwordHashingMinimumStrength;
+
     public SecurityConfiguration(CustomBasicAuthenticationEntryPoint customBasicAuthenticationEntryPoint,
                                  CustomBearerTokenAuthenticationEntryPoint customBearerTokenAuthenticationEntryPoint,
-                                 CustomBearerTokenAccessDeniedHandler customBearerTokenAccessDeniedHandler
-    ) throws NoSuchAlgorithmException {
+                                 CustomBearerTokenAccessDeniedHandler customBearerTokenAccessDeniedHandler,
+                                 SigningKeyStore signingKeyStore
+    ) {
         this.customBasicAuthenticationEntryPoint = customBasicAuthenticationEntryPoint;
         this.customBearerTokenAuthenticationEntryPoint = customBearerTokenAuthenticationEntryPoint;
         this.customBearerTokenAccessDeniedHandler = customBearerTokenAccessDeniedHandler;
-        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-        keyPairGenerator.initialize(2048); // The generated key will have a size of 2048
-        KeyPair keyPair = keyPairGenerator.genKeyPair();
-        this.publicKey = (RSAPublicKey) keyPair.getPublic();
-        this.privateKey = (RSAPrivateKey) keyPair.getPrivate();
+        this.signingKeyStore = signingKeyStore;
     }
 
     @Bean
-    public JwtAuthenticationConverter jwtAuthenticationConverter() {
+    public CachingJwtAuthenticationConverter jwtAuthenticationConverter(MeterRegistry meterRegistry) {
         JwtGrantedAuthoritiesConverter jwtGrantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
         jwtGrantedAuthoritiesConverter.setAuthoritiesClaimName("authorities");
         // default prefix is `SCOPE_`, `SCOPE_ROLE_ADMIN`, so we need set prefix to empty.
         jwtGrantedAuthoritiesConverter.setAuthorityPrefix("");
 
-        JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(jwtGrantedAuthoritiesConverter);
+        CachingJwtAuthenticationConverter jwtAuthenticationConverter =
+                new CachingJwtAuthenticationConverter(jwtGrantedAuthoritiesConverter, this.tokenCacheMaximumSize);
+        CaffeineCacheMetrics.monitor(meterRegistry, jwtAuthenticationConverter.getCache(), "jwt.authorities");
         return jwtAuthenticationConverter;
     }
 
     @Bean
-    public JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withPublicKey(this.publicKey).build();
+    public JwtDecoder jwtDecoder(MeterRegistry meterRegistry, TokenDenylist tokenDenylist) {
+        NimbusJwtDecoder nimbusJwtDecoder = JwtSigningAlgorithm.createDecoder(this.signingKeyStore);
+        // Refresh tokens are signed by the same keys but must not be accepted as access tokens.
+        nimbusJwtDecoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(JwtValidators.createDefault(),
+                new JwtClaimValidator<String>(JwtProvider.TOKEN_USE, tokenUse -> !JwtProvider.REFRESH.equals(tokenUse))));
+        // Signature verification is the expensive part, so verified tokens are cached until they expire.
+        Timer verifyTimer = meterRegistry.timer(JwtProvider.VERIFY_METRIC, JwtProvider.TOKEN_USE, JwtProvider.ACCESS);
+        JwtDecoder timedJwtDecoder = token -> verifyTimer.record(() -> nimbusJwtDecoder.decode(token));
+        CachingJwtDecoder jwtDecoder = new CachingJwtDecoder(timedJwtDecoder, this.tokenCacheMaximumSize);
+        CaffeineCacheMetrics.monitor(meterRegistry, jwtDecoder.getCache(), "jwt.decoder");
+        // Checked after the cache, a cached token may have been revoked since.
+        return new RevocationCheckingJwtDecoder(jwtDecoder, tokenDenylist);
     }
 
     @Bean
-    public JwtEncoder jwtEncoder() {
-        JWK jwk = new RSAKey.Builder(this.publicKey).privateKey(this.privateKey).build(); // JSON Web Key
-        return new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(jwk)));
+    PasswordEncoder passwordEncoder(PasswordHashingExecutor passwordHashingExecutor, MeterRegistry meterRegistry) {
+        int strength = PasswordHashingCalibration.bcryptStrength(this.passwordHashingLatencyBudget, this.passwordHashingMinimumStrength);
+        BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder(strength);
+        // New hashes are stored as `{bcrypt}...`, so a hash is outdated when its id or its BCrypt strength differs.
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bCryptPasswordEncoder));
+        // Hashes stored before the `{id}` prefix was introduced.
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bCryptPasswordEncoder);
+        // Timed on the hashing pool, the time spent waiting in its queue is in the executor metrics.
+        return new OffloadingPasswordEncoder(new TimedPasswordEncoder(passwordEncoder, meterRegistry), passwordHashingExecutor);
     }
 
     @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    DaoAuthenticationProvider authenticationProvider(UserDetailsService userDetailsService,
+                                                     UserDetailsPasswordService userDetailsPasswordService,
+                                                     PasswordEncoder passwordEncoder,
+                                                     PasswordHashingExecutor passwordHashingExecutor,
+                                                     LoginThrottle loginThrottle,
+                                                     MeterRegistry meterRegistry) {
+        UpgradingDaoAuthenticationProvider authenticationProvider =
+                new UpgradingDaoAuthenticationProvider(passwordEncoder, passwordHashingExecutor, userDetailsPasswordService);
+        authenticationProvider.setUserDetailsService(userDetailsService);
+        authenticationProvider.setLoginThrottle(loginThrottle);
+        if (this.credentialsCacheEnabled) {
+            // Clients sending Basic credentials on every request only pay for BCrypt once per time-to-live.
+            VerifiedCredentialsCache verifiedCredentialsCache =
+                    new VerifiedCredentialsCache(this.credentialsCacheTimeToLive, this.credentialsCacheMaximumSize);
+            CaffeineCacheMetrics.monitor(meterRegistry, verifiedCredentialsCache.getCache(), "basic.credentials");
+            authenticationProvider.setVerifiedCredentialsCache(verifiedCredentialsCache);
+        }
+        return authenticationProvider;
+    }
+
+    @Bean
+    @Order(1)
+    SecurityFilterChain loginFilterChain(HttpSecurity httpSecurity, HandlerMappingIntrospector introspector) throws Exception {
+        // No Basic authentication filter here, AuthController checks the credentials on the password hashing executor
+        // so the request thread is released while BCrypt runs.
+        MvcRequestMatcher.Builder mvcMatcher = new MvcRequestMatcher.Builder(introspector);
+        return httpSecurity
+                .securityMatcher(mvcMatcher.pattern(HttpMethod.POST, this.baseUrl + "/login"))
+                .authorizeHttpRequests(request -> request.anyRequest().permitAll())
+                .csrf(AbstractHttpConfigurer::disable)
+                .cors(Customizer.withDefaults())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .build();
     }
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity, HandlerMappingIntrospector introspector) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity,
+                                            HandlerMappingIntrospector introspector,
+                                            CachingJwtAuthenticationConverter jwtAuthenticationConverter,
+                                            ApiQuota apiQuota,
+                                            @Qualifier("handlerExceptionResolver") HandlerExceptionResolver resolver) throws Exception {
         /*
             https://spring.io/security/cve-2023-34035
             The application does not use requestMatchers(String) or requestMatchers(HttpMethod, String)
@@ -104,6 +179,8 @@ public class SecurityConfiguration {
                 mvcMatcher.pattern("/swagger-ui/**"),
                 mvcMatcher.pattern("/v3/api-docs/**"),
                 mvcMatcher.pattern("/v3/api-docs"),
+                mvcMatcher.pattern(HttpMethod.GET, "/.well-known/jwks.json"),
+                mvcMatcher.pattern(HttpMethod.POST, this.baseUrl + "/token/refresh"),
                 mvcMatcher.pattern(HttpMethod.POST, this.baseUrl + "/users"),
                 mvcMatcher.pattern(HttpMethod.GET, this.baseUrl + "/users/current_user")
         };
@@ -114,9 +191,20 @@ public class SecurityConfiguration {
                 mvcMatcher.pattern(HttpMethod.PUT, this.baseUrl + USERS_URI),
                 mvcMatcher.pattern(HttpMethod.DELETE, this.baseUrl + USERS_URI)
         };
+        Map<RequestMatcher, ApiQuotaGroup> quotaGroups = new LinkedHashMap<>();
+        quotaGroups.put(mvcMatcher.pattern(HttpMethod.GET, this.baseUrl + "/users"), ApiQuotaGroup.QUERY);
+        quotaGroups.put(mvcMatcher.pattern(HttpMethod.POST, this.baseUrl + "/users/filter"), ApiQuotaGroup.QUERY);
+        quotaGroups.put(mvcMatcher.pattern(HttpMethod.GET, this.baseUrl + "/**"), ApiQuotaGroup.READ);
+        quotaGroups.put(mvcMatcher.pattern(this.baseUrl + "/**"), ApiQuotaGroup.WRITE);
         return httpSecurity
+                // After the bearer token or Basic credentials are authenticated, so quotas are per user.
+                .addFilterAfter(new ApiQuotaFilter(apiQuota, quotaGroups, resolver), BasicAuthenticationFilter.class)
                 .authorizeHttpRequests(request -> request
                         .requestMatchers(permitAllMatchers).permitAll()
+                        // Recordings hold the usernames of everyone logging in meanwhile.
+                        .requestMatchers(EndpointRequest.to(FlightRecordingEndpoint.class)).hasAuthority(Roles.ROLE_ADMIN.getRole())
+                        // Shows how the schema is queried, and a DELETE resets the statistics.
+                        .requestMatchers(EndpointRequest.to(SlowQueriesEndpoint.class)).hasAuthority(Roles.ROLE_ADMIN.getRole())
 //                        .requestMatchers(userMatchers).hasAnyAuthority(Roles.ROLE_ADMIN.getRole(), Roles.ROLE_USER.getRole())
 //                        .requestMatchers(adminMatchers).hasAuthority(Roles.ROLE_ADMIN.getRole())
                         .requestMatchers(AntPathRequestMatcher.antMatcher("/h2-console/**")).permitAll()
@@ -126,7 +214,7 @@ public class SecurityConfiguration {
                 .headers(headers -> headers.frameOptions(Customizer.withDefaults()).disable())
                 .csrf(AbstractHttpConfigurer::disable)
                 .cors(Customizer.withDefaults())
-                .oauth2ResourceServer(oauth2 -> oauth2.jwt(Customizer.withDefaults())
+                .oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter))
                         .authenticationEntryPoint(customBearerTokenAuthenticationEntryPoint)
                         .accessDeniedHandler(customBearerTokenAccessDeniedHandler))
                 .httpBasic(httpBasic -> httpBasic.authenticationEntryPoint(customBasicAuthenticationEntryPoint))
@@ -0,0 +1,102 @@
+package com.simon.smile.security;
+
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtEncodingException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A {@link JwtEncoder} that signs every token with one private key.
+ * <p>
+ * Unlike {@code NimbusJwtEncoder} this supports EdDSA and does no per-token key selection. The JOSE header is encoded
+ * once, and initialized {@link Signature}s are pooled, so minting a token is one JSON serialization, two Base64URL
+ * encodings and the signature itself. The algorithm is fixed by the key, so any
+ * {@link org.springframework.security.oauth2.jwt.JwsHeader} passed in the parameters is ignored.
+ * <p>
+ * The pool belongs to the encoder, a retired key's signatures are collected with it, where thread locals would have
+ * kept them on every thread that ever minted.
+ */
+public class SigningKeyJwtEncoder implements JwtEncoder {
+
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    // More threads minting at once create a signature each and drop it afterwards.
+    private static final int MAX_POOLED_SIGNATURES = 32;
+
+    private final JWSHeader header;
+
+    // The Base64URL encoded header followed by the '.' that starts the payload.
+    private final String encodedHeader;
+
+    private final JwtSigningAlgorithm algorithm;
+
+    private final PrivateKey privateKey;
+
+    private final ArrayBlockingQueue<Signature> signatures = new ArrayBlockingQueue<>(MAX_POOLED_SIGNATURES);
+
+    public SigningKeyJwtEncoder(JwtSigningAlgorithm algorithm, PrivateKey privateKey, String keyId) {
+        this.header = new JWSHeader.Builder(algorithm.getJwsAlgorithm()).keyID(keyId).build();
+        this.encodedHeader = this.header.toBase64URL() + ".";
+        this.algorithm = algorithm;
+        this.privateKey = privateKey;
+        try {
+            // Fails fast on a key the algorithm can't sign with.
+            this.signatures.offer(algorithm.createSignature(privateKey));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Unsupported signing key: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Jwt encode(JwtEncoderParameters parameters) throws JwtEncodingException {
+        JwtClaimsSet claims = parameters.getClaims();
+        String token = sign(toJwtClaimsSet(claims).toString());
+        return new Jwt(token, claims.getIssuedAt(), claims.getExpiresAt(), this.header.toJSONObject(), claims.getClaims());
+    }
+
+    /**
+     * Signs the claims and returns the compact serialization of the token, the fast path for minting.
+     */
+    public String sign(JwtClaimsWriter claims) throws JwtEncodingException {
+        return sign(claims.toJson());
+    }
+
+    private String sign(String claimsJson) {
+        String signingInput = this.encodedHeader + BASE64_URL.encodeToString(claimsJson.getBytes(StandardCharsets.UTF_8));
+        byte[] signatureBytes;
+        try {
+            Signature jcaSignature = this.signatures.poll();
+            if (jcaSignature == null) {
+                jcaSignature = this.algorithm.createSignature(this.privateKey);
+            }
+            jcaSignature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            signatureBytes = jcaSignature.sign();
+            // sign() resets the signature to the state after initSign, ready for the next token. One that failed is
+            // dropped.
+            this.signatures.offer(jcaSignature);
+        } catch (GeneralSecurityException e) {
+            throw new JwtEncodingException("An error occurred while attempting to encode the Jwt: " + e.getMessage(), e);
+        }
+        return signingInput + "." + BASE64_URL.encodeToString(signatureBytes);
+    }
+
+    private static JWTClaimsSet toJwtClaimsSet(JwtClaimsSet claims) {
+        JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder();
+        // Nimbus expects the registered date claims as java.util.Date.
+        claims.getClaims().forEach((name, value) ->
+                builder.claim(name, value instanceof Instant instant ? Date.from(instant) : value));
+        return builder.build();
+    }
+}
@@ -0,0 +1,298 @@
+package com.simon.smile.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Holds the key pairs tokens are signed and verified with.
+ * <p>
+ * The keys live as {@code <kid>.pem} files in {@code session.signing-keys.location}. When every node points at the
+ * same directory, a token minted by one node is accepted by all of them. The newest active key of the configured
+ * algorithm signs; older keys keep verifying the tokens they signed until those tokens have expired, then they are
+ * deleted. Without a location the keys are only kept in memory.
+ * <p>
+ * The next key is generated two {@code session.signing-keys.refresh-interval}s before the signing key is
+ * {@code session.signing-keys.rotation-period} old, and only becomes active, signing, from then on. Every node has loaded its public key
+ * by the time the first token signed with it arrives. Only the node holding the {@value #ROTATION_LOCK} file in the
+ * directory generates a key, the others pick it up with their next refresh.
+ */
+@Slf4j
+@Component
+public class SigningKeyStore implements JWKSource<SecurityContext> {
+
+    private static final String ROTATION_LOCK = "rotation.lock";
+
+    // Generating a key takes well under a second, a lock this old was left behind by a node that died.
+    private static final Duration STALE_LOCK = Duration.ofMinutes(1);
+
+    private static final int STARTUP_ATTEMPTS = 50;
+
+    private final JwtSigningAlgorithm algorithm;
+
+    private final Path location;
+
+    private final Duration rotationPeriod;
+
+    private final Duration activationDelay;
+
+    private final Duration tokenLifetime;
+
+    private volatile List<SigningKey> keys = List.of();
+
+    private volatile JWKSet publicJwkSet = new JWKSet();
+
+    private volatile String signingKeyId;
+
+    // Set by rotate(), signs right away instead of after the activation delay.
+    private volatile String rotatedKeyId;
+
+    private volatile SigningKeyJwtEncoder encoder;
+
+    public SigningKeyStore(@Value("${session.signing-algorithm}") JwtSigningAlgorithm algorithm,
+                           @Value("${session.signing-keys.location:}") String location,
+                           @Value("${session.signing-keys.rotation-period}") Duration rotationPeriod,
+                           @Value("${session.signing-keys.refresh-interval}") Duration refreshInterval,
+                           @Value("${session.expire-hours}") int expireHours,
+                           @Value("${session.refresh-expire-hours}") int refreshExpireHours) throws IOException, GeneralSecurityException {
+        this.algorithm = algorithm;
+        this.location = StringUtils.hasText(location) ? Path.of(location) : null;
+        this.rotationPeriod = rotationPeriod;
+        // A node may have just missed the new key with one refresh and takes a while to finish the next one.
+        this.activationDelay = refreshInterval.multipliedBy(2);
+        // Refresh tokens are signed by the same keys and usually outlive the access tokens.
+        this.tokenLifetime = Duration.of(Math.max(expireHours, refreshExpireHours), ChronoUnit.HOURS);
+        if (this.location != null) {
+            Files.createDirectories(this.location);
+        }
+        // Nodes starting on an empty directory at the same time wait for the one generating the first key.
+        for (int attempt = 1; ; attempt++) {
+            refresh();
+            if (this.encoder != null) {
+                break;
+            }
+            if (attempt == STARTUP_ATTEMPTS) {
+                throw new IllegalStateException("No signing key was generated in " + this.location);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a signing key", e);
+            }
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        return jwkSelector.select(this.publicJwkSet);
+    }
+
+    /**
+     * Returns the public keys of all keys that may still have signed a valid token.
+     */
+    public JWKSet getPublicJwkSet() {
+        return this.publicJwkSet;
+    }
+
+    /**
+     * Returns the encoder of the current signing key.
+     */
+    public SigningKeyJwtEncoder getEncoder() {
+        return this.encoder;
+    }
+
+    @Scheduled(fixedDelayString = "${session.signing-keys.refresh-interval}",
+            initialDelayString = "${session.signing-keys.refresh-interval}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (IOException | GeneralSecurityException e) {
+            log.warn("Signing keys could not be refreshed, keeping the current keys", e);
+        }
+    }
+
+    /**
+     * Picks up keys written by other nodes, drops the keys whose tokens have all expired, generates the next key when
+     * it is due and switches to it once it is active.
+     */
+    public synchronized void refresh() throws IOException, GeneralSecurityException {
+        Instant now = Instant.now();
+        List<SigningKey> current = current(now);
+        if (isRotationDue(current, now)) {
+            if (this.location == null) {
+                current.add(generate(now));
+            } else if (lock(now)) {
+                try {
+                    // Another node may have rotated since the keys were read.
+                    current = current(now);
+                    if (isRotationDue(current, now)) {
+                        current.add(generate(now));
+                    }
+                } finally {
+                    Files.deleteIfExists(this.location.resolve(ROTATION_LOCK));
+                }
+            }
+        }
+        publish(current, now);
+    }
+
+    /**
+     * Replaces the signing key regardless of the rotation period, e.g. after a key has been compromised.
+     * <p>
+     * This node signs with the new key right away. Other nodes verify tokens signed with it after their next refresh,
+     * and sign with it once it is active.
+     */
+    public synchronized void rotate() throws IOException, GeneralSecurityException {
+        Instant now = Instant.now();
+        List<SigningKey> current = new ArrayList<>(this.keys);
+        SigningKey generated = generate(now);
+        current.add(generated);
+        this.rotatedKeyId = generated.keyId();
+        publish(current, now);
+    }
+
+    private List<SigningKey> current(Instant now) throws IOException, GeneralSecurityException {
+        List<SigningKey> current = new ArrayList<>();
+        for (SigningKey key : this.location == null ? this.keys : load()) {
+            if (isRetired(key, now)) {
+                delete(key);
+            } else {
+                current.add(key);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Creates the lock file, the file system makes sure only one node succeeds.
+     */
+    private boolean lock(Instant now) throws IOException {
+        Path lock = this.location.resolve(ROTATION_LOCK);
+        try {
+            Files.createFile(lock);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            if (Files.getLastModifiedTime(lock).toInstant().plus(STALE_LOCK).isBefore(now)) {
+                log.warn("Removing the stale signing key rotation lock {}", lock);
+                Files.deleteIfExists(lock);
+            }
+            log.debug("Another node is generating the next signing key");
+            return false;
+        }
+    }
+
+    private List<SigningKey> load() throws IOException, GeneralSecurityException {
+        List<SigningKey> loaded = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.location, "*.pem")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                KeyPair keyPair = PemKeyPairs.read(file);
+                loaded.add(new SigningKey(fileName.substring(0, fileName.length() - ".pem".length()),
+                        JwtSigningAlgorithm.forKey(keyPair.getPublic()),
+                        keyPair,
+                        Files.getLastModifiedTime(file).toInstant()));
+            }
+        }
+        return loaded;
+    }
+
+    private SigningKey generate(Instant now) throws IOException, GeneralSecurityException {
+        KeyPair keyPair = this.algorithm.generateKeyPair();
+        String keyId;
+        try {
+            // RFC 7638 thumbprint, identical on every node that loads the same key.
+            keyId = this.algorithm.toPublicJwk(keyPair.getPublic(), null).computeThumbprint().toString();
+        } catch (JOSEException e) {
+            throw new GeneralSecurityException("Couldn't compute the key ID", e);
+        }
+        if (this.location != null) {
+            Path file = this.location.resolve(keyId + ".pem");
+            PemKeyPairs.write(file, keyPair);
+            now = Files.getLastModifiedTime(file).toInstant();
+        }
+        log.info("Generated {} signing key '{}'", this.algorithm, keyId);
+        return new SigningKey(keyId, this.algorithm, keyPair, now);
+    }
+
+    private void delete(SigningKey key) throws IOException {
+        log.info("Removing retired signing key '{}'", key.keyId());
+        if (this.location != null) {
+            Files.deleteIfExists(this.location.resolve(key.keyId() + ".pem"));
+        }
+    }
+
+    private void publish(List<SigningKey> current, Instant now) {
+        current.sort(Comparator.comparing(SigningKey::createdAt).reversed());
+        Optional<SigningKey> signingKey = signingKey(current, now);
+        if (signingKey.isPresent() && !signingKey.get().keyId().equals(this.signingKeyId)) {
+            SigningKey key = signingKey.get();
+            this.signingKeyId = key.keyId();
+            this.encoder = new SigningKeyJwtEncoder(key.algorithm(), key.keyPair().getPrivate(), key.keyId());
+        }
+        this.publicJwkSet = new JWKSet(current.stream()
+                .map(key -> key.algorithm().toPublicJwk(key.keyPair().getPublic(), key.keyId()))
+                .toList());
+        this.keys = List.copyOf(current);
+    }
+
+    /**
+     * The newest active key of the configured algorithm. Only while there is none, e.g. the first key in an empty
+     * directory, the newest key signs right away.
+     */
+    private Optional<SigningKey> signingKey(List<SigningKey> keys, Instant now) {
+        Optional<SigningKey> active = keys.stream()
+                .filter(key -> key.algorithm() == this.algorithm)
+                .filter(key -> key.keyId().equals(this.rotatedKeyId) || !key.createdAt().plus(this.activationDelay).isAfter(now))
+                .max(Comparator.comparing(SigningKey::createdAt));
+        return active.isPresent() ? active : newestOfConfiguredAlgorithm(keys);
+    }
+
+    private Optional<SigningKey> newestOfConfiguredAlgorithm(List<SigningKey> keys) {
+        return keys.stream()
+                .filter(key -> key.algorithm() == this.algorithm)
+                .max(Comparator.comparing(SigningKey::createdAt));
+    }
+
+    /**
+     * Due when there is no key yet, or the newest one becomes {@code rotation-period} old within the activation
+     * delay, so its successor is active by then.
+     */
+    private boolean isRotationDue(List<SigningKey> keys, Instant now) {
+        Optional<SigningKey> newest = newestOfConfiguredAlgorithm(keys);
+        return newest.isEmpty() || !this.rotationPeriod.isZero()
+                && newest.get().createdAt().plus(this.rotationPeriod).minus(this.activationDelay).isBefore(now);
+    }
+
+    private boolean isRetired(SigningKey key, Instant now) {
+        // A key stops signing when its successor is active and the last token it signed expires one token lifetime later.
+        return !this.rotationPeriod.isZero()
+                && key.createdAt().plus(this.rotationPeriod).plus(this.activationDelay).plus(this.tokenLifetime).isBefore(now);
+    }
+
+    private record SigningKey(String keyId, JwtSigningAlgorithm algorithm, KeyPair keyPair, Instant createdAt) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.simon.smile.security;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * A fixed number of lock-free token buckets shared by any number of keys.
+ * <p>
+ * A key is hashed to one of the stripes, so memory stays the same however many distinct keys an attacker makes up.
+ * Keys landing on the same stripe share its bucket, which can only make the limit stricter, never looser.
+ * The hash is seeded per instance so colliding keys can't be precomputed.
+ * <p>
+ * Each bucket is a single {@code long}, its theoretical arrival time (the generic cell rate algorithm): every token
+ * taken pushes it one refill interval into the future, and a token is available while it is at most
+ * {@code capacity - 1} intervals ahead of now. Updates are a compare-and-set on that long.
+ */
+public class StripedTokenBuckets {
+
+    private final AtomicLongArray theoreticalArrivalTimes;
+
+    private final int stripeMask;
+
+    private final long refillIntervalNanos;
+
+    private final long burstToleranceNanos;
+
+    private final long seed = new SecureRandom().nextLong();
+
+    private final LongSupplier nanoClock;
+
+    private final long origin;
+
+    public StripedTokenBuckets(int capacity, Duration refillInterval, int stripes) {
+        this(capacity, refillInterval, stripes, System::nanoTime);
+    }
+
+    StripedTokenBuckets(int capacity, Duration refillInterval, int stripes, LongSupplier nanoClock) {
+        if (capacity < 1 || refillInterval.isNegative() || refillInterval.isZero() || stripes < 1) {
+            throw new IllegalArgumentException("capacity, refill interval and stripes must be positive");
+        }
+        // A power of two, so the stripe is a mask of the hash.
+        int size = Integer.highestOneBit(stripes - 1) << 1;
+        this.theoreticalArrivalTimes = new AtomicLongArray(Math.max(size, 1));
+        this.stripeMask = this.theoreticalArrivalTimes.length() - 1;
+        this.refillIntervalNanos = refillInterval.toNanos();
+        this.burstToleranceNanos = this.refillIntervalNanos * (capacity - 1);
+        this.nanoClock = nanoClock;
+        // Relative to the first reading, a bucket that was never used (0) is full.
+        this.origin = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes a token if one is available.
+     */
+    public boolean tryAcquire(String key) {
+        int stripe = stripe(key);
+        while (true) {
+            long now = now();
+            long current = this.theoreticalArrivalTimes.get(stripe);
+            long start = Math.max(current, now);
+            if (start - now > this.burstToleranceNanos) {
+                return false;
+            }
+            if (this.theoreticalArrivalTimes.compareAndSet(stripe, current, start + this.refillIntervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes a token even if none is available. The bucket never owes more than one token.
+     */
+    public void consume(String key) {
+        int stripe = stripe(key);
+        while (true) {
+            long now = now();
+            long current = this.theoreticalArrivalTimes.get(stripe);
+            long next = Math.min(Math.max(current, now) + this.refillIntervalNanos,
+                    now + this.burstToleranceNanos + this.refillIntervalNanos);
+            if (this.theoreticalArrivalTimes.compareAndSet(stripe, current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns how long until a token is available, zero when one is available now.
+     */
+    public Duration timeUntilAvailable(String key) {
+        long wait = this.theoreticalArrivalTimes.get(stripe(key)) - now() - this.burstToleranceNanos;
+        return wait > 0 ? Duration.ofNanos(wait) : Duration.ZERO;
+    }
+
+    /**
+     * Returns how many tokens are available now.
+     */
+    public long available(String key) {
+        long current = this.theoreticalArrivalTimes.get(stripe(key));
+        long headroom = now() + this.burstToleranceNanos - Math.max(current, now());
+        return headroom < 0 ? 0 : headroom / this.refillIntervalNanos + 1;
+    }
+
+    /**
+     * Returns how long until the bucket is full again, zero when it is full now.
+     */
+    public Duration timeUntilFull(String key) {
+        long wait = this.theoreticalArrivalTimes.get(stripe(key)) - now();
+        return wait > 0 ? Duration.ofNanos(wait) : Duration.ZERO;
+    }
+
+    /**
+     * Returns the duration in whole seconds, as {@code Retry-After} and {@code RateLimit-Reset} take it. Rounded up, so
+     * a client waiting that long doesn't come back too early.
+     */
+    public static long wholeSeconds(Duration duration) {
+        return (duration.toMillis() + 999) / 1000;
+    }
+
+    private long now() {
+        return this.nanoClock.getAsLong() - this.origin;
+    }
+
+    private int stripe(String key) {
+        // FNV-1a with a secret offset basis, then a 64-bit finalizer to spread the bits.
+        long hash = this.seed;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & this.stripeMask;
+    }
+}
@@ -0,0 +1,59 @@
+package com.simon.smile.security;
+
+import com.simon.smile.system.FlightEvents.PasswordEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Times hashing and matching as {@code password.encoder}, tagged by {@code operation}, and emits a
+ * {@link PasswordEvent} for each.
+ */
+class TimedPasswordEncoder implements PasswordEncoder {
+
+    private static final String METRIC_NAME = "password.encoder";
+
+    private final PasswordEncoder delegate;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.encodeTimer = meterRegistry.timer(METRIC_NAME, "operation", "encode");
+        this.matchesTimer = meterRegistry.timer(METRIC_NAME, "operation", "matches");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        PasswordEvent event = begin();
+        String encodedPassword = this.encodeTimer.record(() -> this.delegate.encode(rawPassword));
+        commit(event, "encode");
+        return encodedPassword;
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        PasswordEvent event = begin();
+        boolean matches = Boolean.TRUE.equals(this.matchesTimer.record(() -> this.delegate.matches(rawPassword, encodedPassword)));
+        commit(event, "matches");
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return this.delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private static PasswordEvent begin() {
+        PasswordEvent event = new PasswordEvent();
+        event.begin();
+        return event;
+    }
+
+    private static void commit(PasswordEvent event, String operation) {
+        event.operation = operation;
+        event.commit();
+    }
+}
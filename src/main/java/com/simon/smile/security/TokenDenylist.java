@@ -0,0 +1,123 @@
+package com.simon.smile.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Tokens revoked before they expire, checked for every bearer token.
+ * <p>
+ * The revoked token IDs are persisted in {@link RevokedTokenRepository} and mirrored in an in-memory
+ * {@link BloomFilter}. Almost every token was never revoked, the filter rules those out without touching the
+ * database; only a filter hit (a revoked token, or a rare false positive) is confirmed with a query.
+ * <p>
+ * Every {@code session.revocation.refresh-interval} the filter picks up tokens revoked on other nodes. Every
+ * {@code session.revocation.prune-interval} the rows of expired tokens are deleted and the filter is rebuilt from the
+ * rest, as a Bloom filter can't forget.
+ */
+@Slf4j
+@Component
+public class TokenDenylist {
+
+    // Rows committed by other nodes may carry a slightly earlier revokedAt than the last poll, read a bit further back.
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(30);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final long expectedRevocations;
+
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+
+    private volatile Instant lastRefresh;
+
+    public TokenDenylist(RevokedTokenRepository revokedTokenRepository,
+                         @Value("${session.revocation.expected-revocations}") long expectedRevocations,
+                         @Value("${session.revocation.false-positive-rate}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        rebuild();
+    }
+
+    public void revoke(String tokenId, Instant expiresAt) {
+        this.revokedTokenRepository.save(new RevokedToken(tokenId, expiresAt, Instant.now()));
+        this.filter.put(tokenId);
+    }
+
+    /**
+     * Revokes a token that may only be used once, e.g. a refresh token when it is exchanged.
+     * <p>
+     * The row is inserted instead of merged, the primary key lets exactly one of several concurrent claims of the same
+     * token succeed, on this node or any other.
+     *
+     * @return {@code false} when the token was revoked or claimed already.
+     */
+    public boolean claim(String tokenId, Instant expiresAt) {
+        boolean claimed;
+        try {
+            this.revokedTokenRepository.insert(tokenId, expiresAt, Instant.now());
+            claimed = true;
+        } catch (DataIntegrityViolationException ex) {
+            claimed = false;
+        }
+        this.filter.put(tokenId);
+        return claimed;
+    }
+
+    public boolean isRevoked(String tokenId) {
+        return this.filter.mightContain(tokenId) && this.revokedTokenRepository.existsById(tokenId);
+    }
+
+    /**
+     * Adds the tokens revoked since the last refresh.
+     */
+    @Scheduled(fixedDelayString = "${session.revocation.refresh-interval}",
+            initialDelayString = "${session.revocation.refresh-interval}")
+    public void refresh() {
+        Instant now = Instant.now();
+        addRevokedSince(this.lastRefresh.minus(CLOCK_SKEW));
+        this.lastRefresh = now;
+    }
+
+    /**
+     * Deletes the tokens that have expired meanwhile and rebuilds the filter without them.
+     */
+    @Scheduled(fixedDelayString = "${session.revocation.prune-interval}",
+            initialDelayString = "${session.revocation.prune-interval}")
+    public void prune() {
+        long pruned = this.revokedTokenRepository.deleteByExpiresAtBefore(Instant.now());
+        if (pruned > 0) {
+            log.info("Pruned {} expired revoked tokens", pruned);
+            rebuild();
+        }
+    }
+
+    private synchronized void rebuild() {
+        Instant now = Instant.now();
+        BloomFilter rebuilt = new BloomFilter(this.expectedRevocations, this.falsePositiveRate);
+        List<RevokedToken> revokedTokens = this.revokedTokenRepository.findAll();
+        revokedTokens.forEach(revokedToken -> rebuilt.put(revokedToken.getTokenId()));
+        this.filter = rebuilt;
+        this.lastRefresh = now;
+        // Tokens revoked while the rows were read may only be in the previous filter.
+        addRevokedSince(now.minus(CLOCK_SKEW));
+        if (revokedTokens.size() > this.expectedRevocations) {
+            log.warn("{} revoked tokens exceed the expected {}, the Bloom filter hits the database more often",
+                    revokedTokens.size(), this.expectedRevocations);
+        }
+    }
+
+    private void addRevokedSince(Instant since) {
+        BloomFilter current = this.filter;
+        this.revokedTokenRepository.findByRevokedAtGreaterThanEqual(since)
+                .forEach(revokedToken -> current.put(revokedToken.getTokenId()));
+    }
+}
@@ -0,0 +1,94 @@
+package com.simon.smile.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Re-hashes passwords stored with an outdated encoding after a successful login. Optionally it rejects logins throttled
+ * by a {@link LoginThrottle} before doing any work, and skips the password check for credentials found in a
+ * {@link VerifiedCredentialsCache}.
+ * <p>
+ * {@link DaoAuthenticationProvider} does the same, but hashes the password again before the login returns. Here the
+ * new hash is computed on the {@link PasswordHashingExecutor} in the background, and skipped when it is saturated,
+ * the next login will try again.
+ */
+@Slf4j
+class UpgradingDaoAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private final UserDetailsPasswordService userDetailsPasswordService;
+
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
+    private LoginThrottle loginThrottle;
+
+    UpgradingDaoAuthenticationProvider(PasswordEncoder passwordEncoder,
+                                       PasswordHashingExecutor passwordHashingExecutor,
+                                       UserDetailsPasswordService userDetailsPasswordService) {
+        super(passwordEncoder);
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.userDetailsPasswordService = userDetailsPasswordService;
+    }
+
+    void setVerifiedCredentialsCache(VerifiedCredentialsCache verifiedCredentialsCache) {
+        this.verifiedCredentialsCache = verifiedCredentialsCache;
+    }
+
+    void setLoginThrottle(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (this.loginThrottle == null) {
+            return super.authenticate(authentication);
+        }
+        this.loginThrottle.checkAllowed(authentication);
+        try {
+            return super.authenticate(authentication);
+        } catch (BadCredentialsException e) {
+            // Unknown usernames end up here too, they are reported as bad credentials.
+            this.loginThrottle.recordFailure(authentication);
+            throw e;
+        }
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails, UsernamePasswordAuthenticationToken authentication) {
+        if (this.verifiedCredentialsCache == null || authentication.getCredentials() == null) {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return;
+        }
+        String presentedPassword = authentication.getCredentials().toString();
+        if (this.verifiedCredentialsCache.contains(userDetails, presentedPassword)) {
+            return;
+        }
+        super.additionalAuthenticationChecks(userDetails, authentication);
+        this.verifiedCredentialsCache.put(userDetails, presentedPassword);
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication, UserDetails user) {
+        if (this.passwordEncoder.upgradeEncoding(user.getPassword())) {
+            String presentedPassword = authentication.getCredentials().toString();
+            this.passwordHashingExecutor.supplyAsync(() -> this.passwordEncoder.encode(presentedPassword))
+                    .thenAccept(encodedPassword -> this.userDetailsPasswordService.updatePassword(user, encodedPassword))
+                    .exceptionally(ex -> {
+                        log.warn("Couldn't upgrade the password encoding of user '{}'", user.getUsername(), ex);
+                        return null;
+                    });
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+}
@@ -0,0 +1,81 @@
+package com.simon.smile.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Remembers username and password pairs that have recently passed the password check, so a client sending the same
+ * Basic credentials on every request pays for BCrypt once per time-to-live.
+ * <p>
+ * Only an HMAC of the credentials is kept, under a key that is generated at startup and never leaves the process.
+ * The stored password hash is part of the HMAC, so an entry stops matching as soon as the password changes. A disabled
+ * account is rejected before the password is checked and never reaches this cache.
+ */
+public class VerifiedCredentialsCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> mac;
+
+    private final Cache<String, Boolean> cache;
+
+    public VerifiedCredentialsCache(Duration timeToLive, long maximumSize) {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::createMac);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    public boolean contains(UserDetails user, String presentedPassword) {
+        return this.cache.getIfPresent(hmac(user, presentedPassword)) != null;
+    }
+
+    public void put(UserDetails user, String presentedPassword) {
+        this.cache.put(hmac(user, presentedPassword), Boolean.TRUE);
+    }
+
+    public Cache<String, Boolean> getCache() {
+        return this.cache;
+    }
+
+    private String hmac(UserDetails user, String presentedPassword) {
+        Mac hmac = this.mac.get();
+        update(hmac, user.getUsername());
+        update(hmac, presentedPassword);
+        update(hmac, user.getPassword());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hmac.doFinal());
+    }
+
+    private static void update(Mac hmac, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // Length prefixed, so ("ab", "c") and ("a", "bc") never produce the same input.
+        hmac.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+        hmac.update(bytes);
+    }
+
+    private Mac createMac() {
+        try {
+            Mac hmac = Mac.getInstance(HMAC_ALGORITHM);
+            hmac.init(this.key);
+            return hmac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not supported by this JVM", e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.simon.smile.system;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes {@link AccessLogEvent}s to the {@code access} logger as JSON lines, off the request threads.
+ * <p>
+ * Request threads only put the event into a bounded {@link AccessLogRingBuffer}; a background thread formats and
+ * writes them. When the writer falls behind and the buffer is full, events are dropped rather than slowing requests
+ * down, and counted as {@code access.log.dropped}. {@code access.log.queued} is the backlog of the writer.
+ */
+@Slf4j
+@Component
+public class AccessLog {
+
+    private static final Logger ACCESS_LOGGER = LoggerFactory.getLogger("access");
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AccessLogRingBuffer<AccessLogEvent> buffer;
+
+    private final ObjectMapper objectMapper;
+
+    private final Counter dropped;
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    public AccessLog(AccessLogProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.buffer = new AccessLogRingBuffer<>(properties.bufferCapacity());
+        this.objectMapper = objectMapper;
+        this.dropped = meterRegistry.counter("access.log.dropped");
+        Gauge.builder("access.log.queued", this.buffer, AccessLogRingBuffer::size).register(meterRegistry);
+        this.writer = new Thread(this::drain, "access-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the event for the writer, never blocks.
+     *
+     * @return false when the event was dropped because the writer is behind.
+     */
+    public boolean offer(AccessLogEvent event) {
+        if (this.buffer.offer(event)) {
+            return true;
+        }
+        this.dropped.increment();
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.running = false;
+        LockSupport.unpark(this.writer);
+        this.writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void drain() {
+        while (this.running) {
+            if (!writeAvailable()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        // Flush what was queued before the shutdown.
+        writeAvailable();
+    }
+
+    private boolean writeAvailable() {
+        boolean written = false;
+        AccessLogEvent event;
+        while ((event = this.buffer.poll()) != null) {
+            write(event);
+            written = true;
+        }
+        return written;
+    }
+
+    private void write(AccessLogEvent event) {
+        try {
+            ACCESS_LOGGER.info(this.objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException | RuntimeException e) {
+            // The writer thread must survive a single broken event.
+            log.warn("Access log event could not be written", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.simon.smile.system;
+
+import java.time.Instant;
+
+/**
+ * One request as it is written to the access log.
+ *
+ * @param requestBody  the redacted start of the request body, {@code null} when bodies of the route aren't logged.
+ * @param responseBody the redacted start of the response body, {@code null} when bodies of the route aren't logged.
+ */
+public record AccessLogEvent(Instant time,
+                             String method,
+                             String path,
+                             String query,
+                             int status,
+                             long durationMicros,
+                             String user,
+                             String clientIp,
+                             long requestSize,
+                             long responseSize,
+                             String requestBody,
+                             String responseBody) {
+}
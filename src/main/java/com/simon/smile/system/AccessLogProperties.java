@@ -0,0 +1,85 @@
+package com.simon.smile.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The {@code access-log} settings of the {@link LogFilter}.
+ *
+ * @param mode           whether bodies are streamed through a tee or buffered in full.
+ * @param sampleRate     the fraction of successful requests that are logged, requests failing with 4xx or 5xx are
+ *                       always logged.
+ * @param maxBodySize    how much of each body is logged at most.
+ * @param maxRequestSize larger request bodies are rejected, unlimited when not set.
+ * @param teeBuffers     the pooled buffers of {@code max-body-size} streamed bodies are captured into, a body is not
+ *                       logged while all of them are in use.
+ * @param bufferCapacity the events waiting for the writer, further events are dropped and counted.
+ * @param redactedFields JSON fields whose values are masked in logged bodies.
+ * @param bodies         which bodies are logged for routes no rule matches.
+ * @param bodyRules      which bodies are logged per route, the first matching rule wins.
+ * @param capture        where requests are captured for a replay.
+ */
+@ConfigurationProperties("access-log")
+public record AccessLogProperties(boolean enabled,
+                                  Mode mode,
+                                  double sampleRate,
+                                  DataSize maxBodySize,
+                                  DataSize maxRequestSize,
+                                  int teeBuffers,
+                                  int bufferCapacity,
+                                  List<String> redactedFields,
+                                  Bodies bodies,
+                                  List<BodyRule> bodyRules,
+                                  Capture capture) {
+
+    public AccessLogProperties {
+        redactedFields = redactedFields == null ? List.of() : List.copyOf(redactedFields);
+        bodyRules = bodyRules == null ? List.of() : List.copyOf(bodyRules);
+        bodies = bodies == null ? Bodies.BOTH : bodies;
+        mode = mode == null ? Mode.STREAMING : mode;
+        capture = capture == null ? new Capture(false, null, null) : capture;
+    }
+
+    public enum Mode {
+        /**
+         * Bodies pass straight through, only their first {@code max-body-size} bytes are copied for the log.
+         */
+        STREAMING,
+        /**
+         * Responses are held in memory until the handler is done, so they can be logged before they are sent.
+         */
+        BUFFERED
+    }
+
+    public enum Bodies {
+        NONE, REQUEST, RESPONSE, BOTH;
+
+        boolean request() {
+            return this == REQUEST || this == BOTH;
+        }
+
+        boolean response() {
+            return this == RESPONSE || this == BOTH;
+        }
+    }
+
+    /**
+     * @param method  the HTTP method, any method when empty.
+     * @param pattern an Ant-style path pattern.
+     */
+    public record BodyRule(String method, String pattern, Bodies bodies) {
+    }
+
+    /**
+     * Captures every request, whether sampled or not, with its request body whatever the body rules say. Bodies
+     * longer than {@code max-body-size} are cut off.
+     *
+     * @param file    the NDJSON file requests are appended to.
+     * @param maxSize capturing stops once the file is this large.
+     */
+    public record Capture(boolean enabled, Path file, DataSize maxSize) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.simon.smile.system;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producers and consumers, the array based queue of Dmitry Vyukov.
+ * <p>
+ * Every slot carries a sequence number telling whether it is free for the producer of a position or holds the
+ * element for the consumer of that position. Producers and consumers claim positions with a compare-and-set on their
+ * counter, nobody ever blocks: {@link #offer(Object)} fails when the buffer is full instead of waiting.
+ */
+final class AccessLogRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> elements;
+
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong tail = new AtomicLong();
+
+    AccessLogRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        // A power of two, so the slot is a mask of the position.
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        size = Math.max(size, 1);
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds the element unless the buffer is full.
+     */
+    boolean offer(E element) {
+        while (true) {
+            long position = this.tail.get();
+            int slot = (int) position & this.mask;
+            long difference = this.sequences.get(slot) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.elements.lazySet(slot, element);
+                    this.sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element, {@code null} when the buffer is empty.
+     */
+    E poll() {
+        while (true) {
+            long position = this.head.get();
+            int slot = (int) position & this.mask;
+            long difference = this.sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (this.head.compareAndSet(position, position + 1)) {
+                    E element = this.elements.get(slot);
+                    this.elements.lazySet(slot, null);
+                    this.sequences.set(slot, position + this.mask + 1);
+                    return element;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+        }
+    }
+
+    int size() {
+        return (int) Math.max(0, this.tail.get() - this.head.get());
+    }
+
+    int capacity() {
+        return this.mask + 1;
+    }
+}
@@ -0,0 +1,45 @@
+package com.simon.smile.system;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Masks the values of sensitive JSON fields, such as passwords and tokens, before a body is logged.
+ * <p>
+ * Works on the text, so it also masks a value cut off at the end of a truncated body.
+ */
+final class BodyRedactor {
+
+    private static final String MASK = "******";
+
+    private final Pattern pattern;
+
+    BodyRedactor(List<String> fields) {
+        if (fields.isEmpty()) {
+            this.pattern = null;
+            return;
+        }
+        String names = fields.stream().map(Pattern::quote).collect(Collectors.joining("|"));
+        // "name" : "value", an escaped quote doesn't end the value and neither does the end of a truncated body.
+        this.pattern = Pattern.compile("(\"(?:" + names + ")\"\\s*:\\s*)(\"(?:\\\\.|[^\"\\\\])*(?:\"|$)|[^,}\\]\\s]+)",
+                Pattern.CASE_INSENSITIVE);
+    }
+
+    String redact(String body) {
+        if (this.pattern == null || body == null || body.isEmpty()) {
+            return body;
+        }
+        Matcher matcher = this.pattern.matcher(body);
+        if (!matcher.find()) {
+            return body;
+        }
+        StringBuilder redacted = new StringBuilder(body.length());
+        do {
+            matcher.appendReplacement(redacted, Matcher.quoteReplacement(matcher.group(1) + "\"" + MASK + "\""));
+        } while (matcher.find());
+        matcher.appendTail(redacted);
+        return redacted.toString();
+    }
+}
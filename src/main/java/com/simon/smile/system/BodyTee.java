@@ -0,0 +1,66 @@
+package com.simon.smile.system;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Counts the bytes of a body streamed through it and keeps a copy of the first ones in a pooled buffer.
+ */
+final class BodyTee {
+
+    private final TeeBufferPool pool;
+
+    private final AtomicReference<byte[]> buffer;
+
+    private int captured;
+
+    private long size;
+
+    /**
+     * @param pool where to take the buffer from, {@code null} to only count the bytes.
+     */
+    BodyTee(TeeBufferPool pool) {
+        this.pool = pool;
+        this.buffer = new AtomicReference<>(pool == null ? null : pool.acquire());
+    }
+
+    void write(int b) {
+        byte[] bytes = this.buffer.get();
+        if (bytes != null && this.captured < bytes.length) {
+            bytes[this.captured++] = (byte) b;
+        }
+        this.size++;
+    }
+
+    void write(byte[] b, int off, int len) {
+        byte[] bytes = this.buffer.get();
+        if (bytes != null && this.captured < bytes.length) {
+            int length = Math.min(len, bytes.length - this.captured);
+            System.arraycopy(b, off, bytes, this.captured, length);
+            this.captured += length;
+        }
+        this.size += len;
+    }
+
+    long size() {
+        return this.size;
+    }
+
+    /**
+     * Decodes the captured start of the body, {@code null} when nothing was captured.
+     */
+    String text(Charset charset) {
+        byte[] bytes = this.buffer.get();
+        return bytes == null || this.captured == 0 ? null : new String(bytes, 0, this.captured, charset);
+    }
+
+    /**
+     * Returns the buffer to the pool, only the first call does.
+     */
+    void release() {
+        byte[] bytes = this.buffer.getAndSet(null);
+        if (bytes != null) {
+            this.pool.release(bytes);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.simon.smile.system;
+
+import java.time.Instant;
+
+/**
+ * One request as it is written to the traffic capture, one JSON object per line, for replaying it later.
+ *
+ * @param time          when the request arrived.
+ * @param authorization only the scheme of the {@code Authorization} header, e.g. {@code Bearer}, never the
+ *                      credentials; the replay brings its own.
+ * @param body          the request body with the {@code access-log.redacted-fields} masked, {@code null} when empty.
+ * @param bodyTruncated whether the body was longer than {@code access-log.max-body-size} and only its start was
+ *                      captured.
+ * @param status        the status the request was answered with.
+ */
+public record CapturedRequest(Instant time,
+                              String method,
+                              String path,
+                              String query,
+                              String authorization,
+                              String contentType,
+                              String body,
+                              boolean bodyTruncated,
+                              int status,
+                              long durationMicros) {
+}
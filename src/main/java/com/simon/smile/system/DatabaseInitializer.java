@@ -3,19 +3,42 @@ package com.simon.smile.system;
 import com.simon.smile.user.AppUser;
 import com.simon.smile.user.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 import static com.simon.smile.user.Roles.ROLE_ADMIN;
 import static com.simon.smile.user.Roles.ROLE_USER;
 
 @Component
 @RequiredArgsConstructor
 public class DatabaseInitializer implements CommandLineRunner {
+    /*
+      UserRepository.findByUsernameOrEmailIgnoreCase compares lower(username) and lower(email).
+      Hibernate only creates plain indexes, so the expression indexes are created here.
+     */
+    private static final List<String> CASE_INSENSITIVE_INDEXES = List.of(
+            "create index if not exists app_user_lower_username_idx on app_user (lower(username))",
+            "create index if not exists app_user_lower_email_idx on app_user (lower(email))");
+
     private final UserService userService;
 
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.datasource.url}")
+    private String datasourceUrl;
+
     @Override
     public void run(String... args) throws Exception {
+        // H2 doesn't support expression indexes, it's only used for tests.
+        if (DatabaseDriver.fromJdbcUrl(datasourceUrl) == DatabaseDriver.POSTGRESQL) {
+            CASE_INSENSITIVE_INDEXES.forEach(jdbcTemplate::execute);
+        }
+        userService.backfillRoleMasks();
         if (userService.findByUsername("admin").isPresent())
             return;
         var admin = new AppUser()
@@ -0,0 +1,99 @@
+package com.simon.smile.system;
+
+import com.simon.smile.system.FlightEvents.MethodCallEvent;
+import com.simon.smile.system.FlightEvents.RepositoryCallEvent;
+import com.simon.smile.system.FlightEvents.ServiceCallEvent;
+import com.simon.smile.user.UserService;
+import com.simon.smile.user.address.AddressService;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Emits a {@link ServiceCallEvent} for every call of the {@link UserService} and {@link AddressService} and a
+ * {@link RepositoryCallEvent} for every repository call.
+ */
+@Configuration
+public class FlightEventConfiguration {
+
+    private static final Set<Class<?>> RECORDED_SERVICES = Set.of(UserService.class, AddressService.class);
+
+    @Bean
+    static BeanPostProcessor serviceCallFlightEvents() {
+        StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return method.getDeclaringClass() != Object.class;
+            }
+        };
+        pointcut.setClassFilter(RECORDED_SERVICES::contains);
+        MethodInterceptor interceptor = methodCallInterceptor(ServiceCallEvent::new,
+                invocation -> ClassUtils.getUserClass(invocation.getThis()).getSimpleName());
+        return new AdvisingPostProcessor(new DefaultPointcutAdvisor(pointcut, interceptor));
+    }
+
+    @Bean
+    static BeanPostProcessor repositoryCallFlightEvents() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repositoryFactoryBean) {
+                    repositoryFactoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> {
+                                // Named after the repository interface, not the Spring Data interface declaring the method.
+                                String type = repositoryInformation.getRepositoryInterface().getSimpleName();
+                                proxyFactory.addAdvice(0, methodCallInterceptor(RepositoryCallEvent::new, invocation -> type));
+                            }));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static MethodInterceptor methodCallInterceptor(Supplier<MethodCallEvent> eventFactory,
+                                                           Function<MethodInvocation, String> typeName) {
+        return invocation -> {
+            MethodCallEvent event = eventFactory.get();
+            if (!event.isEnabled()) {
+                return invocation.proceed();
+            }
+            event.begin();
+            try {
+                return invocation.proceed();
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.type = typeName.apply(invocation);
+                    event.method = invocation.getMethod().getName();
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds the advisor to the transaction proxies of the services, the services are {@code @Transactional} so no
+     * further proxy is created.
+     */
+    private static final class AdvisingPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+        private AdvisingPostProcessor(Advisor advisor) {
+            this.advisor = advisor;
+            setBeforeExistingAdvisors(true);
+            setProxyTargetClass(true);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.simon.smile.system;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The application's Java Flight Recorder events, so a recording shows which logins, tokens and queries a CPU spike
+ * or a pause coincides with.
+ * <p>
+ * Creating an event is cheap and JFR drops events that are not enabled or shorter than their threshold, so they are
+ * emitted unconditionally:
+ * <pre>{@code
+ * LoginEvent event = new LoginEvent();
+ * event.begin();
+ * ...
+ * event.username = username;
+ * event.commit();
+ * }</pre>
+ */
+public final class FlightEvents {
+
+    private static final String CATEGORY = "Smile";
+
+    private FlightEvents() {
+    }
+
+    @Name("com.simon.smile.Login")
+    @Label("Login")
+    @Description("Building the user info and tokens of an authenticated user")
+    @Category({CATEGORY, "Security"})
+    @StackTrace(false)
+    public static final class LoginEvent extends Event {
+
+        @Label("Username")
+        public String username;
+    }
+
+    @Name("com.simon.smile.TokenMint")
+    @Label("Token Mint")
+    @Description("Signing an access or refresh token")
+    @Category({CATEGORY, "Security"})
+    @StackTrace(false)
+    public static final class TokenMintEvent extends Event {
+
+        @Label("Token Use")
+        public String tokenUse;
+
+        @Label("Subject")
+        public String subject;
+    }
+
+    @Name("com.simon.smile.Password")
+    @Label("Password Hashing")
+    @Description("Hashing or matching a password")
+    @Category({CATEGORY, "Security"})
+    @StackTrace(false)
+    public static final class PasswordEvent extends Event {
+
+        @Label("Operation")
+        public String operation;
+    }
+
+    /**
+     * A method call of a Spring bean, the service or repository that was called and its method.
+     */
+    @StackTrace(false)
+    public abstract static class MethodCallEvent extends Event {
+
+        @Label("Type")
+        public String type;
+
+        @Label("Method")
+        public String method;
+    }
+
+    @Name("com.simon.smile.ServiceCall")
+    @Label("Service Call")
+    @Description("A call of a UserService or AddressService method")
+    @Category({CATEGORY, "Application"})
+    public static final class ServiceCallEvent extends MethodCallEvent {
+    }
+
+    @Name("com.simon.smile.RepositoryCall")
+    @Label("Repository Call")
+    @Description("A call of a Spring Data repository method, including the statements it ran")
+    @Category({CATEGORY, "Database"})
+    public static final class RepositoryCallEvent extends MethodCallEvent {
+    }
+}
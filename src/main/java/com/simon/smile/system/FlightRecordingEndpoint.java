@@ -0,0 +1,164 @@
+package com.simon.smile.system;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * {@code /actuator/flightrecording}: one Java Flight Recorder recording at a time, including the {@link FlightEvents}
+ * of the application. {@code POST .../start} starts it, {@code POST .../dump} writes what was recorded so far to the
+ * {@code flight-recording.directory} and {@code POST .../stop} stops it and writes it there. Only admins may use it.
+ * <p>
+ * Recordings are bounded by {@code flight-recording.max-size} and {@code max-age} and stop by themselves after
+ * {@code max-duration}, a forgotten recording doesn't fill the disk. Requests that don't fit the state of the
+ * recording, e.g. a second start, are rejected with 400 Bad Request.
+ */
+@Component
+@Endpoint(id = "flightrecording")
+public class FlightRecordingEndpoint {
+
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final FlightRecordingProperties properties;
+
+    private Recording recording;
+
+    public FlightRecordingEndpoint(FlightRecordingProperties properties) {
+        this.properties = properties;
+    }
+
+    @ReadOperation
+    public synchronized Status status() {
+        return Status.of(this.recording, null);
+    }
+
+    /**
+     * @param action   {@code start}, {@code dump} or {@code stop}.
+     * @param duration how long a started recording runs, at most and by default {@code max-duration}.
+     * @param settings the JFR configuration a recording starts with, {@code flight-recording.settings} by default.
+     */
+    @WriteOperation
+    public synchronized Status control(@Selector String action, @Nullable Duration duration, @Nullable String settings) {
+        return switch (action) {
+            case "start" -> start(duration, settings);
+            case "dump" -> Status.of(this.recording, dump(requireRunning()));
+            case "stop" -> stop();
+            default -> throw new IllegalArgumentException(String.format("Unknown action: %s", action));
+        };
+    }
+
+    private Status start(@Nullable Duration duration, @Nullable String settings) {
+        if (this.recording != null && this.recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalArgumentException("A recording is already running");
+        }
+        Duration maxDuration = this.properties.maxDuration();
+        if (duration != null && duration.compareTo(maxDuration) > 0) {
+            throw new IllegalArgumentException(String.format("The duration is limited to %s", maxDuration));
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings == null ? this.properties.settings() : settings);
+        } catch (IOException | ParseException ex) {
+            throw new IllegalArgumentException(String.format("Unknown JFR settings: %s", settings), ex);
+        }
+        if (this.recording != null) {
+            this.recording.close();
+        }
+        Recording recording = new Recording(configuration);
+        recording.setName("smile");
+        recording.setToDisk(true);
+        recording.setMaxSize(this.properties.maxSize().toBytes());
+        recording.setMaxAge(this.properties.maxAge());
+        recording.setDuration(duration == null ? maxDuration : duration);
+        // Written there when the duration runs out.
+        try {
+            recording.setDestination(nextFile());
+        } catch (IOException ex) {
+            recording.close();
+            throw new UncheckedIOException(ex);
+        }
+        recording.start();
+        this.recording = recording;
+        return Status.of(recording, null);
+    }
+
+    private Status stop() {
+        Recording recording = requireRunning();
+        Path destination = recording.getDestination();
+        // Stopping writes the recording to its destination and closes it.
+        recording.stop();
+        return Status.of(recording, destination);
+    }
+
+    private Path dump(Recording recording) {
+        Path file = nextFile();
+        try {
+            recording.dump(file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return file;
+    }
+
+    private Recording requireRunning() {
+        if (this.recording == null || this.recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalArgumentException("No recording is running");
+        }
+        return this.recording;
+    }
+
+    private Path nextFile() {
+        Path directory = this.properties.directory();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        String name = "smile-" + LocalDateTime.now().format(FILE_NAME_FORMAT);
+        Path file = directory.resolve(name + ".jfr").toAbsolutePath();
+        // Dumps within the same second, and the destination of the running recording, which is only written when it
+        // stops.
+        for (int i = 1; Files.exists(file) || file.equals(destination()); i++) {
+            file = directory.resolve(name + "-" + i + ".jfr").toAbsolutePath();
+        }
+        return file;
+    }
+
+    @Nullable
+    private Path destination() {
+        return this.recording == null ? null : this.recording.getDestination();
+    }
+
+    /**
+     * @param state the {@link RecordingState}: {@code RUNNING} while recording, {@code CLOSED} once stopped, as the
+     *              recording is written to its file and closed then.
+     * @param file  the file written by this request, if any.
+     */
+    public record Status(String state, @Nullable Instant startTime, @Nullable Duration duration,
+                         @Nullable Long size, @Nullable String file) {
+
+        static Status of(@Nullable Recording recording, @Nullable Path file) {
+            if (recording == null) {
+                return new Status(RecordingState.NEW.name(), null, null, null, null);
+            }
+            return new Status(recording.getState().name(), recording.getStartTime(), recording.getDuration(),
+                    recording.getSize(), file == null ? null : file.toString());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.simon.smile.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The {@code flight-recording} settings of the {@link FlightRecordingEndpoint}.
+ *
+ * @param directory   where recordings are dumped to.
+ * @param settings    the JFR configuration recordings start with, {@code default} or {@code profile}.
+ * @param maxSize     how much recorded data is kept in memory and on disk, older data is dropped first.
+ * @param maxAge      how long recorded data is kept, older data is dropped first.
+ * @param maxDuration recordings are stopped and dumped after this long, also the longest duration a recording can be
+ *                    started with.
+ */
+@ConfigurationProperties("flight-recording")
+public record FlightRecordingProperties(Path directory,
+                                        String settings,
+                                        DataSize maxSize,
+                                        Duration maxAge,
+                                        Duration maxDuration) {
+}
@@ -1,42 +1,323 @@
 package com.simon.smile.system;
 
+import com.simon.smile.system.AccessLogProperties.Bodies;
+import com.simon.smile.system.AccessLogProperties.BodyRule;
+import com.simon.smile.system.AccessLogProperties.Mode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebFilter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.springframework.web.util.ContentCachingRequestWrapper;
 import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Records every request as an {@link AccessLogEvent} and hands it to the {@link AccessLog}.
+ * <p>
+ * Bodies are only captured for routes whose {@code access-log.body-rules} ask for them, at most
+ * {@code access-log.max-body-size} of each, with the {@code access-log.redacted-fields} masked. Successful requests
+ * are sampled by {@code access-log.sample-rate}, failed ones are always recorded.
+ * <p>
+ * In the {@code streaming} mode the bodies pass straight through and a {@link BodyTee} copies their start into a
+ * buffer of a fixed pool, {@code access.log.tee.available} being the free buffers. The {@code buffered} mode keeps
+ * each response in memory until the handler is done. Either way, request bodies declared larger than
+ * {@code access-log.max-request-size} are rejected before they are read.
+ * <p>
+ * With {@code access-log.capture.enabled}, every request is also handed to the {@link TrafficCapture}, with its
+ * request body whatever the body rules say.
+ */
 @Component
 @WebFilter(urlPatterns = "/*")
-@Slf4j
 public class LogFilter extends OncePerRequestFilter {
+
+    private static final String START_TIME_ATTRIBUTE = LogFilter.class.getName() + ".START_TIME";
+
+    private final AccessLogProperties properties;
+
+    private final AccessLog accessLog;
+
+    private final TrafficCapture trafficCapture;
+
+    private final BodyRedactor bodyRedactor;
+
+    private final HandlerExceptionResolver resolver;
+
+    private final int maxBodySize;
+
+    private final long maxRequestSize;
+
+    private final TeeBufferPool teeBufferPool;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public LogFilter(AccessLogProperties properties,
+                     AccessLog accessLog,
+                     TrafficCapture trafficCapture,
+                     @Qualifier("handlerExceptionResolver") HandlerExceptionResolver resolver,
+                     MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.accessLog = accessLog;
+        this.trafficCapture = trafficCapture;
+        this.resolver = resolver;
+        this.bodyRedactor = new BodyRedactor(properties.redactedFields());
+        this.maxBodySize = (int) Math.min(Integer.MAX_VALUE, properties.maxBodySize().toBytes());
+        this.maxRequestSize = properties.maxRequestSize() == null ? Long.MAX_VALUE : properties.maxRequestSize().toBytes();
+        this.teeBufferPool = properties.mode() == Mode.STREAMING
+                ? new TeeBufferPool(properties.teeBuffers(), this.maxBodySize)
+                : null;
+        if (this.teeBufferPool != null) {
+            Gauge.builder("access.log.tee.available", this.teeBufferPool, TeeBufferPool::available).register(meterRegistry);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !this.properties.enabled();
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // Asynchronous handlers write their response during the async dispatch, that is where it must be logged.
+        return false;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (request.getAttribute(START_TIME_ATTRIBUTE) == null) {
+            request.setAttribute(START_TIME_ATTRIBUTE, System.nanoTime());
+            // Reject what is known to be too large before a single byte of it is read.
+            if (request.getContentLengthLong() > this.maxRequestSize) {
+                this.resolver.resolveException(request, response, null, new RequestBodyTooLargeException(
+                        "Request body is larger than " + this.maxRequestSize + " bytes"));
+                this.accessLog.offer(event(request, response, request.getContentLengthLong(), -1, null, null));
+                return;
+            }
+        }
+        if (this.teeBufferPool != null) {
+            doFilterStreaming(request, response, filterChain);
+        } else {
+            doFilterBuffered(request, response, filterChain);
+        }
+    }
+
+    private void doFilterStreaming(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        // The async dispatch receives the wrappers of the initial dispatch, reuse them to keep counting.
+        TeeRequestWrapper req = WebUtils.getNativeRequest(request, TeeRequestWrapper.class);
+        TeeResponseWrapper resp = WebUtils.getNativeResponse(response, TeeResponseWrapper.class);
+        if (req == null || resp == null) {
+            Bodies bodies = bodies(request);
+            boolean teeRequest = bodies.request() || this.trafficCapture.isEnabled();
+            req = new TeeRequestWrapper(request, teeRequest ? this.teeBufferPool : null, this.maxRequestSize);
+            resp = new TeeResponseWrapper(response, bodies.response() ? this.teeBufferPool : null);
+        }
+
+        boolean asyncStarted = false;
+        try {
+            filterChain.doFilter(req, resp);
+            resp.flushWriter();
+
+            // The response is not written yet, the async dispatch logs it.
+            asyncStarted = isAsyncStarted(req);
+            if (asyncStarted) {
+                // Frees the buffers of requests that time out or fail before the async dispatch.
+                req.getAsyncContext().addListener(new ReleaseTees(req.getTee(), resp.getTee()));
+                return;
+            }
+
+            BodyTee requestTee = req.getTee();
+            if (isSampled(resp.getStatus())) {
+                this.accessLog.offer(event(req, resp,
+                        requestTee.size() > 0 ? requestTee.size() : req.getContentLengthLong(),
+                        resp.getTee().size(),
+                        isRequestBodyLogged(req) ? redact(requestTee.text(StandardCharsets.UTF_8)) : null,
+                        redact(resp.getTee().text(StandardCharsets.UTF_8))));
+            }
+            if (this.trafficCapture.isEnabled()) {
+                String requestBody = requestTee.text(StandardCharsets.UTF_8);
+                // Not captured at all when every tee buffer was in use.
+                capture(req, resp, requestBody,
+                        requestTee.size() > this.maxBodySize || requestBody == null && requestTee.size() > 0);
+            }
+        } finally {
+            if (!asyncStarted) {
+                req.getTee().release();
+                resp.getTee().release();
+            }
+        }
+    }
+
+    private void doFilterBuffered(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Bodies bodies = bodies(request);
 
-        ContentCachingRequestWrapper req = new ContentCachingRequestWrapper(request);
-        ContentCachingResponseWrapper resp = new ContentCachingResponseWrapper(response);
+        // The async dispatch receives the wrappers of the initial dispatch, reuse them to keep the cached content.
+        HttpServletRequest req = request;
+        HttpServletResponse resp = response;
+        if (bodies.request() || this.trafficCapture.isEnabled()) {
+            ContentCachingRequestWrapper cachedRequest = WebUtils.getNativeRequest(request, ContentCachingRequestWrapper.class);
+            req = cachedRequest != null ? cachedRequest : new ContentCachingRequestWrapper(request, this.maxBodySize);
+        }
+        if (bodies.response()) {
+            ContentCachingResponseWrapper cachedResponse = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+            resp = cachedResponse != null ? cachedResponse : new ContentCachingResponseWrapper(response);
+        }
 
         // Execution request chain
         filterChain.doFilter(req, resp);
 
-        // Get cache
-        byte[] requestBody = req.getContentAsByteArray();
-        byte[] responseBody = resp.getContentAsByteArray();
+        // The response is not written yet, the async dispatch logs it.
+        if (isAsyncStarted(req)) {
+            return;
+        }
+
+        try {
+            if (isSampled(resp.getStatus())) {
+                String requestBody = null;
+                String responseBody = null;
+                long responseSize = -1;
+                if (bodies.request() && req instanceof ContentCachingRequestWrapper cachedRequest) {
+                    requestBody = body(cachedRequest.getContentAsByteArray());
+                }
+                if (resp instanceof ContentCachingResponseWrapper cachedResponse) {
+                    responseBody = body(cachedResponse.getContentAsByteArray());
+                    responseSize = cachedResponse.getContentSize();
+                }
+                this.accessLog.offer(event(req, resp, req.getContentLengthLong(), responseSize, requestBody, responseBody));
+            }
+            if (this.trafficCapture.isEnabled() && req instanceof ContentCachingRequestWrapper cachedRequest) {
+                byte[] requestContent = cachedRequest.getContentAsByteArray();
+                capture(req, resp, requestContent.length == 0 ? null : new String(requestContent, StandardCharsets.UTF_8),
+                        req.getContentLengthLong() > requestContent.length);
+            }
+        } finally {
+            // Finally respond to the client with the cached data.
+            if (resp instanceof ContentCachingResponseWrapper cachedResponse) {
+                cachedResponse.copyBodyToResponse();
+            }
+        }
+    }
+
+    private Bodies bodies(HttpServletRequest request) {
+        String path = path(request);
+        for (BodyRule rule : this.properties.bodyRules()) {
+            if ((!StringUtils.hasText(rule.method()) || rule.method().equalsIgnoreCase(request.getMethod()))
+                    && this.pathMatcher.match(rule.pattern(), path)) {
+                return rule.bodies();
+            }
+        }
+        return this.properties.bodies();
+    }
+
+    private boolean isRequestBodyLogged(HttpServletRequest request) {
+        // Only when capturing are request bodies teed for routes whose rules don't ask for them.
+        return !this.trafficCapture.isEnabled() || bodies(request).request();
+    }
+
+    private boolean isSampled(int status) {
+        return status >= 400 || ThreadLocalRandom.current().nextDouble() < this.properties.sampleRate();
+    }
+
+    private AccessLogEvent event(HttpServletRequest request, HttpServletResponse response,
+                                 long requestSize, long responseSize, String requestBody, String responseBody) {
+        long startTime = (long) request.getAttribute(START_TIME_ATTRIBUTE);
+        return new AccessLogEvent(Instant.now(),
+                request.getMethod().toUpperCase(Locale.ROOT),
+                path(request),
+                request.getQueryString(),
+                response.getStatus(),
+                (System.nanoTime() - startTime) / 1000,
+                user(),
+                request.getRemoteAddr(),
+                requestSize,
+                responseSize,
+                requestBody,
+                responseBody);
+    }
+
+    private void capture(HttpServletRequest request, HttpServletResponse response, String body, boolean bodyTruncated) {
+        long durationMicros = (System.nanoTime() - (long) request.getAttribute(START_TIME_ATTRIBUTE)) / 1000;
+        this.trafficCapture.offer(new CapturedRequest(Instant.now().minus(durationMicros, ChronoUnit.MICROS),
+                request.getMethod().toUpperCase(Locale.ROOT),
+                path(request),
+                request.getQueryString(),
+                authorizationScheme(request),
+                request.getContentType(),
+                redact(body),
+                bodyTruncated,
+                response.getStatus(),
+                durationMicros));
+    }
+
+    private String body(byte[] content) {
+        // Only the start of a large body is decoded, the whole body is never turned into a String.
+        if (content.length == 0) {
+            return null;
+        }
+        int length = Math.min(content.length, this.maxBodySize);
+        return redact(new String(content, 0, length, StandardCharsets.UTF_8));
+    }
+
+    private String redact(String body) {
+        return body == null ? null : this.bodyRedactor.redact(body);
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String authorizationScheme(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (!StringUtils.hasText(authorization)) {
+            return null;
+        }
+        int end = authorization.indexOf(' ');
+        return end < 0 ? authorization : authorization.substring(0, end);
+    }
+
+    private static String user() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null || authentication instanceof AnonymousAuthenticationToken ? null : authentication.getName();
+    }
+
+    private record ReleaseTees(BodyTee requestTee, BodyTee responseTee) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            this.requestTee.release();
+            this.responseTee.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
 
-        log.info("request URI = {} {}", req.getMethod().toUpperCase(Locale.ROOT), req.getRequestURL());
-        log.info("request body = {}", new String(requestBody, StandardCharsets.UTF_8));
-        log.info("response body = {}", new String(responseBody, StandardCharsets.UTF_8));
+        @Override
+        public void onError(AsyncEvent event) {
+        }
 
-        // Finally respond to the client with the cached data.
-        resp.copyBodyToResponse();
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
     }
 }
@@ -0,0 +1,11 @@
+package com.simon.smile.system;
+
+/**
+ * Thrown when a request body is larger than {@code access-log.max-request-size}.
+ */
+public class RequestBodyTooLargeException extends RuntimeException {
+
+    public RequestBodyTooLargeException(String message) {
+        super(message);
+    }
+}
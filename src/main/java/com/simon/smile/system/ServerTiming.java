@@ -0,0 +1,173 @@
+package com.simon.smile.system;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Where the time of one request went, sent back as a {@code Server-Timing} header and published by the
+ * {@link ServerTimingFilter}.
+ * <p>
+ * The filter, the {@link ServerTimingInterceptor} and the {@link ServerTimingAdvice} mark the boundaries of the
+ * request; code running on the request thread adds its own share with {@link #record(Phase, long)}. A request is only
+ * ever handled by one thread at a time, so nothing here is synchronized.
+ */
+public final class ServerTiming {
+
+    static final String ATTRIBUTE = ServerTiming.class.getName();
+
+    public enum Phase {
+        /**
+         * The filters ahead of the handler, mostly the security filter chain decoding tokens or matching passwords.
+         */
+        SECURITY,
+        /**
+         * The controller method, including the {@link #DB} and {@link #CONVERT} time it spent.
+         */
+        HANDLER,
+        /**
+         * Repository calls.
+         */
+        DB,
+        /**
+         * Entity to DTO conversion, measured once per entity or collection by {@link #convert} and
+         * {@link #convertAll}.
+         */
+        CONVERT,
+        /**
+         * Writing the response body as JSON, too late for the header so only published as a metric.
+         */
+        SERIALIZE,
+        TOTAL;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final long startTime = System.nanoTime();
+
+    private final long[] durations = new long[Phase.values().length];
+
+    private final boolean headerRequested;
+
+    private long handlerStartTime;
+
+    private long bodyWriteStartTime;
+
+    private boolean headerWritten;
+
+    ServerTiming(boolean headerRequested) {
+        this.headerRequested = headerRequested;
+    }
+
+    /**
+     * Adds the time since {@code startTime}, a {@link System#nanoTime()}, to the phase of the current request. Does
+     * nothing outside a request thread.
+     */
+    public static void record(Phase phase, long startTime) {
+        add(phase, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Adds the duration to the phase of the current request. Does nothing outside a request thread.
+     */
+    public static void add(Phase phase, long nanos) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null && attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof ServerTiming timing) {
+            timing.durations[phase.ordinal()] += nanos;
+        }
+    }
+
+    /**
+     * Converts an entity, recording the time as {@link Phase#CONVERT}.
+     */
+    public static <T, R> R convert(T source, Function<? super T, ? extends R> converter) {
+        long startTime = System.nanoTime();
+        R converted = converter.apply(source);
+        record(Phase.CONVERT, startTime);
+        return converted;
+    }
+
+    /**
+     * Converts every entity, recording the time once for the whole collection rather than per element.
+     */
+    public static <T, R> List<R> convertAll(Collection<? extends T> sources, Function<? super T, ? extends R> converter) {
+        long startTime = System.nanoTime();
+        List<R> converted = sources.stream().<R>map(converter).toList();
+        record(Phase.CONVERT, startTime);
+        return converted;
+    }
+
+    long duration(Phase phase) {
+        return this.durations[phase.ordinal()];
+    }
+
+    boolean isHeaderRequested() {
+        return this.headerRequested;
+    }
+
+    boolean isHeaderWritten() {
+        return this.headerWritten;
+    }
+
+    void markHandlerStart() {
+        // The async dispatch of a handler enters again, the handler started with the first dispatch.
+        if (this.handlerStartTime == 0) {
+            long now = System.nanoTime();
+            this.handlerStartTime = now;
+            this.durations[Phase.SECURITY.ordinal()] = now - this.startTime;
+        }
+    }
+
+    void markBodyWriteStart() {
+        long now = System.nanoTime();
+        this.bodyWriteStartTime = now;
+        if (this.handlerStartTime != 0) {
+            this.durations[Phase.HANDLER.ordinal()] = now - this.handlerStartTime;
+        }
+    }
+
+    void markBodyWriteEnd() {
+        if (this.bodyWriteStartTime != 0) {
+            this.durations[Phase.SERIALIZE.ordinal()] = System.nanoTime() - this.bodyWriteStartTime;
+            this.bodyWriteStartTime = 0;
+        }
+    }
+
+    void finish() {
+        long total = System.nanoTime() - this.startTime;
+        this.durations[Phase.TOTAL.ordinal()] = total;
+        // Rejected before reaching a handler, the filters took all the time.
+        if (this.handlerStartTime == 0) {
+            this.durations[Phase.SECURITY.ordinal()] = total;
+        }
+    }
+
+    /**
+     * Formats the phases measured so far, e.g. {@code security;dur=0.41, handler;dur=3.2, db;dur=2.75}.
+     */
+    String toHeader() {
+        this.headerWritten = true;
+        StringBuilder header = new StringBuilder(96);
+        for (Phase phase : Phase.values()) {
+            long nanos = this.durations[phase.ordinal()];
+            if (nanos > 0) {
+                if (!header.isEmpty()) {
+                    header.append(", ");
+                }
+                // Milliseconds with microsecond precision.
+                long micros = nanos / 1000;
+                header.append(phase.tag).append(";dur=").append(micros / 1000).append('.');
+                long fraction = micros % 1000;
+                if (fraction < 100) {
+                    header.append(fraction < 10 ? "00" : "0");
+                }
+                header.append(fraction);
+            }
+        }
+        return header.toString();
+    }
+}
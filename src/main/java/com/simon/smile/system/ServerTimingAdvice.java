@@ -0,0 +1,43 @@
+package com.simon.smile.system;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds the {@code Server-Timing} header right before a response body is written, the last moment headers can be
+ * set. The serialization that follows is timed until the {@link ServerTimingInterceptor} sees the request complete.
+ */
+@RestControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    private final ServerTimingFilter serverTimingFilter;
+
+    public ServerTimingAdvice(ServerTimingFilter serverTimingFilter) {
+        this.serverTimingFilter = serverTimingFilter;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest
+                && servletRequest.getServletRequest().getAttribute(ServerTiming.ATTRIBUTE) instanceof ServerTiming timing) {
+            timing.markBodyWriteStart();
+            if (this.serverTimingFilter.isHeaderAllowed(timing)) {
+                response.getHeaders().set(ServerTimingFilter.HEADER, timing.toHeader());
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,43 @@
+package com.simon.smile.system;
+
+import com.simon.smile.system.ServerTiming.Phase;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wires the {@link ServerTiming} phases into Spring MVC and Spring Data.
+ */
+@Configuration
+public class ServerTimingConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ServerTimingInterceptor());
+    }
+
+    /**
+     * Adds the time of every repository call to the {@link Phase#DB} phase, the same listener Spring Boot times the
+     * {@code spring.data.repository.invocations} with.
+     */
+    @Bean
+    static BeanPostProcessor serverTimingRepositoryListener() {
+        RepositoryMethodInvocationListener listener =
+                invocation -> ServerTiming.add(Phase.DB, invocation.getDuration(TimeUnit.NANOSECONDS));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repositoryFactoryBean) {
+                    repositoryFactoryBean.addRepositoryFactoryCustomizer(factory -> factory.addInvocationListener(listener));
+                }
+                return bean;
+            }
+        };
+    }
+}
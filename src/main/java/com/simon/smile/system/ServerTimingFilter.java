@@ -0,0 +1,111 @@
+package com.simon.smile.system;
+
+import com.simon.smile.system.ServerTiming.Phase;
+import com.simon.smile.user.Roles;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the phases of every request into a {@link ServerTiming} and publishes them as the
+ * {@code http.server.phases} timer, tagged by {@code phase} and {@code handler}.
+ * <p>
+ * The {@code Server-Timing} header is sent on every response when {@code server-timing.header-enabled} is set, or
+ * to admins sending the {@code server-timing.request-header}. Runs ahead of the security filter chain so the time
+ * spent there is measured too.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    static final String HEADER = "Server-Timing";
+
+    private static final String METRIC_NAME = "http.server.phases";
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean headerEnabled;
+
+    private final String requestHeader;
+
+    public ServerTimingFilter(MeterRegistry meterRegistry,
+                              @Value("${server-timing.header-enabled}") boolean headerEnabled,
+                              @Value("${server-timing.request-header}") String requestHeader) {
+        this.meterRegistry = meterRegistry;
+        this.headerEnabled = headerEnabled;
+        this.requestHeader = requestHeader;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // Asynchronous handlers finish during the async dispatch, that is where the phases are complete.
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        ServerTiming timing = (ServerTiming) request.getAttribute(ServerTiming.ATTRIBUTE);
+        if (timing == null) {
+            timing = new ServerTiming(this.headerEnabled
+                    || StringUtils.hasText(this.requestHeader) && request.getHeader(this.requestHeader) != null);
+            request.setAttribute(ServerTiming.ATTRIBUTE, timing);
+        }
+
+        filterChain.doFilter(request, response);
+
+        if (isAsyncStarted(request)) {
+            return;
+        }
+        timing.finish();
+        // Responses without a body written by a controller or an exception handler.
+        if (!timing.isHeaderWritten() && !response.isCommitted() && isHeaderAllowed(timing)) {
+            response.setHeader(HEADER, timing.toHeader());
+        }
+        publish(timing, HandlerObservationConvention.handlerName(request));
+    }
+
+    /**
+     * Whether the phases may be shown to the caller, checked once the caller is authenticated.
+     */
+    boolean isHeaderAllowed(ServerTiming timing) {
+        if (!timing.isHeaderRequested()) {
+            return false;
+        }
+        if (this.headerEnabled) {
+            return true;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(Roles.ROLE_ADMIN.getRole()::equals);
+    }
+
+    private void publish(ServerTiming timing, String handler) {
+        for (Phase phase : Phase.values()) {
+            long nanos = timing.duration(phase);
+            // Phases a request didn't go through would only drag the percentiles down.
+            if (nanos > 0) {
+                Timer.builder(METRIC_NAME)
+                        .tag("phase", phase.tag)
+                        .tag("handler", handler)
+                        .register(this.meterRegistry)
+                        .record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
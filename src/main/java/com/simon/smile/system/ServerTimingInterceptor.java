@@ -0,0 +1,26 @@
+package com.simon.smile.system;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Marks where the handler of a request starts and where writing its body ends.
+ */
+class ServerTimingInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(ServerTiming.ATTRIBUTE) instanceof ServerTiming timing) {
+            timing.markHandlerStart();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ServerTiming.ATTRIBUTE) instanceof ServerTiming timing) {
+            timing.markBodyWriteEnd();
+        }
+    }
+}
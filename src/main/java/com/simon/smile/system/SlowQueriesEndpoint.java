@@ -0,0 +1,40 @@
+package com.simon.smile.system;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@code /actuator/slowqueries}: the statements that took the most time, by {@code orderBy} {@code total} (the
+ * default), {@code mean}, {@code max} or {@code count}. A {@code DELETE} starts over.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+@ConditionalOnProperty("slow-query.enabled")
+public class SlowQueriesEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueriesEndpoint(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @ReadOperation
+    public List<SlowQueryLog.Entry> slowQueries(@Nullable Integer limit, @Nullable String orderBy) {
+        SlowQueryLog.Order order = orderBy == null ? SlowQueryLog.Order.TOTAL : SlowQueryLog.Order.valueOf(orderBy.toUpperCase(Locale.ROOT));
+        return this.slowQueryLog.top(limit == null ? DEFAULT_LIMIT : limit, order);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        this.slowQueryLog.reset();
+    }
+}
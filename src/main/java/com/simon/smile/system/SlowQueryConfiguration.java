@@ -0,0 +1,40 @@
+package com.simon.smile.system;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Routes the statements of the data source through the {@link SlowQueryLog}.
+ */
+@Configuration
+@ConditionalOnProperty("slow-query.enabled")
+public class SlowQueryConfiguration {
+
+    @Bean
+    static BeanPostProcessor slowQueryDataSourceProxy(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Already proxied for another listener, e.g. the statement counter of the tests.
+                if (bean instanceof ProxyDataSource proxyDataSource) {
+                    proxyDataSource.getProxyConfig().getQueryListener().addListener(slowQueryLog.getObject());
+                    return bean;
+                }
+                // The pool stays reachable through unwrap(), its metrics are still bound.
+                if (bean instanceof DataSource dataSource) {
+                    return ProxyDataSourceBuilder.create(beanName, dataSource)
+                            .listener(slowQueryLog.getObject())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
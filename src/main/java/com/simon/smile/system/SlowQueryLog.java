@@ -0,0 +1,274 @@
+package com.simon.smile.system;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Times every JDBC statement and keeps the count, total and maximum time per {@link SqlFingerprint}.
+ * <p>
+ * Statements taking at least {@code slow-query.threshold} are logged to the {@code slow-query} logger with their
+ * bind parameters and the repository method that ran them. Finding the caller walks the stack, so only slow
+ * statements pay for it; fast ones cost two clock reads and a map lookup.
+ */
+@Slf4j(topic = "slow-query")
+@Component
+@ConditionalOnProperty("slow-query.enabled")
+public class SlowQueryLog implements QueryExecutionListener {
+
+    private static final String OTHER = "(other)";
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    // Statements run one at a time per thread, so one slot per thread holds the start time.
+    private final ThreadLocal<long[]> startTime = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final long thresholdNanos;
+
+    private final int maxFingerprints;
+
+    private final boolean logParameters;
+
+    private final int maxParameterLength;
+
+    private final Set<String> redactedColumns;
+
+    // The same SQL is sent over and over, so it is only fingerprinted once.
+    private final Map<String, Statistics> statisticsBySql = new ConcurrentHashMap<>();
+
+    private final Map<String, Statistics> statisticsByFingerprint = new ConcurrentHashMap<>();
+
+    private final Statistics other = new Statistics(OTHER);
+
+    public SlowQueryLog(SlowQueryProperties properties) {
+        this.thresholdNanos = properties.threshold().toNanos();
+        this.maxFingerprints = properties.maxFingerprints();
+        this.logParameters = properties.logParameters();
+        this.maxParameterLength = properties.maxParameterLength();
+        this.redactedColumns = properties.redactedColumns().stream()
+                .map(column -> column.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        this.startTime.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsed = System.nanoTime() - this.startTime.get()[0];
+        if (queryInfoList.isEmpty()) {
+            return;
+        }
+        // A batch of several statements is one round trip, its time is shared out evenly.
+        long share = elapsed / queryInfoList.size();
+        for (QueryInfo queryInfo : queryInfoList) {
+            statistics(queryInfo.getQuery()).record(share, share >= this.thresholdNanos);
+        }
+        if (elapsed >= this.thresholdNanos) {
+            QueryInfo queryInfo = queryInfoList.get(0);
+            Statistics statistics = statistics(queryInfo.getQuery());
+            log.warn("Slow query {} took {} ms in {}: {}{}", statistics.id,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    caller(),
+                    queryInfo.getQuery(),
+                    this.logParameters ? " " + parameters(queryInfo) : "");
+        }
+    }
+
+    /**
+     * Returns the fingerprints with the highest {@code order} first.
+     */
+    public List<Entry> top(int limit, Order order) {
+        Comparator<Entry> comparator = switch (order) {
+            case TOTAL -> Comparator.comparingDouble(Entry::totalMillis);
+            case MEAN -> Comparator.comparingDouble(Entry::meanMillis);
+            case MAX -> Comparator.comparingDouble(Entry::maxMillis);
+            case COUNT -> Comparator.comparingLong(Entry::count);
+        };
+        return Stream.concat(this.statisticsByFingerprint.values().stream(), Stream.of(this.other))
+                .filter(statistics -> statistics.count.sum() > 0)
+                .map(Statistics::toEntry)
+                .sorted(comparator.reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Forgets all statistics, e.g. after a fix has been deployed.
+     */
+    public void reset() {
+        this.statisticsBySql.clear();
+        this.statisticsByFingerprint.clear();
+        this.other.reset();
+    }
+
+    private Statistics statistics(String sql) {
+        Statistics statistics = this.statisticsBySql.get(sql);
+        if (statistics != null) {
+            return statistics;
+        }
+        String fingerprint = SqlFingerprint.of(sql);
+        statistics = this.statisticsByFingerprint.get(fingerprint);
+        if (statistics == null) {
+            if (this.statisticsByFingerprint.size() >= this.maxFingerprints) {
+                return this.other;
+            }
+            statistics = this.statisticsByFingerprint.computeIfAbsent(fingerprint, Statistics::new);
+        }
+        if (this.statisticsBySql.size() < this.maxFingerprints * 4) {
+            this.statisticsBySql.put(sql, statistics);
+        }
+        return statistics;
+    }
+
+    private String parameters(QueryInfo queryInfo) {
+        List<List<ParameterSetOperation>> parametersList = queryInfo.getParametersList();
+        if (parametersList.isEmpty()) {
+            return "[]";
+        }
+        List<String> columns = this.redactedColumns.isEmpty() ? List.of() : SqlFingerprint.parameterColumns(queryInfo.getQuery());
+        StringBuilder parameters = new StringBuilder("[");
+        List<ParameterSetOperation> operations = parametersList.get(0).stream()
+                .sorted(Comparator.comparingInt(operation -> (Integer) operation.getArgs()[0]))
+                .toList();
+        for (ParameterSetOperation operation : operations) {
+            Object[] args = operation.getArgs();
+            int index = (Integer) args[0];
+            if (parameters.length() > 1) {
+                parameters.append(", ");
+            }
+            parameters.append(index).append('=');
+            if (ParameterSetOperation.isSetNullParameterOperation(operation)) {
+                parameters.append("null");
+            } else if (index <= columns.size() && this.redactedColumns.contains(columns.get(index - 1))) {
+                parameters.append("******");
+            } else {
+                parameters.append(truncate(args.length > 1 ? args[1] : null));
+            }
+        }
+        parameters.append(']');
+        if (parametersList.size() > 1) {
+            parameters.append(" and ").append(parametersList.size() - 1).append(" more");
+        }
+        return parameters.toString();
+    }
+
+    private String truncate(Object value) {
+        String text = value instanceof byte[] bytes ? "<" + bytes.length + " bytes>" : String.valueOf(value);
+        return text.length() <= this.maxParameterLength ? text : text.substring(0, this.maxParameterLength) + "...";
+    }
+
+    /**
+     * The repository method that ran the statement, or the first application method when none did, e.g. when
+     * Hibernate loads a lazy association or flushes at the end of a transaction.
+     */
+    private static String caller() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> isRepositoryProxy(frame.getDeclaringClass())
+                        || frame.getClassName().startsWith("com.simon.smile.")
+                        && !frame.getClassName().startsWith(SlowQueryLog.class.getPackageName() + "."))
+                .findFirst()
+                .map(frame -> simpleName(frame.getDeclaringClass()) + "." + frame.getMethodName())
+                .orElse("unknown"));
+    }
+
+    private static boolean isRepositoryProxy(Class<?> type) {
+        return Proxy.isProxyClass(type) && Repository.class.isAssignableFrom(type);
+    }
+
+    private static String simpleName(Class<?> type) {
+        if (isRepositoryProxy(type)) {
+            // Named after the repository interface the proxy implements.
+            return Arrays.stream(type.getInterfaces())
+                    .filter(Repository.class::isAssignableFrom)
+                    .findFirst()
+                    .orElse(type)
+                    .getSimpleName();
+        }
+        return ClassUtils.getUserClass(type).getSimpleName();
+    }
+
+    public enum Order {
+        TOTAL, MEAN, MAX, COUNT
+    }
+
+    /**
+     * @param slowCount how many of the executions took at least the threshold.
+     */
+    public record Entry(String id, String fingerprint, long count, long slowCount,
+                        double totalMillis, double meanMillis, double maxMillis) {
+    }
+
+    private static final class Statistics {
+
+        private final String fingerprint;
+
+        private final String id;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder slowCount = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Statistics(String fingerprint) {
+            this.fingerprint = fingerprint;
+            this.id = SqlFingerprint.id(fingerprint);
+        }
+
+        private void record(long nanos, boolean slow) {
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            if (slow) {
+                this.slowCount.increment();
+            }
+            // Only written when a new maximum is seen, which becomes rare quickly.
+            long max = this.maxNanos.get();
+            while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+                max = this.maxNanos.get();
+            }
+        }
+
+        private void reset() {
+            this.count.reset();
+            this.slowCount.reset();
+            this.totalNanos.reset();
+            this.maxNanos.set(0);
+        }
+
+        private Entry toEntry() {
+            long count = this.count.sum();
+            long totalNanos = this.totalNanos.sum();
+            return new Entry(this.id, this.fingerprint, count, this.slowCount.sum(),
+                    millis(totalNanos), count == 0 ? 0 : millis(totalNanos / count), millis(this.maxNanos.get()));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
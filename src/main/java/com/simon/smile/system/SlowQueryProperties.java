@@ -0,0 +1,29 @@
+package com.simon.smile.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The {@code slow-query} settings of the {@link SlowQueryLog}.
+ *
+ * @param threshold          statements taking at least this long are logged.
+ * @param maxFingerprints    the distinct statements kept for the {@code slowqueries} endpoint, further ones are
+ *                           counted together.
+ * @param logParameters      whether the bind parameters of slow statements are logged.
+ * @param maxParameterLength how much of each bind parameter is logged at most.
+ * @param redactedColumns    columns whose bind parameters are masked.
+ */
+@ConfigurationProperties("slow-query")
+public record SlowQueryProperties(boolean enabled,
+                                  Duration threshold,
+                                  int maxFingerprints,
+                                  boolean logParameters,
+                                  int maxParameterLength,
+                                  List<String> redactedColumns) {
+
+    public SlowQueryProperties {
+        redactedColumns = redactedColumns == null ? List.of() : List.copyOf(redactedColumns);
+    }
+}
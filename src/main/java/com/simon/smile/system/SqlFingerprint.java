@@ -0,0 +1,67 @@
+package com.simon.smile.system;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a SQL statement to its shape, so statements only differing in their literals are counted together.
+ */
+final class SqlFingerprint {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.$])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Pattern INSERT = Pattern.compile("(?is)^\\s*insert\\s+into\\s+\\S+\\s*\\(([^)]*)\\)\\s*values\\s*\\(([^)]*)\\)");
+
+    private static final Pattern COMPARED_COLUMN = Pattern.compile("(?i)(?:(\\w+)\\s*(?:=|<>|!=|<=|>=|<|>|\\blike\\b)\\s*)?\\?");
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * E.g. {@code select * from app_user where id in (1, 2, 3) and name = 'x'} becomes
+     * {@code select * from app_user where id in (?+) and name = ?}.
+     */
+    static String of(String sql) {
+        String fingerprint = STRING_LITERAL.matcher(sql).replaceAll("?");
+        fingerprint = NUMBER_LITERAL.matcher(fingerprint).replaceAll("?");
+        fingerprint = IN_LIST.matcher(fingerprint).replaceAll("in (?+)");
+        return WHITESPACE.matcher(fingerprint).replaceAll(" ").trim();
+    }
+
+    /**
+     * Guesses the column each {@code ?} of the statement is bound to, from the column list of an insert or the
+     * column a parameter is compared with or assigned to; {@code null} where it can't tell.
+     */
+    static List<String> parameterColumns(String sql) {
+        Matcher insert = INSERT.matcher(sql);
+        if (insert.find() && insert.group(2).replaceAll("[\\s?,]", "").isEmpty()) {
+            return Arrays.stream(insert.group(1).split(","))
+                    .map(column -> column.trim().toLowerCase(Locale.ROOT))
+                    .toList();
+        }
+        List<String> columns = new ArrayList<>();
+        Matcher parameter = COMPARED_COLUMN.matcher(sql);
+        while (parameter.find()) {
+            String column = parameter.group(1);
+            columns.add(column == null ? null : column.toLowerCase(Locale.ROOT));
+        }
+        return columns;
+    }
+
+    /**
+     * A short ID to find the log lines of a fingerprint by.
+     */
+    static String id(String fingerprint) {
+        return String.format("%08x", fingerprint.hashCode());
+    }
+}
@@ -0,0 +1,128 @@
+package com.simon.smile.system;
+
+import com.simon.smile.user.Roles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.IntSupplier;
+
+/**
+ * Generates users and addresses that look like production data: mostly enabled users with a few admins, names and
+ * e-mail domains of varied frequency, and a Poisson distributed number of addresses per user, the first one being
+ * the default.
+ * <p>
+ * Usernames and e-mails end with the user ID, so they stay unique however often the generator runs.
+ */
+final class SyntheticData {
+
+    private static final String[] FIRST_NAMES = {"Wei", "Fang", "Jing", "Lei", "Min", "Yan", "Jun", "Tao", "Ming",
+            "Xiu", "Hui", "Qiang", "Alice", "Bob", "Carol", "David", "Emma", "Frank", "Grace", "Henry", "Iris", "Jack"};
+
+    private static final String[] LAST_NAMES = {"Wang", "Li", "Zhang", "Liu", "Chen", "Yang", "Huang", "Zhao", "Wu",
+            "Zhou", "Xu", "Sun", "Smith", "Brown", "Jones", "Miller", "Davis", "Garcia", "Wilson", "Taylor"};
+
+    // Earlier domains are more frequent.
+    private static final String[] DOMAINS = {"example.com", "example.com", "example.com", "example.org",
+            "example.org", "example.net", "mail.example.com", "corp.example.com"};
+
+    private static final String[] STREETS = {"Century", "Nanjing", "Huaihai", "Zhongshan", "Renmin", "Jiefang",
+            "Heping", "Changan", "Xinhua", "Dongfeng", "Park", "Lake", "River", "Station"};
+
+    private static final String[] DISTRICTS = {"Pudong", "Xuhui", "Jingan", "Haidian", "Chaoyang", "Tianhe",
+            "Futian", "Nanshan", "Wuhou", "Jiangbei"};
+
+    private static final String[] CITIES = {"Shanghai", "Shanghai", "Beijing", "Beijing", "Guangzhou", "Shenzhen",
+            "Chengdu", "Hangzhou", "Wuhan", "Chongqing"};
+
+    private static final int[] MOBILE_PREFIXES = {13, 15, 17, 18, 19};
+
+    private static final String USER_ROLES = Roles.ROLE_USER.getRole();
+
+    private static final String ADMIN_ROLES = Roles.ROLE_ADMIN.getRole();
+
+    private static final int MAXIMUM_ADDRESSES = 50;
+
+    private final SplittableRandom random;
+
+    private final double poissonLimit;
+
+    private final List<String> passwordHashes;
+
+    /**
+     * @param addressesPerUser the mean number of addresses of a user.
+     * @param passwordHashes   the hashes the users' passwords are picked from.
+     */
+    SyntheticData(long seed, double addressesPerUser, List<String> passwordHashes) {
+        this.random = new SplittableRandom(seed);
+        this.poissonLimit = Math.exp(-addressesPerUser);
+        this.passwordHashes = List.copyOf(passwordHashes);
+    }
+
+    /**
+     * Generates the next users and their addresses, with the IDs taken from the suppliers.
+     */
+    Batch next(int users, IntSupplier userIds, IntSupplier addressIds) {
+        List<UserRow> userRows = new ArrayList<>(users);
+        List<AddressRow> addressRows = new ArrayList<>();
+        for (int user = 0; user < users; user++) {
+            int userId = userIds.getAsInt();
+            userRows.add(user(userId));
+            int addresses = addressCount();
+            for (int index = 0; index < addresses; index++) {
+                addressRows.add(address(addressIds.getAsInt(), userId, index == 0));
+            }
+        }
+        return new Batch(userRows, addressRows);
+    }
+
+    private UserRow user(int id) {
+        String firstName = pick(FIRST_NAMES);
+        String username = firstName.toLowerCase(Locale.ROOT) + id;
+        String roles = this.random.nextInt(200) == 0 ? ADMIN_ROLES : USER_ROLES;
+        return new UserRow(id,
+                username,
+                firstName + " " + pick(LAST_NAMES),
+                this.passwordHashes.get(this.random.nextInt(this.passwordHashes.size())),
+                username + "@" + pick(DOMAINS),
+                roles,
+                Roles.mask(roles),
+                this.random.nextInt(50) != 0);
+    }
+
+    private AddressRow address(int id, int ownerId, boolean isDefault) {
+        String fullAddress = (1 + this.random.nextInt(999)) + " " + pick(STREETS) + " Road, " + pick(DISTRICTS) + ", "
+                + pick(CITIES);
+        long prefix = MOBILE_PREFIXES[this.random.nextInt(MOBILE_PREFIXES.length)];
+        String phone = Long.toString(prefix * 1_000_000_000L + this.random.nextInt(1_000_000_000));
+        return new AddressRow(id, fullAddress, phone, ownerId, isDefault);
+    }
+
+    /**
+     * Knuth's Poisson sampling, fine for the small means addresses per user have.
+     */
+    private int addressCount() {
+        int count = 0;
+        double product = this.random.nextDouble();
+        while (product > this.poissonLimit && count < MAXIMUM_ADDRESSES) {
+            count++;
+            product *= this.random.nextDouble();
+        }
+        return count;
+    }
+
+    private String pick(String[] values) {
+        return values[this.random.nextInt(values.length)];
+    }
+
+    record Batch(List<UserRow> users, List<AddressRow> addresses) {
+    }
+
+    record UserRow(int id, String username, String nickname, String password, String email, String roles,
+                   int roleMask, boolean enabled) {
+    }
+
+    record AddressRow(int id, String fullAddress, String phone, int ownerId, boolean isDefault) {
+    }
+}
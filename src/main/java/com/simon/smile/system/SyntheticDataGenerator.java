@@ -0,0 +1,241 @@
+package com.simon.smile.system;
+
+import com.simon.smile.system.SyntheticData.AddressRow;
+import com.simon.smile.system.SyntheticData.Batch;
+import com.simon.smile.system.SyntheticData.UserRow;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Adds {@code synthetic-data.users} generated users and their addresses at startup, to test at production data sizes:
+ * {@code java -jar smile.jar --synthetic-data.enabled=true --synthetic-data.users=5000000}.
+ * <p>
+ * Unlike the {@link DatabaseInitializer}, which creates users through the {@code UserService}, rows are written
+ * straight through JDBC: with {@code COPY} on PostgreSQL and batched inserts otherwise, one transaction per
+ * {@code synthetic-data.batch-size} users. The password is only hashed {@code synthetic-data.password-hashes} times,
+ * the users share these hashes.
+ * <p>
+ * IDs are drawn from the sequences Hibernate allocates from, a block of {@value #ID_BLOCK} per value as Hibernate's
+ * pooled optimizer does, so entities created meanwhile or later never collide with generated rows.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("synthetic-data.enabled")
+public class SyntheticDataGenerator implements CommandLineRunner {
+
+    /**
+     * Hibernate's default allocation size, the increment of its sequences.
+     */
+    private static final int ID_BLOCK = 50;
+
+    // Sequence values fetched per round trip.
+    private static final int SEQUENCE_VALUES_PER_FETCH = 100;
+
+    private static final String USER_SEQUENCE = "app_user_seq";
+
+    private static final String ADDRESS_SEQUENCE = "address_seq";
+
+    private static final String USER_COLUMNS = "id, username, nickname, password, email, roles, role_mask, enabled, profile_version";
+
+    private static final String ADDRESS_COLUMNS = "id, full_address, phone, owner_id, is_default";
+
+    private final SyntheticDataProperties properties;
+
+    private final DataSource dataSource;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final boolean postgres;
+
+    public SyntheticDataGenerator(SyntheticDataProperties properties,
+                                  DataSource dataSource,
+                                  PasswordEncoder passwordEncoder,
+                                  @Value("${spring.datasource.url}") String datasourceUrl) {
+        this.properties = properties;
+        this.dataSource = dataSource;
+        this.passwordEncoder = passwordEncoder;
+        this.postgres = DatabaseDriver.fromJdbcUrl(datasourceUrl) == DatabaseDriver.POSTGRESQL;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        long startTime = System.nanoTime();
+        // Hashing on the password hashing threads, each hash takes about as long as a login.
+        List<String> passwordHashes = IntStream.range(0, Math.max(this.properties.passwordHashes(), 1))
+                .parallel()
+                .mapToObj(index -> this.passwordEncoder.encode(this.properties.password()))
+                .toList();
+        SyntheticData syntheticData = new SyntheticData(this.properties.seed(), this.properties.addressesPerUser(), passwordHashes);
+        log.info("Generating {} users with {} addresses each on average", this.properties.users(), this.properties.addressesPerUser());
+
+        long users = 0;
+        long addresses = 0;
+        long lastProgress = startTime;
+        try (Connection connection = this.dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            SequenceIds userIds = new SequenceIds(connection, USER_SEQUENCE);
+            SequenceIds addressIds = new SequenceIds(connection, ADDRESS_SEQUENCE);
+            while (users < this.properties.users()) {
+                int batchSize = (int) Math.min(this.properties.batchSize(), this.properties.users() - users);
+                Batch batch = syntheticData.next(batchSize, userIds, addressIds);
+                if (this.postgres) {
+                    copy(connection, batch);
+                } else {
+                    insert(connection, batch);
+                }
+                connection.commit();
+                users += batch.users().size();
+                addresses += batch.addresses().size();
+                if (System.nanoTime() - lastProgress > TimeUnit.SECONDS.toNanos(10)) {
+                    lastProgress = System.nanoTime();
+                    log.info("Generated {} of {} users and {} addresses", users, this.properties.users(), addresses);
+                }
+            }
+            if (this.postgres) {
+                // Plans of the first queries would otherwise be based on the statistics of the empty tables.
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("analyze app_user");
+                    statement.execute("analyze address");
+                }
+                connection.commit();
+            }
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        log.info("Generated {} users and {} addresses in {} s, {} rows/s", users, addresses, Math.round(seconds),
+                Math.round((users + addresses) / seconds));
+    }
+
+    private void copy(Connection connection, Batch batch) throws SQLException {
+        StringBuilder users = new StringBuilder(batch.users().size() * 160);
+        for (UserRow user : batch.users()) {
+            users.append(user.id()).append(',');
+            csv(users, user.username()).append(',');
+            csv(users, user.nickname()).append(',');
+            csv(users, user.password()).append(',');
+            csv(users, user.email()).append(',');
+            csv(users, user.roles()).append(',')
+                    .append(user.roleMask()).append(',')
+                    .append(user.enabled()).append(",0\n");
+        }
+        StringBuilder addresses = new StringBuilder(batch.addresses().size() * 80);
+        for (AddressRow address : batch.addresses()) {
+            addresses.append(address.id()).append(',');
+            csv(addresses, address.fullAddress()).append(',');
+            csv(addresses, address.phone()).append(',')
+                    .append(address.ownerId()).append(',')
+                    .append(address.isDefault()).append('\n');
+        }
+        try {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            copyManager.copyIn("copy app_user (" + USER_COLUMNS + ") from stdin with (format csv)", new StringReader(users.toString()));
+            copyManager.copyIn("copy address (" + ADDRESS_COLUMNS + ") from stdin with (format csv)", new StringReader(addresses.toString()));
+        } catch (IOException ex) {
+            throw new SQLException("Copying the generated rows failed", ex);
+        }
+    }
+
+    private void insert(Connection connection, Batch batch) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "insert into app_user (" + USER_COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?, 0)")) {
+            for (UserRow user : batch.users()) {
+                statement.setInt(1, user.id());
+                statement.setString(2, user.username());
+                statement.setString(3, user.nickname());
+                statement.setString(4, user.password());
+                statement.setString(5, user.email());
+                statement.setString(6, user.roles());
+                statement.setInt(7, user.roleMask());
+                statement.setBoolean(8, user.enabled());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "insert into address (" + ADDRESS_COLUMNS + ") values (?, ?, ?, ?, ?)")) {
+            for (AddressRow address : batch.addresses()) {
+                statement.setInt(1, address.id());
+                statement.setString(2, address.fullAddress());
+                statement.setString(3, address.phone());
+                statement.setInt(4, address.ownerId());
+                statement.setBoolean(5, address.isDefault());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static StringBuilder csv(StringBuilder builder, String value) {
+        return builder.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Hands out the IDs of the blocks behind sequence values, fetching the values in bulk.
+     */
+    private final class SequenceIds implements IntSupplier {
+
+        private final Connection connection;
+
+        private final String query;
+
+        private final int[] ids = new int[SEQUENCE_VALUES_PER_FETCH * ID_BLOCK];
+
+        private int size;
+
+        private int next;
+
+        private SequenceIds(Connection connection, String sequence) {
+            this.connection = connection;
+            this.query = postgres
+                    ? "select nextval('" + sequence + "') from generate_series(1, " + SEQUENCE_VALUES_PER_FETCH + ")"
+                    : "select next value for " + sequence + " from system_range(1, " + SEQUENCE_VALUES_PER_FETCH + ")";
+        }
+
+        @Override
+        public int getAsInt() {
+            if (this.next == this.size) {
+                fetch();
+            }
+            return this.ids[this.next++];
+        }
+
+        private void fetch() {
+            this.size = 0;
+            this.next = 0;
+            try (Statement statement = this.connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(this.query)) {
+                while (resultSet.next()) {
+                    // Like the pooled optimizer, the value is the highest ID of its block.
+                    long high = resultSet.getLong(1);
+                    for (long id = Math.max(high - ID_BLOCK + 1, 1); id <= high; id++) {
+                        this.ids[this.size++] = Math.toIntExact(id);
+                    }
+                }
+            } catch (SQLException ex) {
+                throw new IllegalStateException("Fetching IDs from " + this.query + " failed", ex);
+            }
+            if (this.size == 0) {
+                throw new IllegalStateException("No IDs left in " + this.query);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.simon.smile.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@code synthetic-data} settings of the {@link SyntheticDataGenerator}.
+ *
+ * @param enabled           whether users and addresses are generated at startup.
+ * @param users             how many users are added.
+ * @param addressesPerUser  the mean number of addresses per user, the counts follow a Poisson distribution.
+ * @param password          the password of every generated user.
+ * @param passwordHashes    how many hashes of the password are computed and shared by the users.
+ * @param batchSize         users written per batch and transaction, with their addresses.
+ * @param seed              generating with the same seed adds the same users and addresses.
+ */
+@ConfigurationProperties("synthetic-data")
+public record SyntheticDataProperties(boolean enabled,
+                                      int users,
+                                      double addressesPerUser,
+                                      String password,
+                                      int passwordHashes,
+                                      int batchSize,
+                                      long seed) {
+}
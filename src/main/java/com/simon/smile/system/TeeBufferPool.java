@@ -0,0 +1,36 @@
+package com.simon.smile.system;
+
+/**
+ * A fixed set of equally sized byte arrays the {@link BodyTee}s copy the start of the bodies into.
+ * <p>
+ * All arrays are allocated up front and reused, so capturing bodies allocates nothing per request. When every array
+ * is in use, {@link #acquire()} returns {@code null} and that body is simply not captured.
+ */
+final class TeeBufferPool {
+
+    private final AccessLogRingBuffer<byte[]> buffers;
+
+    private final int bufferSize;
+
+    TeeBufferPool(int buffers, int bufferSize) {
+        this.buffers = new AccessLogRingBuffer<>(buffers);
+        this.bufferSize = bufferSize;
+        for (int i = 0; i < this.buffers.capacity(); i++) {
+            this.buffers.offer(new byte[bufferSize]);
+        }
+    }
+
+    byte[] acquire() {
+        return this.buffers.poll();
+    }
+
+    void release(byte[] buffer) {
+        if (buffer.length == this.bufferSize) {
+            this.buffers.offer(buffer);
+        }
+    }
+
+    int available() {
+        return this.buffers.size();
+    }
+}
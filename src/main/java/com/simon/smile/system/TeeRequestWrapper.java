@@ -0,0 +1,107 @@
+package com.simon.smile.system;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Passes the request body straight through to the handler while a {@link BodyTee} counts it and keeps its start.
+ * <p>
+ * Only what the handler reads goes through the tee. Reading past {@code maxSize} bytes fails with a
+ * {@link RequestBodyTooLargeException}, so a body without a {@code Content-Length} cannot grow without bound either.
+ */
+final class TeeRequestWrapper extends HttpServletRequestWrapper {
+
+    private final BodyTee tee;
+
+    private final long maxSize;
+
+    private ServletInputStream inputStream;
+
+    private BufferedReader reader;
+
+    TeeRequestWrapper(HttpServletRequest request, TeeBufferPool pool, long maxSize) {
+        super(request);
+        this.tee = new BodyTee(pool);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (this.inputStream == null) {
+            this.inputStream = new TeeInputStream(super.getInputStream());
+        }
+        return this.inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (this.reader == null) {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+            this.reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+        return this.reader;
+    }
+
+    BodyTee getTee() {
+        return this.tee;
+    }
+
+    private final class TeeInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        private TeeInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = this.delegate.read();
+            if (b != -1) {
+                tee.write(b);
+                checkSize();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = this.delegate.read(b, off, len);
+            if (count > 0) {
+                tee.write(b, off, count);
+                checkSize();
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return this.delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            this.delegate.setReadListener(readListener);
+        }
+
+        private void checkSize() {
+            if (tee.size() > maxSize) {
+                throw new RequestBodyTooLargeException("Request body is larger than " + maxSize + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.simon.smile.system;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Writes the response body straight through to the client while a {@link BodyTee} counts it and keeps its start.
+ * <p>
+ * Unlike a {@link org.springframework.web.util.ContentCachingResponseWrapper} nothing is held back, the client
+ * receives the first bytes as soon as the handler flushes them.
+ */
+final class TeeResponseWrapper extends HttpServletResponseWrapper {
+
+    private final BodyTee tee;
+
+    private ServletOutputStream outputStream;
+
+    private PrintWriter writer;
+
+    TeeResponseWrapper(HttpServletResponse response, TeeBufferPool pool) {
+        super(response);
+        this.tee = new BodyTee(pool);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (this.outputStream == null) {
+            this.outputStream = new TeeOutputStream(super.getOutputStream());
+        }
+        return this.outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (this.writer == null) {
+            this.writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+        }
+        return this.writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        flushWriter();
+        super.flushBuffer();
+    }
+
+    /**
+     * Hands what the handler wrote to its writer over to the response, the writer isn't closed by the container.
+     */
+    void flushWriter() {
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+    }
+
+    BodyTee getTee() {
+        return this.tee;
+    }
+
+    private final class TeeOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private TeeOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.delegate.write(b);
+            tee.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.delegate.write(b, off, len);
+            tee.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.simon.smile.system;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends {@link CapturedRequest}s to the {@code access-log.capture.file} as NDJSON, off the request threads, for a
+ * replay against another version.
+ * <p>
+ * Works like the {@link AccessLog}: request threads only queue the request, a background thread writes it, and
+ * requests are dropped rather than waited for when the writer is behind, counted as {@code traffic.capture.dropped}.
+ * Capturing stops once the file has grown to {@code access-log.capture.max-size}.
+ */
+@Slf4j
+@Component
+public class TrafficCapture {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final byte NEW_LINE = '\n';
+
+    private final boolean enabled;
+
+    private final AccessLogRingBuffer<CapturedRequest> buffer;
+
+    private final ObjectMapper objectMapper;
+
+    private final Counter dropped;
+
+    private final Path file;
+
+    private final long maxSize;
+
+    private Thread writer;
+
+    private volatile boolean running = true;
+
+    public TrafficCapture(AccessLogProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        AccessLogProperties.Capture capture = properties.capture();
+        this.enabled = capture.enabled();
+        this.buffer = new AccessLogRingBuffer<>(this.enabled ? properties.bufferCapacity() : 1);
+        this.objectMapper = objectMapper;
+        this.dropped = meterRegistry.counter("traffic.capture.dropped");
+        this.file = capture.file();
+        this.maxSize = capture.maxSize() == null ? Long.MAX_VALUE : capture.maxSize().toBytes();
+        if (this.enabled) {
+            this.writer = new Thread(this::drain, "traffic-capture-writer");
+            this.writer.setDaemon(true);
+            this.writer.start();
+            log.info("Capturing requests to {}", this.file.toAbsolutePath());
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Queues the request for the writer, never blocks.
+     */
+    public void offer(CapturedRequest request) {
+        if (!this.buffer.offer(request)) {
+            this.dropped.increment();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.running = false;
+        if (this.writer != null) {
+            LockSupport.unpark(this.writer);
+            this.writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void drain() {
+        try {
+            Path parent = this.file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            long size = Files.exists(this.file) ? Files.size(this.file) : 0;
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(this.file,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                while (this.running && size < this.maxSize) {
+                    long written = writeAvailable(outputStream);
+                    if (written == 0) {
+                        // Idle, what was written so far becomes visible to the replay.
+                        outputStream.flush();
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    size += written;
+                }
+                // Flush what was queued before the shutdown.
+                writeAvailable(outputStream);
+            }
+            if (size >= this.maxSize) {
+                log.warn("Stopped capturing requests, {} reached {} bytes", this.file, this.maxSize);
+            }
+        } catch (IOException e) {
+            log.error("Capturing requests to {} failed, capturing stops", this.file, e);
+        }
+        // Nothing drains the buffer anymore, further requests are dropped and counted.
+    }
+
+    private long writeAvailable(OutputStream outputStream) throws IOException {
+        long written = 0;
+        CapturedRequest request;
+        while ((request = this.buffer.poll()) != null) {
+            byte[] line = serialize(request);
+            if (line != null) {
+                outputStream.write(line);
+                outputStream.write(NEW_LINE);
+                written += line.length + 1;
+            }
+        }
+        return written;
+    }
+
+    private byte[] serialize(CapturedRequest request) {
+        try {
+            return this.objectMapper.writeValueAsBytes(request);
+        } catch (JsonProcessingException | RuntimeException e) {
+            // The writer thread must survive a single broken request, only failing to write the file stops it.
+            log.warn("Captured request could not be written", e);
+            return null;
+        }
+    }
+}
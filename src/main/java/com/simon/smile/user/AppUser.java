@@ -1,5 +1,6 @@
 package com.simon.smile.user;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.simon.smile.user.address.Address;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
@@ -7,7 +8,11 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotEmpty;
 import lombok.AllArgsConstructor;
@@ -22,6 +27,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "app_user_role_mask_idx", columnList = "roleMask"))
 @Data
 @Builder
 @NoArgsConstructor
@@ -49,8 +55,26 @@ public class AppUser implements Serializable {
 
     private String roles;
 
+    /**
+     * The {@link Roles} bits of {@link #roles}, derived on every write so role filters can use an indexed predicate.
+     */
+    @JsonIgnore
+    private Integer roleMask;
+
     private Boolean enabled;
 
+    /**
+     * Counts the updates of the profile, tokens carry the version of their {@link UserSnapshot}.
+     */
+    @JsonIgnore
+    private Integer profileVersion;
+
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "owner")
     private List<Address> addressList = new ArrayList<>();
+
+    @PrePersist
+    @PreUpdate
+    void updateRoleMask() {
+        this.roleMask = Roles.mask(this.roles);
+    }
 }
@@ -2,12 +2,67 @@ package com.simon.smile.user;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
 
 @Getter
 @AllArgsConstructor
 public enum Roles {
-    ROLE_ADMIN("ROLE_ADMIN"),
-    ROLE_USER("ROLE_USER");
+    // The bits are stored in AppUser.roleMask, never reuse or renumber them. UserRepository.backfillRoleMasks repeats
+    // them in SQL.
+    ROLE_ADMIN("ROLE_ADMIN", 1),
+    ROLE_USER("ROLE_USER", 1 << 1);
 
     private final String role;
+
+    private final int bit;
+
+    private static final int ALL_BITS = Arrays.stream(values()).mapToInt(Roles::getBit).reduce(0, (a, b) -> a | b);
+
+    /**
+     * Returns the bitmask of the known roles in a space-delimited roles string, ignoring unknown roles.
+     */
+    public static int mask(String roles) {
+        int mask = 0;
+        for (String role : StringUtils.tokenizeToStringArray(roles, " ")) {
+            Optional<Roles> known = of(role);
+            if (known.isPresent()) {
+                mask |= known.get().getBit();
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the bitmask of a space-delimited roles string, or empty when it is blank or has a role this enum doesn't
+     * know and therefore can't be represented as a mask.
+     */
+    public static Optional<Integer> exactMask(String roles) {
+        String[] tokens = StringUtils.tokenizeToStringArray(roles, " ");
+        if (tokens.length == 0 || !Arrays.stream(tokens).map(Roles::of).allMatch(Optional::isPresent)) {
+            return Optional.empty();
+        }
+        return Optional.of(mask(roles));
+    }
+
+    /**
+     * Returns every mask that has all the bits of {@code mask}, so "has these roles" can be an indexed {@code in}
+     * predicate instead of a bitwise expression.
+     */
+    public static List<Integer> masksContaining(int mask) {
+        return IntStream.rangeClosed(0, ALL_BITS)
+                .filter(candidate -> (candidate & ~ALL_BITS) == 0 && (candidate & mask) == mask)
+                .boxed()
+                .toList();
+    }
+
+    private static Optional<Roles> of(String role) {
+        return Arrays.stream(values())
+                .filter(value -> value.getRole().equalsIgnoreCase(role))
+                .findFirst();
+    }
 }
@@ -1,6 +1,7 @@
 package com.simon.smile.user;
 
 import com.simon.smile.common.Result;
+import com.simon.smile.system.ServerTiming;
 import io.micrometer.common.util.StringUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -9,7 +10,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -23,7 +24,8 @@ import java.security.InvalidParameterException;
 import java.security.Principal;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Stream;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("${api.base-url}/users")
@@ -31,22 +33,22 @@ import java.util.stream.Stream;
 @Tag(name = "User Manager")
 public class UserController {
     private final UserService userService;
-    private final PasswordEncoder passwordEncoder;
 
     @PostMapping
     @Operation(summary = "Create user")
     @ApiResponse(responseCode = "201", description = "Create user success")
     @ApiResponse(responseCode = "400", description = "Invalid parameter")
-    public Result createUser(@Parameter(name = "appUser", description = "User info")
-                             @RequestBody @Valid AppUser appUser) {
+    @ApiResponse(responseCode = "503", description = "Password hashing is saturated")
+    public CompletableFuture<Result> createUser(@Parameter(name = "appUser", description = "User info")
+                                                @RequestBody @Valid AppUser appUser) {
         validatePassword(appUser.getPassword());
         validateUsernameNotPresent(appUser.getUsername());
         validateEmailNotPresent(appUser.getEmail());
         setNickname(appUser);
         appUser.setRoles(Roles.ROLE_USER.getRole()).setEnabled(true);
-        AppUser savedUser = userService.create(appUser);
-        return Result.success("Create user success")
-                .setData(userToUserDtoConverter.convert(savedUser));
+        return userService.createAsync(appUser)
+                .thenApply(savedUser -> Result.success("Create user success")
+                        .setData(userToUserDtoConverter.convert(savedUser)));
     }
 
     private final UserToUserDtoConverter userToUserDtoConverter;
@@ -59,8 +61,7 @@ public class UserController {
 
     @PostMapping("/filter")
     public Result filterUsers(@RequestBody AppUser appUser) {
-        Stream<UserDto> filterUserList = userService.filter(appUser)
-                .stream().map(userToUserDtoConverter::convert);
+        List<UserDto> filterUserList = ServerTiming.convertAll(userService.filter(appUser), userToUserDtoConverter::convert);
         return Result.success("Find user(s) success")
                 .setData(filterUserList);
     }
@@ -68,39 +69,43 @@ public class UserController {
     @GetMapping("/{id}")
     public Result findUserById(@PathVariable Integer id) {
         return Result.success("Find user success")
-                .setData(userToUserDtoConverter.convert(userService.findById(id)));
+                .setData(ServerTiming.convert(userService.findById(id), userToUserDtoConverter::convert));
     }
 
     @GetMapping
     public Result findUsers() {
-        List<UserDto> userDtoList = userService.findAll()
-                .stream()
-                .map(userToUserDtoConverter::convert)
-                .toList();
+        List<UserDto> userDtoList = ServerTiming.convertAll(userService.findAll(), userToUserDtoConverter::convert);
         return Result.success("Find all users success")
                 .setData(userDtoList);
     }
 
+    /**
+     * Answered from the user snapshot in the bearer token, the user is only loaded for tokens without one or with an
+     * outdated one.
+     */
     @GetMapping("/current_user")
     public Result getCurrentUser(HttpServletRequest request) {
         Principal userPrincipal = request.getUserPrincipal();
         String name = userPrincipal.getName();
-        AppUser appUser = userService.findByUsername(name).orElseThrow();
+        UserDto userDto = Optional.of(userPrincipal)
+                .filter(JwtAuthenticationToken.class::isInstance)
+                .flatMap(principal -> UserSnapshot.of(((JwtAuthenticationToken) principal).getToken()))
+                .filter(userService::isCurrent)
+                .map(snapshot -> snapshot.toUserDto(name))
+                .orElseGet(() -> ServerTiming.convert(userService.findByUsername(name).orElseThrow(), userToUserDtoConverter::convert));
         return Result.success("Retrieve current user success")
-                .setData(userToUserDtoConverter.convert(appUser));
+                .setData(userDto);
     }
 
     @PutMapping("/{id}")
-    public Result updateUser(@PathVariable Integer id, @RequestBody @Valid AppUser appUser) {
+    public CompletableFuture<Result> updateUser(@PathVariable Integer id, @RequestBody @Valid AppUser appUser) {
         if (Objects.nonNull(appUser.getPassword())) {
             validatePassword(appUser.getPassword());
-            appUser.setPassword(passwordEncoder.encode(appUser.getPassword()));
-        } else {
-            appUser.setPassword(userService.findById(id).getPassword());
         }
         setNickname(appUser);
-        return Result.success("Update user success")
-                .setData(userToUserDtoConverter.convert(userService.update(id, appUser)));
+        return userService.updateAsync(id, appUser)
+                .thenApply(updatedUser -> Result.success("Update user success")
+                        .setData(ServerTiming.convert(updatedUser, userToUserDtoConverter::convert)));
     }
 
     private void validateEmailNotPresent(String email) {
@@ -115,7 +120,8 @@ public class UserController {
         }
     }
 
-    private void validatePassword(String password) {
+    // Package-private for the UserConversionBenchmark.
+    static void validatePassword(String password) {
         if (password == null) {
             throw new IllegalArgumentException("password is required");
         }
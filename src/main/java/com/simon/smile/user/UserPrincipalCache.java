@@ -0,0 +1,119 @@
+package com.simon.smile.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.simon.smile.auth.AppUserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Caches the users loaded for a username or email, so authenticating does not query the database.
+ * <p>
+ * Users are cached by ID as immutable snapshots of the columns a principal needs, never as the entity, and every
+ * lookup gets a principal of its own. A second cache maps each username or email looked up to the ID it resolved to.
+ * Its keys are taken as given: {@code Admin} and {@code admin} are separate entries, each resolving to the user the
+ * database ranks first for it, an exact username match before one in another case. Usernames differing only in case
+ * therefore resolve like they do uncached.
+ * <p>
+ * {@link UserService} evicts a user whenever it changes. The entries also expire after
+ * {@code session.user-cache.expire-after-write}, which bounds how long a change made outside the service is missed.
+ */
+@Component
+public class UserPrincipalCache {
+
+    private final Cache<Integer, CachedUser> users;
+
+    private final Cache<String, Integer> userIds;
+
+    public UserPrincipalCache(@Value("${session.user-cache.maximum-size}") long maximumSize,
+                              @Value("${session.user-cache.expire-after-write}") Duration expireAfterWrite,
+                              MeterRegistry meterRegistry) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.userIds = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.users, "user.principal");
+    }
+
+    /**
+     * Returns a principal of the cached user, or loads the user. Nothing is cached when the loader returns
+     * {@code null}.
+     */
+    public AppUserPrincipal get(String usernameOrEmail, Function<String, AppUser> loader) {
+        Integer userId = this.userIds.getIfPresent(usernameOrEmail);
+        CachedUser user = userId == null ? null : this.users.getIfPresent(userId);
+        // The username or email may have moved to another user since it was looked up.
+        if (user == null || !user.matches(usernameOrEmail)) {
+            AppUser appUser = loader.apply(usernameOrEmail);
+            if (appUser == null) {
+                return null;
+            }
+            user = CachedUser.of(appUser);
+            this.users.put(user.id(), user);
+            this.userIds.put(usernameOrEmail, user.id());
+        }
+        return new AppUserPrincipal(user.toAppUser());
+    }
+
+    /**
+     * Evicts the user, whether it was looked up by username or by email. The next lookup by either loads the user again,
+     * and the lookups by the others are served from what it loaded, as long as it still has that username or email.
+     * <p>
+     * Inside a transaction the entries are evicted again after commit, a concurrent lookup may have cached the row as it
+     * was before the change.
+     */
+    public void evict(Integer userId) {
+        evictNow(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictNow(userId);
+                }
+            });
+        }
+    }
+
+    private void evictNow(Integer userId) {
+        this.users.invalidate(userId);
+    }
+
+    private record CachedUser(Integer id, String username, String nickname, String email, String password,
+                              String roles, Integer roleMask, Boolean enabled, Integer profileVersion) {
+
+        static CachedUser of(AppUser appUser) {
+            return new CachedUser(appUser.getId(), appUser.getUsername(), appUser.getNickname(), appUser.getEmail(),
+                    appUser.getPassword(), appUser.getRoles(), appUser.getRoleMask(), appUser.getEnabled(),
+                    appUser.getProfileVersion());
+        }
+
+        boolean matches(String usernameOrEmail) {
+            return usernameOrEmail.equalsIgnoreCase(this.username) || usernameOrEmail.equalsIgnoreCase(this.email);
+        }
+
+        AppUser toAppUser() {
+            return new AppUser()
+                    .setId(this.id)
+                    .setUsername(this.username)
+                    .setNickname(this.nickname)
+                    .setEmail(this.email)
+                    .setPassword(this.password)
+                    .setRoles(this.roles)
+                    .setRoleMask(this.roleMask)
+                    .setEnabled(this.enabled)
+                    .setProfileVersion(this.profileVersion);
+        }
+    }
+}
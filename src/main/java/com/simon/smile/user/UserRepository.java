@@ -1,13 +1,56 @@
 package com.simon.smile.user;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<AppUser, Integer> {
+public interface UserRepository extends JpaRepository<AppUser, Integer>, JpaSpecificationExecutor<AppUser> {
     Optional<AppUser> findByEmail(String email);
 
     Optional<AppUser> findByUsername(String username);
+
+    /**
+     * Derives the role mask of the users stored before it was introduced, in one statement. Like {@link Roles#mask},
+     * it ignores unknown roles and role case; the bits must be kept in step with {@link Roles}.
+     */
+    @Modifying
+    @Query("""
+            update AppUser u set u.roleMask =
+                case when concat(' ', upper(u.roles), ' ') like '% ROLE_ADMIN %' then 1 else 0 end
+                + case when concat(' ', upper(u.roles), ' ') like '% ROLE_USER %' then 2 else 0 end
+            where u.roleMask is null""")
+    int backfillRoleMasks();
+
+    /**
+     * Finds the users whose username or email matches, ignoring case. An exact username match comes first, then a
+     * username match in another case, then an email match.
+     */
+    @Query("""
+            select u from AppUser u
+            where lower(u.username) = lower(:usernameOrEmail) or lower(u.email) = lower(:usernameOrEmail)
+            order by case
+                when u.username = :usernameOrEmail then 0
+                when lower(u.username) = lower(:usernameOrEmail) then 1
+                else 2
+            end""")
+    List<AppUser> findByUsernameOrEmailIgnoreCase(String usernameOrEmail);
+
+    /**
+     * Reads only the profile version, rows stored before it was introduced are at version 0.
+     */
+    @Query("select coalesce(u.profileVersion, 0) from AppUser u where u.id = :id")
+    Optional<Integer> findProfileVersionById(Integer id);
+
+    /**
+     * Replaces the password only if it is still {@code currentPassword}, so a concurrent password change is kept.
+     */
+    @Modifying
+    @Query("update AppUser u set u.password = :newPassword where u.id = :id and u.password = :currentPassword")
+    int updatePassword(Integer id, String currentPassword, String newPassword);
 }
@@ -2,12 +2,20 @@ package com.simon.smile.user;
 
 import com.simon.smile.auth.AppUserPrincipal;
 import com.simon.smile.common.exception.ObjectNotFoundException;
+import com.simon.smile.security.PasswordHashingExecutor;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.convert.QueryByExamplePredicateBuilder;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -16,6 +24,8 @@ import org.springframework.stereotype.Service;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static org.springframework.data.domain.ExampleMatcher.GenericPropertyMatchers.exact;
 import static org.springframework.data.domain.ExampleMatcher.GenericPropertyMatchers.ignoreCase;
@@ -23,25 +33,61 @@ import static org.springframework.data.domain.ExampleMatcher.GenericPropertyMatc
 @Service
 @Transactional
 @RequiredArgsConstructor
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
     private final PasswordEncoder passwordEncoder;
 
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private final UserPrincipalCache userPrincipalCache;
+
+    @Value("${session.user-snapshot.check-version}")
+    private boolean checkSnapshotVersion;
+
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private Executor applicationTaskExecutor;
+
     public AppUser create(AppUser user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         return this.userRepository.save(user);
     }
 
+    /**
+     * Like {@link #create(AppUser)}, but the password is hashed on the password hashing executor. The user is saved
+     * on the application task executor, the hashing threads don't wait for the database.
+     */
+    public CompletableFuture<AppUser> createAsync(AppUser user) {
+        return this.passwordHashingExecutor.supplyAsync(() -> passwordEncoder.encode(user.getPassword()))
+                .thenApplyAsync(encodedPassword -> this.userRepository.save(user.setPassword(encodedPassword)),
+                        this.applicationTaskExecutor);
+    }
+
+    /**
+     * Like {@link #update(Integer, AppUser)}, but a new password is hashed on the password hashing executor and the
+     * user is then saved on the application task executor, like {@link #createAsync(AppUser)}. Without a password the
+     * current one is kept and the user is updated right away.
+     */
+    public CompletableFuture<AppUser> updateAsync(Integer id, AppUser appUser) {
+        if (appUser.getPassword() == null) {
+            return CompletableFuture.completedFuture(update(id, appUser.setPassword(findById(id).getPassword())));
+        }
+        return this.passwordHashingExecutor.supplyAsync(() -> passwordEncoder.encode(appUser.getPassword()))
+                .thenApplyAsync(encodedPassword -> update(id, appUser.setPassword(encodedPassword)),
+                        this.applicationTaskExecutor);
+    }
+
     public void deleteById(Integer id) {
         findById(id);
         userRepository.deleteById(id);
+        userPrincipalCache.evict(id);
     }
 
     public List<AppUser> filter(AppUser appUser) {
         ExampleMatcher matcher = ExampleMatcher.matching()
-                .withIgnorePaths("id")
+                .withIgnorePaths("id", "roleMask")
                 .withMatcher("username", ignoreCase().contains())
                 .withMatcher("nickname", ignoreCase().contains())
                 .withMatcher("email", ignoreCase())
@@ -49,9 +95,27 @@ public class UserService implements UserDetailsService {
         if (Objects.nonNull(appUser.getEnabled())) {
             matcher = matcher.withMatcher("enabled", exact());
         }
+        // Roles we know are matched on the indexed role mask, anything else still falls back to a `contains` match.
+        Optional<Integer> roleMask = Roles.exactMask(appUser.getRoles());
+        if (roleMask.isPresent()) {
+            matcher = matcher.withIgnorePaths("roles");
+        }
         Example<AppUser> example = Example.of(appUser, matcher);
+        Specification<AppUser> specification = (root, query, builder) ->
+                QueryByExamplePredicateBuilder.getPredicate(root, builder, example);
+        if (roleMask.isPresent()) {
+            List<Integer> roleMasks = Roles.masksContaining(roleMask.get());
+            specification = specification.and((root, query, builder) -> root.get("roleMask").in(roleMasks));
+        }
         Sort sort = Sort.by(Sort.Direction.DESC, "id");
-        return userRepository.findAll(example, sort);
+        return userRepository.findAll(specification, sort);
+    }
+
+    /**
+     * Derives the role mask of users stored before it was introduced, without loading them.
+     */
+    public int backfillRoleMasks() {
+        return userRepository.backfillRoleMasks();
     }
 
     public List<AppUser> findAll() {
@@ -73,15 +137,42 @@ public class UserService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String usernameOrEmail) throws UsernameNotFoundException {
-        return userRepository.findByUsername(usernameOrEmail)
-                .or(() -> userRepository.findByEmail(usernameOrEmail))
-                .map(AppUserPrincipal::new)
-                .orElseThrow(() -> new UsernameNotFoundException(String.format("No user found with username or email: %s", usernameOrEmail)));
+        AppUserPrincipal principal = userPrincipalCache.get(usernameOrEmail, key ->
+                userRepository.findByUsernameOrEmailIgnoreCase(key).stream()
+                        .findFirst()
+                        .orElse(null));
+        if (principal == null) {
+            throw new UsernameNotFoundException(String.format("No user found with username or email: %s", usernameOrEmail));
+        }
+        return principal;
+    }
+
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        AppUser appUser = ((AppUserPrincipal) user).appUser();
+        userRepository.updatePassword(appUser.getId(), appUser.getPassword(), newPassword);
+        userPrincipalCache.evict(appUser.getId());
+        return new AppUserPrincipal(appUser.setPassword(newPassword));
+    }
+
+    /**
+     * Tells whether the snapshot of a token still matches the user, only checked when
+     * {@code session.user-snapshot.check-version} is enabled.
+     */
+    public boolean isCurrent(UserSnapshot snapshot) {
+        return !checkSnapshotVersion || userRepository.findProfileVersionById(snapshot.id())
+                .map(version -> version == snapshot.version())
+                .orElse(false);
     }
 
     public AppUser update(Integer id, AppUser appUser) {
-        findById(id);
+        AppUser existingUser = findById(id);
         appUser.setId(id);
-        return userRepository.save(appUser);
+        // Tokens issued before carry an outdated user snapshot from now on.
+        appUser.setProfileVersion(Objects.requireNonNullElse(existingUser.getProfileVersion(), 0) + 1);
+        AppUser updatedUser = userRepository.save(appUser);
+        // The username, email, password, roles or enabled flag may have changed.
+        userPrincipalCache.evict(id);
+        return updatedUser;
     }
 }
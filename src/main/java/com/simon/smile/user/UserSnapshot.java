@@ -0,0 +1,61 @@
+package com.simon.smile.user;
+
+import com.simon.smile.security.JwtClaimsWriter;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The profile of a user as it was when a token was issued, carried in the token's {@value #CLAIM} claim so the current
+ * user can be answered without loading the row.
+ * <p>
+ * {@code version} is the {@link AppUser#getProfileVersion() profile version} at that time, a token whose version is
+ * behind the stored one carries an outdated snapshot.
+ */
+public record UserSnapshot(Integer id, String nickname, String email, String roles, Boolean enabled, int version) {
+
+    public static final String CLAIM = "user";
+
+    public static UserSnapshot of(AppUser appUser) {
+        return new UserSnapshot(appUser.getId(),
+                appUser.getNickname(),
+                appUser.getEmail(),
+                appUser.getRoles(),
+                appUser.getEnabled(),
+                Objects.requireNonNullElse(appUser.getProfileVersion(), 0));
+    }
+
+    /**
+     * Reads the snapshot of a token, tokens issued before snapshots were introduced have none.
+     */
+    public static Optional<UserSnapshot> of(Jwt jwt) {
+        Map<String, Object> claim = jwt.getClaimAsMap(CLAIM);
+        if (claim == null || !(claim.get("id") instanceof Number id) || !(claim.get("ver") instanceof Number version)) {
+            return Optional.empty();
+        }
+        return Optional.of(new UserSnapshot(id.intValue(),
+                (String) claim.get("nickname"),
+                (String) claim.get("email"),
+                (String) claim.get("roles"),
+                (Boolean) claim.get("enabled"),
+                version.intValue()));
+    }
+
+    public void writeClaim(JwtClaimsWriter claims) {
+        // Short keys, the claim is sent with every request. Null values are left out.
+        claims.beginObject(CLAIM)
+                .claim("ver", this.version)
+                .claim("id", this.id)
+                .claim("nickname", this.nickname)
+                .claim("email", this.email)
+                .claim("roles", this.roles)
+                .claim("enabled", this.enabled)
+                .endObject();
+    }
+
+    public UserDto toUserDto(String username) {
+        return new UserDto(this.id, username, this.nickname, this.email, this.roles, this.enabled);
+    }
+}
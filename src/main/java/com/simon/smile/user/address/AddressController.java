@@ -1,6 +1,7 @@
 package com.simon.smile.user.address;
 
 import com.simon.smile.common.Result;
+import com.simon.smile.system.ServerTiming;
 import com.simon.smile.user.AppUser;
 import com.simon.smile.user.UserService;
 import jakarta.validation.Valid;
@@ -29,15 +30,12 @@ public class AddressController {
     @GetMapping("/address/{id}")
     public Result findAddressById(@PathVariable Integer id) {
         return Result.success("Find fullAddress success")
-                .setData(addressMapper.toDto(addressService.findById(id)));
+                .setData(ServerTiming.convert(addressService.findById(id), addressMapper::toDto));
     }
 
     @GetMapping("/{userId}/address")
     public Result findAddressesByUserId(@PathVariable Integer userId) {
-        List<AddressDto> addressDtoList = addressService.findByOwnerId(userId)
-                .stream()
-                .map(addressMapper::toDto)
-                .toList();
+        List<AddressDto> addressDtoList = ServerTiming.convertAll(addressService.findByOwnerId(userId), addressMapper::toDto);
         return Result.success("Find addresses success")
                 .setData(addressDtoList);
     }
@@ -45,9 +43,9 @@ public class AddressController {
     @PostMapping("/{userId}/address")
     public Result createAddress(@PathVariable Integer userId, @Valid @RequestBody AddressDto addressDto) {
         AppUser appUser = userService.findById(userId);
-        Address address = addressMapper.toEntity(addressDto).setOwner(appUser);
+        Address address = ServerTiming.convert(addressDto, addressMapper::toEntity).setOwner(appUser);
         return Result.success("Create fullAddress success")
-                .setData(addressMapper.toDto(addressService.create(address)));
+                .setData(ServerTiming.convert(addressService.create(address), addressMapper::toDto));
     }
 
     @DeleteMapping("/address/{addressId}")
@@ -59,8 +57,8 @@ public class AddressController {
     @PutMapping("/{userId}/address/{addressId}")
     public Result updateAddress(@PathVariable Integer userId, @PathVariable Integer addressId, @Valid @RequestBody AddressDto addressDto) {
         AppUser appUser = userService.findById(userId);
-        Address address = addressMapper.toEntity(addressDto).setOwner(appUser);
+        Address address = ServerTiming.convert(addressDto, addressMapper::toEntity).setOwner(appUser);
         return Result.success("Update fullAddress success")
-                .setData(addressMapper.toDto(addressService.update(addressId, address)));
+                .setData(ServerTiming.convert(addressService.update(addressId, address), addressMapper::toDto));
     }
 }
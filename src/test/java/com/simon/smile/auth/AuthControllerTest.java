@@ -1,5 +1,6 @@
 package com.simon.smile.auth;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -9,14 +10,30 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.simon.smile.common.Person.ADMIN;
 import static com.simon.smile.common.Person.INVALID;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -36,9 +53,7 @@ class AuthControllerTest {
     @Test
     @DisplayName("Verify login error when user is disabled")
     void testLoginErrorWhenUserIsDisabled() throws Exception {
-        mockMvc.perform(post(baseUrl + "/login")
-                        .with(httpBasic(INVALID.username(), INVALID.password()))
-                        .accept(MediaType.APPLICATION_JSON))
+        login(INVALID.username(), INVALID.password())
                 .andExpect(status().isUnauthorized())
                 .andExpect(jsonPath("$.flag").value(false))
                 .andExpect(jsonPath("$.message")
@@ -51,27 +66,21 @@ class AuthControllerTest {
     @DisplayName("Verify login error when username or password incorrect")
     void testLoginErrorWhenUsernameOrPasswordIncorrect() throws Exception {
         // password incorrect
-        mockMvc.perform(post(baseUrl + "/login")
-                        .with(httpBasic(ADMIN.username(), "error_password"))
-                        .accept(MediaType.APPLICATION_JSON))
+        login(ADMIN.username(), "error_password")
                 .andExpect(status().isUnauthorized())
                 .andExpect(jsonPath("$.flag").value(false))
                 .andExpect(jsonPath("$.message").value("username or password is incorrect"))
                 .andExpect(jsonPath("$.data").value("Bad credentials"));
 
         // username incorrect
-        mockMvc.perform(post(baseUrl + "/login")
-                        .with(httpBasic("none_exist", "error_password"))
-                        .accept(MediaType.APPLICATION_JSON))
+        login("none_exist", "error_password")
                 .andExpect(status().isUnauthorized())
                 .andExpect(jsonPath("$.flag").value(false))
                 .andExpect(jsonPath("$.message").value("username or password is incorrect"))
                 .andExpect(jsonPath("$.data").value("Bad credentials"));
 
         // email incorrect
-        mockMvc.perform(post(baseUrl + "/login")
-                        .with(httpBasic("none_exist@example.com", "error_password"))
-                        .accept(MediaType.APPLICATION_JSON))
+        login("none_exist@example.com", "error_password")
                 .andExpect(status().isUnauthorized())
                 .andExpect(jsonPath("$.flag").value(false))
                 .andExpect(jsonPath("$.message").value("username or password is incorrect"))
@@ -91,11 +100,26 @@ class AuthControllerTest {
     }
 
     @Test
-    @DisplayName("Verify login success")
-    void testLoginSuccess() throws Exception {
+    @DisplayName("Verify a throttled login is rejected before the password is checked")
+    void testLoginThrottled() throws Exception {
+        // An unknown user of its own, its failed attempts don't throttle the other tests.
+        for (int i = 0; i < 10; i++) {
+            login("throttled", "error_password")
+                    .andExpect(status().isUnauthorized());
+        }
+
         mockMvc.perform(post(baseUrl + "/login")
-                        .with(httpBasic(ADMIN.username(), ADMIN.password()))
+                        .with(httpBasic("throttled", "error_password"))
                         .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    @DisplayName("Verify login success")
+    void testLoginSuccess() throws Exception {
+        login(ADMIN.username(), ADMIN.password())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.flag").value(true))
                 .andExpect(jsonPath("$.message").value("welcome " + ADMIN.username()))
@@ -104,9 +128,7 @@ class AuthControllerTest {
                         .value(Matchers.matchesPattern("^([0-9a-zA-Z\\-_])+\\.([0-9a-zA-Z\\-_])+\\.([0-9a-zA-Z\\-_])+$")));
 
         // verify login by email
-        mockMvc.perform(post(baseUrl + "/login")
-                        .with(httpBasic(ADMIN.email(), ADMIN.password()))
-                        .accept(MediaType.APPLICATION_JSON))
+        login(ADMIN.email(), ADMIN.password())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.flag").value(true))
                 .andExpect(jsonPath("$.message").value("welcome " + ADMIN.username()))
@@ -114,4 +136,118 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.data.token")
                         .value(Matchers.matchesPattern("^([0-9a-zA-Z\\-_])+\\.([0-9a-zA-Z\\-_])+\\.([0-9a-zA-Z\\-_])+$")));
     }
+
+    @Test
+    @DisplayName("Verify a refresh token is exchanged for new tokens once")
+    void testRefreshToken() throws Exception {
+        String refreshToken = loginInfo().path("refreshToken").asText();
+
+        refresh(refreshToken)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.data.userInfo.username").value(ADMIN.username()))
+                .andExpect(jsonPath("$.data.token").isNotEmpty())
+                .andExpect(jsonPath("$.data.refreshToken").isNotEmpty());
+
+        // the refresh token is rotated, using it twice is rejected
+        refresh(refreshToken)
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.flag").value(false))
+                .andExpect(jsonPath("$.data").value("Token has been revoked"));
+    }
+
+    @Test
+    @DisplayName("Verify only one of two concurrent refreshes with the same refresh token succeeds")
+    void testConcurrentRefresh() throws Exception {
+        String refreshToken = loginInfo().path("refreshToken").asText();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    return refresh(refreshToken).andReturn().getResponse().getStatus();
+                }));
+            }
+            start.countDown();
+
+            List<Integer> results = new ArrayList<>();
+            for (Future<Integer> status : statuses) {
+                results.add(status.get(30, TimeUnit.SECONDS));
+            }
+            assertThat(results).containsExactlyInAnyOrder(200, 401);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Verify tokens can't be used in place of each other")
+    void testTokenUseIsChecked() throws Exception {
+        JsonNode loginInfo = loginInfo();
+
+        refresh(loginInfo.path("token").asText())
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get(baseUrl + "/users/current_user")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + loginInfo.path("refreshToken").asText()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Verify logout revokes the access token and the refresh token")
+    void testLogout() throws Exception {
+        JsonNode loginInfo = loginInfo();
+        String token = loginInfo.path("token").asText();
+        String refreshToken = loginInfo.path("refreshToken").asText();
+        mockMvc.perform(get(baseUrl + "/users")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post(baseUrl + "/logout")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RefreshTokenRequest(refreshToken))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.flag").value(true));
+
+        mockMvc.perform(get(baseUrl + "/users")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+        refresh(refreshToken)
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Verify logout with Basic credentials is rejected")
+    void testLogoutWithoutBearerToken() throws Exception {
+        mockMvc.perform(post(baseUrl + "/logout")
+                        .with(httpBasic(ADMIN.username(), ADMIN.password())))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.flag").value(false))
+                .andExpect(jsonPath("$.message").value("Logout requires a bearer token"));
+    }
+
+    private JsonNode loginInfo() throws Exception {
+        String body = login(ADMIN.username(), ADMIN.password())
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).path("data");
+    }
+
+    private ResultActions refresh(String refreshToken) throws Exception {
+        return mockMvc.perform(post(baseUrl + "/token/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new RefreshTokenRequest(refreshToken))));
+    }
+
+    private ResultActions login(String username, String password) throws Exception {
+        // The credentials are checked asynchronously, the response is written by the async dispatch.
+        MvcResult mvcResult = mockMvc.perform(post(baseUrl + "/login")
+                        .with(httpBasic(username, password))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
 }
@@ -0,0 +1,79 @@
+package com.simon.smile.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The bytes per request recorded in {@code allocation-baselines.properties}, a request allocating more than its
+ * baseline plus the {@code tolerance} fails the test. Requests without a baseline are only reported.
+ * <p>
+ * Run the tests with {@code -Dallocation.record=true} to write the measured values to
+ * {@code target/allocation-baselines.properties} instead of checking them, and copy them over after an intended change.
+ */
+public final class AllocationBaselines {
+
+    private static final String RESOURCE = "/allocation-baselines.properties";
+
+    private static final Path RECORD_FILE = Path.of("target", "allocation-baselines.properties");
+
+    private final Properties baselines = new Properties();
+
+    private final double tolerance;
+
+    private final boolean record = Boolean.getBoolean("allocation.record");
+
+    private final Map<String, Long> recorded = new TreeMap<>();
+
+    public AllocationBaselines() {
+        try (InputStream inputStream = AllocationBaselines.class.getResourceAsStream(RESOURCE)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Missing " + RESOURCE);
+            }
+            this.baselines.load(inputStream);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        this.tolerance = Double.parseDouble(this.baselines.getProperty("tolerance"));
+    }
+
+    public void check(String request, long bytes) {
+        if (this.record) {
+            this.recorded.put(request, bytes);
+            write();
+            return;
+        }
+        String baseline = this.baselines.getProperty(request);
+        if (baseline == null) {
+            System.out.printf("%s allocated %d bytes per request, no baseline, record one with -Dallocation.record=true%n",
+                    request, bytes);
+            return;
+        }
+        long limit = (long) (Long.parseLong(baseline) * (1 + this.tolerance));
+        assertThat(bytes)
+                .as("Bytes allocated by %s, the baseline is %s", request, baseline)
+                .isLessThanOrEqualTo(limit);
+    }
+
+    private void write() {
+        try {
+            Files.createDirectories(RECORD_FILE.getParent());
+            try (Writer writer = Files.newBufferedWriter(RECORD_FILE)) {
+                writer.write("tolerance=" + this.baselines.getProperty("tolerance") + System.lineSeparator());
+                for (Map.Entry<String, Long> entry : this.recorded.entrySet()) {
+                    writer.write(entry.getKey() + "=" + entry.getValue() + System.lineSeparator());
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
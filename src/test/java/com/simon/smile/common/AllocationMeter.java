@@ -0,0 +1,75 @@
+package com.simon.smile.common;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures the bytes a request allocates on the thread handling it, the MockMvc calling thread, and on the password
+ * hashing threads logins continue on.
+ * <p>
+ * The request is run {@code warmups} times first, so lazily initialized caches, pools and JIT compiled code don't
+ * count, then the median of {@code iterations} runs is taken, which a GC or a scheduled job now and then doesn't move.
+ */
+public final class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int warmups;
+
+    private final int iterations;
+
+    public AllocationMeter(int warmups, int iterations) {
+        this.warmups = warmups;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Whether this JVM can tell the bytes allocated per thread, HotSpot can.
+     */
+    public static boolean isSupported() {
+        return THREAD_MX_BEAN.isThreadAllocatedMemorySupported();
+    }
+
+    /**
+     * Returns the median bytes allocated by one run of the request.
+     */
+    public long measure(Request request) throws Exception {
+        THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+        for (int i = 0; i < this.warmups; i++) {
+            request.perform();
+        }
+        // Looked up once, after the warm-up started all hashing threads; looking them up allocates a lot.
+        long[] threadIds = threadIds();
+        long[] allocations = new long[this.iterations];
+        for (int i = 0; i < this.iterations; i++) {
+            long before = allocatedBytes(threadIds);
+            request.perform();
+            allocations[i] = allocatedBytes(threadIds) - before;
+        }
+        Arrays.sort(allocations);
+        return allocations[allocations.length / 2];
+    }
+
+    private static long[] threadIds() {
+        Thread current = Thread.currentThread();
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread == current || thread.getName().startsWith("password-hashing-"))
+                .mapToLong(Thread::getId)
+                .toArray();
+    }
+
+    private static long allocatedBytes(long[] threadIds) {
+        long total = 0;
+        for (long allocated : THREAD_MX_BEAN.getThreadAllocatedBytes(threadIds)) {
+            // -1 for a thread that has ended meanwhile.
+            total += Math.max(allocated, 0);
+        }
+        return total;
+    }
+
+    @FunctionalInterface
+    public interface Request {
+        void perform() throws Exception;
+    }
+}
@@ -0,0 +1,42 @@
+package com.simon.smile.common;
+
+import org.json.JSONObject;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Logs a {@link Person} in through the login endpoint, which answers asynchronously.
+ */
+public final class Logins {
+
+    private Logins() {
+    }
+
+    /**
+     * Returns the bearer token of the person.
+     */
+    public static String login(MockMvc mockMvc, String baseUrl, Person person) throws Exception {
+        return new JSONObject(loginResponse(mockMvc, baseUrl, person)).getJSONObject("data").getString("token");
+    }
+
+    /**
+     * Returns the body of the successful login response.
+     */
+    public static String loginResponse(MockMvc mockMvc, String baseUrl, Person person) throws Exception {
+        MvcResult loginResult = mockMvc.perform(post(baseUrl + "/login")
+                        .with(httpBasic(person.username(), person.password()))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(loginResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+}
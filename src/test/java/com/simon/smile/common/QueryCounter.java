@@ -0,0 +1,94 @@
+package com.simon.smile.common;
+
+import com.simon.smile.security.PasswordHashingExecutor;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counts the SELECT, INSERT, UPDATE and DELETE statements run since {@link #reset()}, so tests can pin the statements
+ * an endpoint needs and N+1 queries show up as a failing count.
+ * <p>
+ * Only statements of the thread calling {@link #reset()}, the one running MockMvc requests, of the password hashing
+ * threads and of the application task executor are counted: logins and registrations hash on the former and continue
+ * on the latter. Scheduled jobs like the revocation refresh would make the counts flaky otherwise. Sequence increments aren't counted either: the pooled optimizer only
+ * runs one every few inserts, depending on what ran before.
+ * <p>
+ * Registered by {@link QueryCounterConfiguration}.
+ */
+public class QueryCounter implements QueryExecutionListener {
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(QueryType.values().length);
+
+    private final String taskThreadNamePrefix;
+
+    private volatile Thread thread = Thread.currentThread();
+
+    /**
+     * @param taskThreadNamePrefix the name prefix of the application task executor's threads.
+     */
+    public QueryCounter(String taskThreadNamePrefix) {
+        this.taskThreadNamePrefix = taskThreadNamePrefix;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (!isCounted(Thread.currentThread())) {
+            return;
+        }
+        for (QueryInfo queryInfo : queryInfoList) {
+            String query = queryInfo.getQuery();
+            if (!isSequenceIncrement(query)) {
+                // A batch runs the statement once per parameter set.
+                this.counts.addAndGet(QueryUtils.getQueryType(query).ordinal(), Math.max(1, queryInfo.getParametersList().size()));
+            }
+        }
+    }
+
+    /**
+     * Starts counting again, on the calling thread.
+     */
+    public void reset() {
+        this.thread = Thread.currentThread();
+        for (int i = 0; i < this.counts.length(); i++) {
+            this.counts.set(i, 0);
+        }
+    }
+
+    public StatementCounts counts() {
+        return new StatementCounts(count(QueryType.SELECT), count(QueryType.INSERT),
+                count(QueryType.UPDATE), count(QueryType.DELETE));
+    }
+
+    private int count(QueryType type) {
+        return this.counts.get(type.ordinal());
+    }
+
+    private boolean isCounted(Thread current) {
+        return current == this.thread || PasswordHashingExecutor.isHashingThread()
+                || current.getName().startsWith(this.taskThreadNamePrefix);
+    }
+
+    private static boolean isSequenceIncrement(String query) {
+        String lowerCaseQuery = query.toLowerCase(Locale.ROOT);
+        // H2 and PostgreSQL.
+        return lowerCaseQuery.contains("next value for") || lowerCaseQuery.contains("nextval(");
+    }
+
+    /**
+     * Compared with {@code assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(1, 0, 0, 0))}, a failure
+     * shows all four counts.
+     */
+    public record StatementCounts(int select, int insert, int update, int delete) {
+    }
+}
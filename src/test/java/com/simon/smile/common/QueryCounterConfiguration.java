@@ -0,0 +1,43 @@
+package com.simon.smile.common;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.task.TaskExecutionProperties;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+/**
+ * Routes the statements of the data source through a {@link QueryCounter}, imported by the tests counting them.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class QueryCounterConfiguration {
+
+    @Bean
+    QueryCounter queryCounter(TaskExecutionProperties taskExecutionProperties) {
+        return new QueryCounter(taskExecutionProperties.getThreadNamePrefix());
+    }
+
+    @Bean
+    static BeanPostProcessor queryCounterDataSourceProxy(ObjectProvider<QueryCounter> queryCounter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Proxied already when the slow-query log is enabled.
+                if (bean instanceof ProxyDataSource proxyDataSource) {
+                    proxyDataSource.getProxyConfig().getQueryListener().addListener(queryCounter.getObject());
+                    return bean;
+                }
+                if (bean instanceof DataSource dataSource) {
+                    return ProxyDataSourceBuilder.create(beanName, dataSource)
+                            .listener(queryCounter.getObject())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
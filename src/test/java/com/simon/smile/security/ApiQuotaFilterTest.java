@@ -0,0 +1,107 @@
+package com.simon.smile.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiQuotaFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ApiQuota apiQuota = new ApiQuota(true, 2, Duration.ofMinutes(1), 5, Duration.ofMinutes(1),
+            5, Duration.ofMinutes(1), 1024, meterRegistry);
+
+    private Exception resolvedException;
+
+    private final HandlerExceptionResolver resolver = (request, response, handler, ex) -> {
+        resolvedException = ex;
+        response.setStatus(429);
+        return new ModelAndView();
+    };
+
+    private final ApiQuotaFilter filter = new ApiQuotaFilter(apiQuota, groups(), resolver);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Verify a user is rejected once the quota of a group is used up and other groups stay available")
+    void rejectWhenQuotaIsUsedUp() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("admin", null, "ROLE_ADMIN"));
+
+        MockHttpServletResponse first = perform("POST", "/api/v1/users/filter");
+        MockHttpServletResponse second = perform("POST", "/api/v1/users/filter");
+        MockHttpServletResponse rejected = perform("POST", "/api/v1/users/filter");
+        MockHttpServletResponse otherGroup = perform("GET", "/api/v1/users/1");
+
+        assertThat(first.getHeader("RateLimit-Limit")).isEqualTo("2");
+        assertThat(first.getHeader("RateLimit-Remaining")).isEqualTo("1");
+        assertThat(second.getHeader("RateLimit-Remaining")).isEqualTo("0");
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("RateLimit-Reset")).isEqualTo("120");
+        assertThat(resolvedException).isInstanceOf(QuotaExceededException.class);
+        assertThat(((QuotaExceededException) resolvedException).getRetryAfter()).isPositive();
+        assertThat(otherGroup.getStatus()).isEqualTo(200);
+        assertThat(meterRegistry.counter("api.quota.rejected", "group", "query").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Verify users have their own quota and anonymous callers are limited by address")
+    void quotaPerCaller() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("admin", null, "ROLE_ADMIN"));
+        perform("POST", "/api/v1/users/filter");
+        perform("POST", "/api/v1/users/filter");
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("simon", null, "ROLE_USER"));
+        MockHttpServletResponse otherUser = perform("POST", "/api/v1/users/filter");
+        SecurityContextHolder.clearContext();
+        MockHttpServletResponse anonymous = perform("POST", "/api/v1/users/filter");
+
+        assertThat(otherUser.getStatus()).isEqualTo(200);
+        assertThat(anonymous.getStatus()).isEqualTo(200);
+        assertThat(anonymous.getHeader("RateLimit-Remaining")).isEqualTo("1");
+    }
+
+    @Test
+    @DisplayName("Verify requests outside the API are not limited")
+    void requestsOutsideApiAreNotLimited() throws Exception {
+        MockHttpServletResponse response = perform("GET", "/.well-known/jwks.json");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader("RateLimit-Limit")).isNull();
+    }
+
+    private MockHttpServletResponse perform(String method, String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setServletPath(uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static Map<RequestMatcher, ApiQuotaGroup> groups() {
+        Map<RequestMatcher, ApiQuotaGroup> groups = new LinkedHashMap<>();
+        groups.put(AntPathRequestMatcher.antMatcher("/api/v1/users/filter"), ApiQuotaGroup.QUERY);
+        groups.put(AntPathRequestMatcher.antMatcher(HttpMethod.GET, "/api/v1/**"), ApiQuotaGroup.READ);
+        groups.put(AntPathRequestMatcher.antMatcher("/api/v1/**"), ApiQuotaGroup.WRITE);
+        return groups;
+    }
+}
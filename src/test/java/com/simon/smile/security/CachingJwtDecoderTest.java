@@ -0,0 +1,83 @@
+package com.simon.smile.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.mockito.internal.verification.VerificationModeFactory.times;
+
+@ExtendWith(MockitoExtension.class)
+class CachingJwtDecoderTest {
+
+    @Mock
+    private JwtDecoder delegate;
+
+    private CachingJwtDecoder cachingJwtDecoder;
+
+    @BeforeEach
+    void setUp() {
+        cachingJwtDecoder = new CachingJwtDecoder(delegate, 100);
+    }
+
+    @Test
+    @DisplayName("Verify a token is only verified once while it is not expired")
+    void decodeVerifiesTokenOnce() {
+        Jwt jwt = jwt("token-a", Instant.now().plus(2, ChronoUnit.HOURS));
+        given(delegate.decode("token-a")).willReturn(jwt);
+
+        Jwt first = cachingJwtDecoder.decode("token-a");
+        Jwt second = cachingJwtDecoder.decode("token-a");
+
+        assertThat(first).isSameAs(jwt);
+        assertThat(second).isSameAs(jwt);
+        assertThat(cachingJwtDecoder.getCache().stats().hitCount()).isEqualTo(1);
+        assertThat(cachingJwtDecoder.getCache().stats().missCount()).isEqualTo(1);
+        verify(delegate, times(1)).decode(anyString());
+    }
+
+    @Test
+    @DisplayName("Verify an expired token is verified again")
+    void decodeVerifiesExpiredTokenAgain() {
+        Jwt jwt = jwt("token-b", Instant.now().minus(1, ChronoUnit.MINUTES));
+        given(delegate.decode("token-b")).willReturn(jwt);
+
+        cachingJwtDecoder.decode("token-b");
+        cachingJwtDecoder.decode("token-b");
+
+        verify(delegate, times(2)).decode(anyString());
+    }
+
+    @Test
+    @DisplayName("Verify different tokens are cached separately")
+    void decodeCachesTokensSeparately() {
+        Instant expiresAt = Instant.now().plus(2, ChronoUnit.HOURS);
+        given(delegate.decode("token-c")).willReturn(jwt("token-c", expiresAt));
+        given(delegate.decode("token-d")).willReturn(jwt("token-d", expiresAt));
+
+        assertThat(cachingJwtDecoder.decode("token-c").getTokenValue()).isEqualTo("token-c");
+        assertThat(cachingJwtDecoder.decode("token-d").getTokenValue()).isEqualTo("token-d");
+        verify(delegate, times(2)).decode(anyString());
+    }
+
+    private static Jwt jwt(String token, Instant expiresAt) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("admin")
+                .issuedAt(expiresAt.minus(2, ChronoUnit.HOURS))
+                .expiresAt(expiresAt)
+                .claim("authorities", "ROLE_ADMIN")
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.simon.smile.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.security.KeyPair;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class JwtSigningAlgorithmTest {
+
+    @ParameterizedTest
+    @EnumSource(JwtSigningAlgorithm.class)
+    @DisplayName("Verify a token signed with the algorithm is accepted by its decoder")
+    void signAndVerifySuccess(JwtSigningAlgorithm algorithm) throws Exception {
+        KeyPair keyPair = algorithm.generateKeyPair();
+        JWK jwk = algorithm.toPublicJwk(keyPair.getPublic(), null);
+        JwtDecoder decoder = JwtSigningAlgorithm.createDecoder(new ImmutableJWKSet<>(new JWKSet(jwk)));
+
+        String token = new SigningKeyJwtEncoder(algorithm, keyPair.getPrivate(), null).encode(parameters()).getTokenValue();
+        Jwt jwt = decoder.decode(token);
+
+        assertThat(jwt.getHeaders()).containsEntry("alg", algorithm.name());
+        assertThat(jwt.getSubject()).isEqualTo("admin");
+        assertThat(jwt.getClaimAsString("authorities")).isEqualTo("ROLE_ADMIN");
+    }
+
+    @ParameterizedTest
+    @EnumSource(JwtSigningAlgorithm.class)
+    @DisplayName("Verify a token signed by another key is rejected")
+    void verifyErrorWhenSignedByAnotherKey(JwtSigningAlgorithm algorithm) throws Exception {
+        JWK jwk = algorithm.toPublicJwk(algorithm.generateKeyPair().getPublic(), null);
+        KeyPair otherKeyPair = algorithm.generateKeyPair();
+        JwtDecoder decoder = JwtSigningAlgorithm.createDecoder(new ImmutableJWKSet<>(new JWKSet(jwk)));
+
+        String token = new SigningKeyJwtEncoder(algorithm, otherKeyPair.getPrivate(), null).encode(parameters()).getTokenValue();
+        Throwable throwable = catchThrowable(() -> decoder.decode(token));
+
+        assertThat(throwable).isInstanceOf(JwtException.class);
+    }
+
+    @ParameterizedTest
+    @EnumSource(JwtSigningAlgorithm.class)
+    @DisplayName("Verify a token minted from written claims is accepted by its decoder")
+    void mintFromClaimsWriterSuccess(JwtSigningAlgorithm algorithm) throws Exception {
+        KeyPair keyPair = algorithm.generateKeyPair();
+        JWK jwk = algorithm.toPublicJwk(keyPair.getPublic(), "kid-1");
+        JwtDecoder decoder = JwtSigningAlgorithm.createDecoder(new ImmutableJWKSet<>(new JWKSet(jwk)));
+        long now = Instant.now().getEpochSecond();
+        JwtClaimsWriter claims = new JwtClaimsWriter()
+                .claim("iss", "self")
+                .claim("iat", now)
+                .claim("exp", now + 7200)
+                .claim("sub", "admin")
+                .claim("authorities", List.of(new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_USER")))
+                .beginObject("user")
+                .claim("id", 1)
+                .claim("nickname", "The \"admin\"\n")
+                .claim("enabled", true)
+                .endObject();
+
+        String token = new SigningKeyJwtEncoder(algorithm, keyPair.getPrivate(), "kid-1").sign(claims);
+        Jwt jwt = decoder.decode(token);
+
+        assertThat(jwt.getHeaders()).containsEntry("alg", algorithm.name()).containsEntry("kid", "kid-1");
+        assertThat(jwt.getSubject()).isEqualTo("admin");
+        assertThat(jwt.getExpiresAt()).isEqualTo(Instant.ofEpochSecond(now + 7200));
+        assertThat(jwt.getClaimAsString("authorities")).isEqualTo("ROLE_ADMIN ROLE_USER");
+        assertThat(jwt.getClaimAsMap("user"))
+                .containsEntry("nickname", "The \"admin\"\n")
+                .containsEntry("enabled", true);
+    }
+
+    private static JwtEncoderParameters parameters() {
+        Instant now = Instant.now();
+        return JwtEncoderParameters.from(JwtClaimsSet.builder()
+                .issuer("self")
+                .issuedAt(now)
+                .expiresAt(now.plus(2, ChronoUnit.HOURS))
+                .subject("admin")
+                .claim("authorities", "ROLE_ADMIN")
+                .build());
+    }
+}
@@ -0,0 +1,60 @@
+package com.simon.smile.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class PasswordHashingExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(1, 1, meterRegistry);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        passwordHashingExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Verify work is rejected when the thread and the queue are busy")
+    void rejectWhenSaturated() {
+        CompletableFuture<Void> running = passwordHashingExecutor.supplyAsync(this::block);
+        CompletableFuture<Void> queued = passwordHashingExecutor.supplyAsync(this::block);
+
+        Throwable throwable = catchThrowable(() -> passwordHashingExecutor.call(() -> "hash"));
+
+        assertThat(throwable).isInstanceOf(PasswordHashingBusyException.class);
+        assertThat(meterRegistry.get("executor.queued").tag("name", "password.hashing").gauge().value()).isEqualTo(1);
+        release.countDown();
+        assertThat(CompletableFuture.allOf(running, queued).join()).isNull();
+    }
+
+    @Test
+    @DisplayName("Verify nested calls from a hashing thread run inline instead of queueing")
+    void callRunsInlineOnHashingThread() {
+        String result = passwordHashingExecutor.supplyAsync(() ->
+                passwordHashingExecutor.call(() -> Thread.currentThread().getName())).join();
+
+        assertThat(result).isEqualTo("password-hashing-1");
+        assertThat(PasswordHashingExecutor.isHashingThread()).isFalse();
+    }
+
+    private Void block() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,144 @@
+package com.simon.smile.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SigningKeyStoreTest {
+
+    @TempDir
+    Path location;
+
+    @Test
+    @DisplayName("Verify a token signed by one node is accepted by another node sharing the key directory")
+    void tokenIsAcceptedBySecondNode() throws Exception {
+        SigningKeyStore firstNode = new SigningKeyStore(JwtSigningAlgorithm.ES256, location.toString(), Duration.ofDays(7), Duration.ofMinutes(1), 2, 168);
+        SigningKeyStore secondNode = new SigningKeyStore(JwtSigningAlgorithm.ES256, location.toString(), Duration.ofDays(7), Duration.ofMinutes(1), 2, 168);
+
+        String token = firstNode.getEncoder().encode(parameters()).getTokenValue();
+        Jwt jwt = JwtSigningAlgorithm.createDecoder(secondNode).decode(token);
+
+        assertThat(jwt.getSubject()).isEqualTo("admin");
+        assertThat(jwt.getHeaders()).containsEntry("kid", firstNode.getPublicJwkSet().getKeys().get(0).getKeyID());
+        try (Stream<Path> files = Files.list(location)) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Verify tokens signed before a rotation are still accepted")
+    void tokenIsAcceptedAfterRotation() throws Exception {
+        SigningKeyStore signingKeyStore = new SigningKeyStore(JwtSigningAlgorithm.RS256, location.toString(), Duration.ofDays(7), Duration.ofMinutes(1), 2, 168);
+        String oldKeyId = signingKeyStore.getPublicJwkSet().getKeys().get(0).getKeyID();
+        String oldToken = signingKeyStore.getEncoder().encode(parameters()).getTokenValue();
+
+        signingKeyStore.rotate();
+        String newToken = signingKeyStore.getEncoder().encode(parameters()).getTokenValue();
+
+        assertThat(signingKeyStore.getPublicJwkSet().getKeys()).hasSize(2);
+        Jwt oldJwt = JwtSigningAlgorithm.createDecoder(signingKeyStore).decode(oldToken);
+        Jwt newJwt = JwtSigningAlgorithm.createDecoder(signingKeyStore).decode(newToken);
+        assertThat(oldJwt.getHeaders()).containsEntry("kid", oldKeyId);
+        assertThat(newJwt.getHeaders().get("kid")).isNotEqualTo(oldKeyId);
+    }
+
+    @Test
+    @DisplayName("Verify the next key is published before it signs")
+    void nextKeyIsPublishedBeforeItSigns() throws Exception {
+        SigningKeyStore signingKeyStore = new SigningKeyStore(JwtSigningAlgorithm.ES256, location.toString(), Duration.ofDays(7), Duration.ofMinutes(1), 2, 168);
+        String oldKeyId = signingKeyStore.getPublicJwkSet().getKeys().get(0).getKeyID();
+        // The signing key turns seven days old within the next two refresh intervals.
+        age(oldKeyId, Duration.ofDays(7).minusMinutes(1));
+
+        signingKeyStore.refresh();
+
+        assertThat(signingKeyStore.getPublicJwkSet().getKeys()).hasSize(2);
+        assertThat(signingKeyId(signingKeyStore)).isEqualTo(oldKeyId);
+
+        String newKeyId = signingKeyStore.getPublicJwkSet().getKeys().stream()
+                .map(JWK::getKeyID)
+                .filter(keyId -> !keyId.equals(oldKeyId))
+                .findFirst().orElseThrow();
+        age(newKeyId, Duration.ofMinutes(2));
+        signingKeyStore.refresh();
+
+        assertThat(signingKeyId(signingKeyStore)).isEqualTo(newKeyId);
+    }
+
+    @Test
+    @DisplayName("Verify no key is generated while another node holds the rotation lock")
+    void rotationLockIsRespected() throws Exception {
+        SigningKeyStore signingKeyStore = new SigningKeyStore(JwtSigningAlgorithm.ES256, location.toString(), Duration.ofDays(7), Duration.ofMinutes(1), 2, 168);
+        age(signingKeyStore.getPublicJwkSet().getKeys().get(0).getKeyID(), Duration.ofDays(7));
+        Files.createFile(location.resolve("rotation.lock"));
+
+        signingKeyStore.refresh();
+
+        assertThat(signingKeyStore.getPublicJwkSet().getKeys()).hasSize(1);
+        Files.delete(location.resolve("rotation.lock"));
+        signingKeyStore.refresh();
+
+        assertThat(signingKeyStore.getPublicJwkSet().getKeys()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Verify the JWK Set only publishes public keys")
+    void jwkSetOnlyContainsPublicKeys() throws Exception {
+        SigningKeyStore signingKeyStore = new SigningKeyStore(JwtSigningAlgorithm.EdDSA, "", Duration.ofDays(7), Duration.ofMinutes(1), 2, 168);
+
+        assertThat(signingKeyStore.getPublicJwkSet().getKeys())
+                .hasSize(1)
+                .allSatisfy(jwk -> assertThat(jwk.isPrivate()).isFalse());
+    }
+
+    @Test
+    @DisplayName("Verify key files are only readable by their owner and no temporary file is left behind")
+    void keyFilesAreOwnerOnly() throws Exception {
+        assumeTrue(Files.getFileStore(location).supportsFileAttributeView("posix"));
+        SigningKeyStore signingKeyStore = new SigningKeyStore(JwtSigningAlgorithm.ES256, location.toString(), Duration.ofDays(7), Duration.ofMinutes(1), 2, 168);
+
+        signingKeyStore.rotate();
+
+        try (Stream<Path> files = Files.list(location)) {
+            assertThat(files.filter(file -> !file.getFileName().toString().equals("rotation.lock")))
+                    .hasSize(2)
+                    .allSatisfy(file -> assertThat(Files.getPosixFilePermissions(file))
+                            .isEqualTo(PosixFilePermissions.fromString("rw-------")));
+        }
+    }
+
+    private void age(String keyId, Duration age) throws Exception {
+        Files.setLastModifiedTime(location.resolve(keyId + ".pem"), FileTime.from(Instant.now().minus(age)));
+    }
+
+    private static String signingKeyId(SigningKeyStore signingKeyStore) {
+        Jwt jwt = signingKeyStore.getEncoder().encode(parameters());
+        return (String) jwt.getHeaders().get("kid");
+    }
+
+    private static JwtEncoderParameters parameters() {
+        Instant now = Instant.now();
+        return JwtEncoderParameters.from(JwtClaimsSet.builder()
+                .issuer("self")
+                .issuedAt(now)
+                .expiresAt(now.plus(2, ChronoUnit.HOURS))
+                .subject("admin")
+                .build());
+    }
+}
@@ -0,0 +1,62 @@
+package com.simon.smile.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedTokenBucketsTest {
+
+    private final AtomicLong nanoTime = new AtomicLong(1_000);
+
+    private final StripedTokenBuckets buckets = new StripedTokenBuckets(3, Duration.ofSeconds(1), 1024, nanoTime::get);
+
+    @Test
+    @DisplayName("Verify a bucket allows its capacity in a burst and refills over time")
+    void burstThenRefill() {
+        assertThat(buckets.available("admin")).isEqualTo(3);
+        assertThat(buckets.tryAcquire("admin")).isTrue();
+        assertThat(buckets.tryAcquire("admin")).isTrue();
+        assertThat(buckets.tryAcquire("admin")).isTrue();
+        assertThat(buckets.tryAcquire("admin")).isFalse();
+        assertThat(buckets.timeUntilAvailable("admin")).isEqualTo(Duration.ofSeconds(1));
+
+        nanoTime.addAndGet(Duration.ofMillis(1500).toNanos());
+
+        assertThat(buckets.timeUntilAvailable("admin")).isZero();
+        assertThat(buckets.available("admin")).isEqualTo(1);
+        assertThat(buckets.tryAcquire("admin")).isTrue();
+        assertThat(buckets.tryAcquire("admin")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Verify consuming an empty bucket never owes more than one token")
+    void consumeIsBounded() {
+        for (int i = 0; i < 100; i++) {
+            buckets.consume("admin");
+        }
+
+        assertThat(buckets.timeUntilAvailable("admin")).isEqualTo(Duration.ofSeconds(1));
+    }
+
+    @Test
+    @DisplayName("Verify memory is bounded by the stripes, whatever the number of keys")
+    void keysShareStripes() {
+        StripedTokenBuckets single = new StripedTokenBuckets(1, Duration.ofSeconds(1), 1, nanoTime::get);
+
+        assertThat(single.tryAcquire("admin")).isTrue();
+        assertThat(single.tryAcquire("someone-else")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Verify waits are rounded up to whole seconds")
+    void wholeSecondsRoundUp() {
+        assertThat(StripedTokenBuckets.wholeSeconds(Duration.ZERO)).isZero();
+        assertThat(StripedTokenBuckets.wholeSeconds(Duration.ofMillis(1))).isEqualTo(1);
+        assertThat(StripedTokenBuckets.wholeSeconds(Duration.ofSeconds(1))).isEqualTo(1);
+        assertThat(StripedTokenBuckets.wholeSeconds(Duration.ofMillis(1001))).isEqualTo(2);
+    }
+}
@@ -0,0 +1,117 @@
+package com.simon.smile.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willDoNothing;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TokenDenylistTest {
+
+    @Mock
+    RevokedTokenRepository revokedTokenRepository;
+
+    TokenDenylist tokenDenylist;
+
+    private final Instant expiresAt = Instant.now().plus(2, ChronoUnit.HOURS);
+
+    @BeforeEach
+    void setUp() {
+        given(revokedTokenRepository.findAll())
+                .willReturn(List.of(new RevokedToken("revoked-at-startup", expiresAt, Instant.now())));
+        tokenDenylist = new TokenDenylist(revokedTokenRepository, 1000, 0.001);
+    }
+
+    @Test
+    @DisplayName("Verify tokens that were never revoked are checked without the database")
+    void notRevokedTokenSkipsDatabase() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(tokenDenylist.isRevoked("token-" + i)).isFalse();
+        }
+
+        verify(revokedTokenRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    @DisplayName("Verify revoked tokens are persisted and confirmed by the database")
+    void revokedTokenIsConfirmed() {
+        given(revokedTokenRepository.existsById("revoked-at-startup")).willReturn(true);
+        given(revokedTokenRepository.existsById("revoked-now")).willReturn(true);
+
+        tokenDenylist.revoke("revoked-now", expiresAt);
+
+        verify(revokedTokenRepository).save(any(RevokedToken.class));
+        assertThat(tokenDenylist.isRevoked("revoked-at-startup")).isTrue();
+        assertThat(tokenDenylist.isRevoked("revoked-now")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Verify a token can only be claimed once")
+    void claimOnce() {
+        willDoNothing()
+                .given(revokedTokenRepository).insert(eq("claimed-now"), any(Instant.class), any(Instant.class));
+        willThrow(new DataIntegrityViolationException("duplicate key"))
+                .given(revokedTokenRepository).insert(eq("claimed-before"), any(Instant.class), any(Instant.class));
+        given(revokedTokenRepository.existsById("claimed-now")).willReturn(true);
+
+        assertThat(tokenDenylist.claim("claimed-now", expiresAt)).isTrue();
+        assertThat(tokenDenylist.claim("claimed-before", expiresAt)).isFalse();
+        assertThat(tokenDenylist.isRevoked("claimed-now")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Verify tokens revoked by another node are picked up by a refresh")
+    void refreshAddsTokensRevokedElsewhere() {
+        given(revokedTokenRepository.findByRevokedAtGreaterThanEqual(any(Instant.class)))
+                .willReturn(List.of(new RevokedToken("revoked-elsewhere", expiresAt, Instant.now())));
+        given(revokedTokenRepository.existsById("revoked-elsewhere")).willReturn(true);
+
+        tokenDenylist.refresh();
+
+        assertThat(tokenDenylist.isRevoked("revoked-elsewhere")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Verify pruning rebuilds the filter without the expired tokens")
+    void pruneRebuildsFilter() {
+        given(revokedTokenRepository.deleteByExpiresAtBefore(any(Instant.class))).willReturn(1L);
+        given(revokedTokenRepository.findAll()).willReturn(List.of());
+
+        tokenDenylist.prune();
+
+        assertThat(tokenDenylist.isRevoked("revoked-at-startup")).isFalse();
+        verify(revokedTokenRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    @DisplayName("Verify the Bloom filter stays close to its false positive rate")
+    void bloomFilterFalsePositiveRate() {
+        BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> bloomFilter.put("revoked-" + i));
+
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> bloomFilter.mightContain("valid-" + i))
+                .count();
+
+        assertThat(IntStream.range(0, 10_000).allMatch(i -> bloomFilter.mightContain("revoked-" + i))).isTrue();
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+}
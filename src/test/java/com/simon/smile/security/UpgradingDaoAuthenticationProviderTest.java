@@ -0,0 +1,151 @@
+package com.simon.smile.security;
+
+import com.simon.smile.auth.AppUserPrincipal;
+import com.simon.smile.user.AppUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class UpgradingDaoAuthenticationProviderTest {
+
+    private static final String PASSWORD = "PassW0rd";
+
+    @Mock
+    UserDetailsService userDetailsService;
+    @Mock
+    UserDetailsPasswordService userDetailsPasswordService;
+
+    private final BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder(5);
+    private final PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(1, 8, new SimpleMeterRegistry());
+    private UpgradingDaoAuthenticationProvider authenticationProvider;
+
+    @BeforeEach
+    void setUp() {
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bCryptPasswordEncoder));
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bCryptPasswordEncoder);
+        authenticationProvider = new UpgradingDaoAuthenticationProvider(passwordEncoder, passwordHashingExecutor, userDetailsPasswordService);
+        authenticationProvider.setUserDetailsService(userDetailsService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Verify a password hashed with a lower strength is re-hashed after login")
+    void upgradeOutdatedHash() {
+        AppUserPrincipal principal = principal(new BCryptPasswordEncoder(4).encode(PASSWORD));
+        given(userDetailsService.loadUserByUsername("admin")).willReturn(principal);
+
+        Authentication authentication = authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", PASSWORD));
+
+        assertThat(authentication.isAuthenticated()).isTrue();
+        verify(userDetailsPasswordService, timeout(5000)).updatePassword(eq(principal), startsWith("{bcrypt}$2a$05$"));
+    }
+
+    @Test
+    @DisplayName("Verify a password hashed with the current encoding is left alone")
+    void keepCurrentHash() {
+        given(userDetailsService.loadUserByUsername("admin")).willReturn(principal("{bcrypt}" + bCryptPasswordEncoder.encode(PASSWORD)));
+
+        authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", PASSWORD));
+
+        verify(userDetailsPasswordService, after(200).never()).updatePassword(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Verify verified credentials skip the password check until the password changes")
+    void verifiedCredentialsAreCached() {
+        PasswordEncoder passwordEncoder = spy(bCryptPasswordEncoder);
+        UpgradingDaoAuthenticationProvider cachingProvider =
+                new UpgradingDaoAuthenticationProvider(passwordEncoder, passwordHashingExecutor, userDetailsPasswordService);
+        cachingProvider.setUserDetailsService(userDetailsService);
+        VerifiedCredentialsCache verifiedCredentialsCache = new VerifiedCredentialsCache(Duration.ofMinutes(5), 100);
+        cachingProvider.setVerifiedCredentialsCache(verifiedCredentialsCache);
+        given(userDetailsService.loadUserByUsername("admin")).willReturn(principal(bCryptPasswordEncoder.encode(PASSWORD)));
+
+        cachingProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", PASSWORD));
+        cachingProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", PASSWORD));
+        Throwable throwable = catchThrowable(() ->
+                cachingProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "wrong")));
+
+        assertThat(throwable).isInstanceOf(BadCredentialsException.class);
+        verify(passwordEncoder, times(2)).matches(any(), anyString());
+        assertThat(verifiedCredentialsCache.getCache().stats().hitCount()).isEqualTo(1);
+
+        // The password changed, the cached entry no longer matches.
+        given(userDetailsService.loadUserByUsername("admin")).willReturn(principal(bCryptPasswordEncoder.encode("NewPassW0rd")));
+        Throwable changed = catchThrowable(() ->
+                cachingProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", PASSWORD)));
+
+        assertThat(changed).isInstanceOf(BadCredentialsException.class);
+        verify(passwordEncoder, times(3)).matches(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Verify logins are rejected before loading the user once the failed attempts are used up")
+    void throttleFailedLogins() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        authenticationProvider.setLoginThrottle(new LoginThrottle(2, Duration.ofMinutes(1), 100, Duration.ofSeconds(1), 64, meterRegistry));
+        given(userDetailsService.loadUserByUsername("admin")).willReturn(principal(bCryptPasswordEncoder.encode(PASSWORD)));
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(catchThrowable(() -> authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "wrong"))))
+                    .isInstanceOf(BadCredentialsException.class);
+        }
+        Throwable throwable = catchThrowable(() ->
+                authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("Admin", PASSWORD)));
+
+        assertThat(throwable).isInstanceOf(LoginThrottledException.class);
+        assertThat(((LoginThrottledException) throwable).getRetryAfter()).isPositive();
+        verify(userDetailsService, times(2)).loadUserByUsername(anyString());
+        assertThat(meterRegistry.get("login.throttle.rejected").tag("key", "username").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Verify the calibrated strength never drops below the minimum")
+    void calibrationRespectsMinimumStrength() {
+        assertThat(PasswordHashingCalibration.bcryptStrength(Duration.ZERO, 4)).isEqualTo(4);
+        assertThat(PasswordHashingCalibration.bcryptStrength(Duration.ofSeconds(1), 4)).isBetween(5, 31);
+    }
+
+    private static AppUserPrincipal principal(String encodedPassword) {
+        return new AppUserPrincipal(new AppUser()
+                .setId(1)
+                .setUsername("admin")
+                .setPassword(encodedPassword)
+                .setRoles("ROLE_ADMIN")
+                .setEnabled(true));
+    }
+}
@@ -0,0 +1,149 @@
+package com.simon.smile.system;
+
+import com.simon.smile.common.AllocationBaselines;
+import com.simon.smile.common.AllocationMeter;
+import com.simon.smile.common.Logins;
+import com.simon.smile.user.AppUser;
+import com.simon.smile.user.UserService;
+import com.simon.smile.user.address.Address;
+import com.simon.smile.user.address.AddressRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.stream.IntStream;
+
+import static com.simon.smile.common.Person.ADMIN;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards the bytes the main endpoints allocate per request against the {@link AllocationBaselines}.
+ * <p>
+ * Runs on a database of its own, so the users other tests create don't change what is listed, and without quotas,
+ * which the warm-up would exhaust.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:allocation",
+        "api.quota.enabled=false"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@DisplayName("Verify the bytes allocated per request stay within their baselines")
+@Tag("integration")
+class AllocationRegressionTest {
+
+    private static final int ADDRESSES = 5;
+
+    private final AllocationMeter allocationMeter = new AllocationMeter(200, 51);
+
+    // Every login pays for BCrypt, a few dozen of them take long enough.
+    private final AllocationMeter loginAllocationMeter = new AllocationMeter(20, 11);
+
+    private final AllocationBaselines allocationBaselines = new AllocationBaselines();
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    AddressRepository addressRepository;
+
+    @Value("${api.base-url}")
+    String baseUrl;
+
+    private String token;
+
+    private AppUser admin;
+
+    @BeforeAll
+    void seed() {
+        admin = userService.findByUsername(ADMIN.username()).orElseThrow();
+        addressRepository.saveAll(IntStream.rangeClosed(1, ADDRESSES)
+                .mapToObj(i -> new Address()
+                        .setFullAddress(i + " Main Street")
+                        .setPhone("13012345678")
+                        .setDefault(i == 1)
+                        .setOwner(admin))
+                .toList());
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(AllocationMeter.isSupported(), "Allocated bytes per thread are not supported by this JVM");
+        token = Logins.login(mockMvc, baseUrl, ADMIN);
+    }
+
+    @Test
+    @DisplayName("Verify the allocation of find all users")
+    void findUsers() throws Exception {
+        check("find-users", get(baseUrl + "/users")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("Verify the allocation of filter users")
+    void filterUsers() throws Exception {
+        check("filter-users", post(baseUrl + "/users/filter")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"roles\": \"ROLE_ADMIN\"}")
+                .accept(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("Verify the allocation of find user by ID")
+    void findUserById() throws Exception {
+        check("find-user-by-id", get(baseUrl + "/users/{id}", admin.getId())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("Verify the allocation of find address by ID")
+    void findAddressById() throws Exception {
+        Integer addressId = addressRepository.findByOwnerId(admin.getId()).get(0).getId();
+
+        check("find-address-by-id", get(baseUrl + "/users/address/{id}", addressId)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("Verify the allocation of find addresses by user ID")
+    void findAddressesByUserId() throws Exception {
+        check("find-addresses-by-user-id", get(baseUrl + "/users/{userId}/address", admin.getId())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .accept(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("Verify the allocation of login, including the password check on the hashing threads")
+    void login() throws Exception {
+        long bytes = loginAllocationMeter.measure(() -> Logins.loginResponse(mockMvc, baseUrl, ADMIN));
+
+        allocationBaselines.check("login", bytes);
+    }
+
+    private void check(String request, RequestBuilder requestBuilder) throws Exception {
+        long bytes = allocationMeter.measure(() -> mockMvc.perform(requestBuilder).andExpect(status().isOk()));
+
+        allocationBaselines.check(request, bytes);
+    }
+}
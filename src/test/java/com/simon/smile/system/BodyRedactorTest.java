@@ -0,0 +1,37 @@
+package com.simon.smile.system;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BodyRedactorTest {
+
+    private final BodyRedactor bodyRedactor = new BodyRedactor(List.of("password", "token"));
+
+    @Test
+    @DisplayName("Verify the values of redacted fields are masked and other fields are kept")
+    void redactFields() {
+        String body = "{\"username\":\"admin\",\"password\" : \"Pa\\\"ss@W0rd\",\"data\":{\"Token\":\"eyJ.x.y\",\"id\":1}}";
+
+        assertThat(bodyRedactor.redact(body))
+                .isEqualTo("{\"username\":\"admin\",\"password\" : \"******\",\"data\":{\"Token\":\"******\",\"id\":1}}");
+    }
+
+    @Test
+    @DisplayName("Verify a value cut off by the body size cap is masked")
+    void redactTruncatedValue() {
+        assertThat(bodyRedactor.redact("{\"username\":\"admin\",\"password\":\"Pass@W"))
+                .isEqualTo("{\"username\":\"admin\",\"password\":\"******\"");
+    }
+
+    @Test
+    @DisplayName("Verify bodies without redacted fields are returned as they are")
+    void keepBodyWithoutRedactedFields() {
+        String body = "{\"username\":\"password\"}";
+
+        assertThat(bodyRedactor.redact(body)).isSameAs(body);
+    }
+}
@@ -0,0 +1,77 @@
+package com.simon.smile.system;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class BodyTeeTest {
+
+    @Test
+    @DisplayName("Verify the tee keeps the start of the body and counts all of it")
+    void captureStartOfBody() {
+        TeeBufferPool pool = new TeeBufferPool(2, 8);
+        BodyTee tee = new BodyTee(pool);
+
+        byte[] body = "{\"name\":\"admin\"}".getBytes(StandardCharsets.UTF_8);
+        tee.write(body[0]);
+        tee.write(body, 1, body.length - 1);
+
+        assertThat(tee.text(StandardCharsets.UTF_8)).isEqualTo("{\"name\":");
+        assertThat(tee.size()).isEqualTo(body.length);
+        assertThat(pool.available()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Verify buffers go back to the pool once and are not captured into when it is empty")
+    void reuseBuffers() {
+        TeeBufferPool pool = new TeeBufferPool(1, 8);
+        BodyTee first = new BodyTee(pool);
+        BodyTee second = new BodyTee(pool);
+
+        second.write(new byte[]{'a', 'b'}, 0, 2);
+        first.release();
+        first.release();
+
+        assertThat(second.text(StandardCharsets.UTF_8)).isNull();
+        assertThat(second.size()).isEqualTo(2);
+        assertThat(pool.available()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Verify the wrappers pass bodies through while teeing them")
+    void passBodiesThrough() throws Exception {
+        TeeBufferPool pool = new TeeBufferPool(2, 4);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/users/filter");
+        request.setContent("request body".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        TeeRequestWrapper req = new TeeRequestWrapper(request, pool, 1024);
+        TeeResponseWrapper resp = new TeeResponseWrapper(response, pool);
+
+        assertThat(req.getInputStream().readAllBytes()).asString(StandardCharsets.UTF_8).isEqualTo("request body");
+        resp.getWriter().write("response body");
+        resp.flushWriter();
+
+        assertThat(response.getContentAsString()).isEqualTo("response body");
+        assertThat(req.getTee().text(StandardCharsets.UTF_8)).isEqualTo("requ");
+        assertThat(resp.getTee().text(StandardCharsets.UTF_8)).isEqualTo("resp");
+        assertThat(resp.getTee().size()).isEqualTo("response body".length());
+    }
+
+    @Test
+    @DisplayName("Verify reading a request body past the limit fails")
+    void rejectOversizedRequestBody() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/users/filter");
+        request.setContent(new byte[100]);
+        TeeRequestWrapper req = new TeeRequestWrapper(request, null, 64);
+
+        Throwable throwable = catchThrowable(() -> req.getInputStream().readAllBytes());
+
+        assertThat(throwable).isInstanceOf(RequestBodyTooLargeException.class);
+    }
+}
@@ -0,0 +1,76 @@
+package com.simon.smile.system;
+
+import com.simon.smile.system.FlightEvents.LoginEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class FlightRecordingEndpointTest {
+
+    @TempDir
+    Path directory;
+
+    private FlightRecordingEndpoint endpoint;
+
+    @BeforeEach
+    void setUp() {
+        endpoint = new FlightRecordingEndpoint(new FlightRecordingProperties(directory, "default",
+                DataSize.ofMegabytes(16), Duration.ofMinutes(5), Duration.ofMinutes(10)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if ("RUNNING".equals(endpoint.status().state())) {
+            endpoint.control("stop", null, null);
+        }
+    }
+
+    @Test
+    @DisplayName("Verify a recording is dumped with the application events and written when stopped")
+    void recordApplicationEvents() throws Exception {
+        assertThat(endpoint.control("start", Duration.ofMinutes(1), null).state()).isEqualTo("RUNNING");
+        LoginEvent event = new LoginEvent();
+        event.begin();
+        event.username = "admin";
+        event.commit();
+
+        FlightRecordingEndpoint.Status dumped = endpoint.control("dump", null, null);
+        FlightRecordingEndpoint.Status stopped = endpoint.control("stop", null, null);
+
+        assertThat(dumped.state()).isEqualTo("RUNNING");
+        assertThat(RecordingFile.readAllEvents(Path.of(dumped.file())))
+                .filteredOn(recorded -> recorded.getEventType().getName().equals("com.simon.smile.Login"))
+                .extracting(recorded -> recorded.getString("username"))
+                .containsExactly("admin");
+        assertThat(stopped.state()).isEqualTo("CLOSED");
+        // Dumped and stopped within the same second, the dump must not be overwritten.
+        assertThat(stopped.file()).isNotEqualTo(dumped.file());
+        assertThat(Path.of(stopped.file())).exists().hasParent(directory.toAbsolutePath());
+        assertThat(RecordingFile.readAllEvents(Path.of(dumped.file()))).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("Verify a second recording, a recording beyond the maximum duration and a dump without recording are rejected")
+    void rejectInvalidRequests() {
+        assertThat(catchThrowable(() -> endpoint.control("dump", null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> endpoint.control("start", Duration.ofHours(1), null)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        endpoint.control("start", null, null);
+
+        assertThat(catchThrowable(() -> endpoint.control("start", null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(endpoint.status().duration()).isEqualTo(Duration.ofMinutes(10));
+    }
+}
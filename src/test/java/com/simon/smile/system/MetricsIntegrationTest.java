@@ -0,0 +1,85 @@
+package com.simon.smile.system;
+
+import com.simon.smile.common.Logins;
+import com.simon.smile.user.Roles;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.simon.smile.common.Person.ADMIN;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@DisplayName("Verify the metrics endpoints")
+@Tag("integration")
+class MetricsIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Value("${api.base-url}")
+    String baseUrl;
+
+    @Test
+    @DisplayName("Verify request, repository, pool, password and token timings are published")
+    void scrapePrometheusEndpoint() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+        mockMvc.perform(get(baseUrl + "/users/current_user")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("handler=\"UserController.getCurrentUser\"")))
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_bucket{")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds_bucket{")))
+                .andExpect(content().string(containsString("password_encoder_seconds_count{operation=\"matches\"")))
+                .andExpect(content().string(containsString("jwt_mint_seconds_count{token_use=\"access\"")));
+    }
+
+    @Test
+    @DisplayName("Verify the statements run by requests are listed by fingerprint")
+    void listSlowQueries() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+        mockMvc.perform(get(baseUrl + "/users/1")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/slowqueries")
+                        .param("orderBy", "count")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").isString())
+                .andExpect(jsonPath("$[0].count").isNumber())
+                .andExpect(jsonPath("$[*].fingerprint", hasItem(containsString("from app_user"))));
+    }
+
+    @Test
+    @DisplayName("Verify only admins can list the slow queries")
+    void slowQueriesRequireAdmin() throws Exception {
+        mockMvc.perform(get("/actuator/slowqueries")
+                        .with(jwt().authorities(new SimpleGrantedAuthority(Roles.ROLE_USER.getRole()))))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,80 @@
+package com.simon.smile.system;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SlowQueryLogTest {
+
+    private SlowQueryLog slowQueryLog;
+
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        slowQueryLog = new SlowQueryLog(new SlowQueryProperties(true, Duration.ofSeconds(10), 2, true, 64, List.of("password")));
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:slow_query_log;DB_CLOSE_DELAY=-1");
+        dataSource = ProxyDataSourceBuilder.create(h2).listener(slowQueryLog).build();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists item (id int primary key, name varchar(64))");
+            statement.execute("delete from item");
+        }
+        slowQueryLog.reset();
+    }
+
+    @Test
+    @DisplayName("Verify executions of the same statement are counted under one fingerprint")
+    void countByFingerprint() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            for (int i = 0; i < 3; i++) {
+                try (PreparedStatement statement = connection.prepareStatement("insert into item (id, name) values (?, ?)")) {
+                    statement.setInt(1, i);
+                    statement.setString(2, "item " + i);
+                    statement.executeUpdate();
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.executeQuery("select name from item where id = 1").close();
+                statement.executeQuery("select name from item where id = 2").close();
+            }
+        }
+
+        List<SlowQueryLog.Entry> entries = slowQueryLog.top(10, SlowQueryLog.Order.COUNT);
+
+        assertThat(entries).extracting(SlowQueryLog.Entry::fingerprint, SlowQueryLog.Entry::count).containsExactly(
+                tuple("insert into item (id, name) values (?, ?)", 3L),
+                tuple("select name from item where id = ?", 2L));
+        assertThat(entries).allSatisfy(entry -> {
+            assertThat(entry.slowCount()).isZero();
+            assertThat(entry.maxMillis()).isPositive().isLessThanOrEqualTo(entry.totalMillis());
+        });
+    }
+
+    @Test
+    @DisplayName("Verify statements beyond the fingerprint limit are counted together")
+    void countOtherFingerprints() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeQuery("select id from item").close();
+            statement.executeQuery("select name from item").close();
+            statement.executeQuery("select id, name from item").close();
+        }
+
+        assertThat(slowQueryLog.top(10, SlowQueryLog.Order.TOTAL))
+                .hasSize(3)
+                .extracting(SlowQueryLog.Entry::fingerprint)
+                .contains("(other)");
+    }
+}
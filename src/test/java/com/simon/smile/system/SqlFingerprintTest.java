@@ -0,0 +1,37 @@
+package com.simon.smile.system;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlFingerprintTest {
+
+    @Test
+    @DisplayName("Verify literals and IN lists are replaced and whitespace is collapsed")
+    void fingerprintStatement() {
+        String sql = "select a1_0.id,a1_0.full_address from address a1_0\n  where a1_0.owner_id in (1, 2, 3) and a1_0.phone = 'O''Brien' and a1_0.id > -2.5";
+
+        assertThat(SqlFingerprint.of(sql))
+                .isEqualTo("select a1_0.id,a1_0.full_address from address a1_0 where a1_0.owner_id in (?+) and a1_0.phone = ? and a1_0.id > ?");
+    }
+
+    @Test
+    @DisplayName("Verify statements only differing in their parameters share a fingerprint")
+    void sameFingerprintForSameShape() {
+        String first = SqlFingerprint.of("select * from app_user where id in (?, ?) and username = 'admin'");
+        String second = SqlFingerprint.of("select * from app_user where id in (?,?,?) and username = 'user'");
+
+        assertThat(first).isEqualTo(second);
+        assertThat(SqlFingerprint.id(first)).hasSize(8).isEqualTo(SqlFingerprint.id(second));
+    }
+
+    @Test
+    @DisplayName("Verify the columns parameters are bound to are found in inserts and comparisons")
+    void findParameterColumns() {
+        assertThat(SqlFingerprint.parameterColumns("insert into app_user (email,password,id) values (?,?,?)"))
+                .containsExactly("email", "password", "id");
+        assertThat(SqlFingerprint.parameterColumns("update app_user set password=?, nickname = ? where id=? and role_mask & ? > 0"))
+                .containsExactly("password", "nickname", "id", null);
+    }
+}
@@ -0,0 +1,70 @@
+package com.simon.smile.system;
+
+import com.simon.smile.system.SyntheticData.AddressRow;
+import com.simon.smile.system.SyntheticData.Batch;
+import com.simon.smile.system.SyntheticData.UserRow;
+import com.simon.smile.user.Roles;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SyntheticDataTest {
+
+    private static final List<String> HASHES = List.of("{bcrypt}hash1", "{bcrypt}hash2");
+
+    @Test
+    @DisplayName("Verify users get the supplied IDs, unique valid usernames and e-mails and a shared password hash")
+    void generateUsers() {
+        AtomicInteger userIds = new AtomicInteger(100);
+        AtomicInteger addressIds = new AtomicInteger(500);
+
+        Batch batch = new SyntheticData(42, 2, HASHES).next(1000, userIds::getAndIncrement, addressIds::getAndIncrement);
+
+        assertThat(batch.users()).hasSize(1000);
+        assertThat(batch.users()).extracting(UserRow::id).startsWith(100, 101, 102).doesNotHaveDuplicates();
+        assertThat(batch.users()).extracting(UserRow::username)
+                .doesNotHaveDuplicates()
+                .allSatisfy(username -> assertThat(username.length()).isBetween(3, 16));
+        assertThat(batch.users()).extracting(UserRow::email).doesNotHaveDuplicates();
+        assertThat(batch.users()).extracting(UserRow::password).containsOnly(HASHES.toArray(String[]::new));
+        assertThat(batch.users()).allSatisfy(user -> assertThat(user.roleMask()).isEqualTo(Roles.mask(user.roles())));
+        assertThat(batch.addresses()).extracting(AddressRow::id).startsWith(500).doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("Verify addresses average the configured count per user and each user's first one is the default")
+    void generateAddresses() {
+        AtomicInteger ids = new AtomicInteger(1);
+
+        Batch batch = new SyntheticData(7, 2, HASHES).next(20_000, ids::getAndIncrement, ids::getAndIncrement);
+
+        assertThat(batch.addresses().size() / 20_000.0).isCloseTo(2, within(0.1));
+        Map<Integer, List<AddressRow>> byOwner = batch.addresses().stream()
+                .collect(Collectors.groupingBy(AddressRow::ownerId));
+        assertThat(byOwner.values()).allSatisfy(addresses -> {
+            assertThat(addresses.get(0).isDefault()).isTrue();
+            assertThat(addresses.subList(1, addresses.size())).noneMatch(AddressRow::isDefault);
+        });
+        // Some users have no address, like in production.
+        assertThat(byOwner).hasSizeLessThan(20_000);
+    }
+
+    @Test
+    @DisplayName("Verify the same seed generates the same data")
+    void sameSeedSameData() {
+        AtomicInteger firstIds = new AtomicInteger(1);
+        AtomicInteger secondIds = new AtomicInteger(1);
+
+        Batch first = new SyntheticData(42, 2, HASHES).next(100, firstIds::getAndIncrement, firstIds::getAndIncrement);
+        Batch second = new SyntheticData(42, 2, HASHES).next(100, secondIds::getAndIncrement, secondIds::getAndIncrement);
+
+        assertThat(second).isEqualTo(first);
+    }
+}
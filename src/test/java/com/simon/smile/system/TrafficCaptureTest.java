@@ -0,0 +1,83 @@
+package com.simon.smile.system;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+class TrafficCaptureTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Verify captured requests are appended one JSON object per line and read back unchanged")
+    void appendRequests() throws Exception {
+        Path file = directory.resolve("captures/traffic.ndjson");
+        TrafficCapture trafficCapture = new TrafficCapture(properties(true, file), objectMapper, new SimpleMeterRegistry());
+        CapturedRequest login = new CapturedRequest(Instant.parse("2026-10-16T08:00:00.000123Z"), "POST",
+                "/api/v1/login", null, "Basic", null, null, false, 200, 95_000);
+        CapturedRequest filter = new CapturedRequest(Instant.parse("2026-10-16T08:00:00.250Z"), "POST",
+                "/api/v1/users/filter", "page=0", "Bearer", "application/json", "{\"username\":\"adm\"}", false, 200, 4_200);
+
+        trafficCapture.offer(login);
+        trafficCapture.offer(filter);
+        trafficCapture.shutdown();
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines.get(0), CapturedRequest.class)).isEqualTo(login);
+        assertThat(objectMapper.readValue(lines.get(1), CapturedRequest.class)).isEqualTo(filter);
+    }
+
+    @Test
+    @DisplayName("Verify a request failing to serialize is skipped and the following ones are still written")
+    void skipBrokenRequest() throws Exception {
+        Path file = directory.resolve("traffic.ndjson");
+        ObjectMapper failingMapper = spy(objectMapper);
+        CapturedRequest broken = new CapturedRequest(Instant.parse("2026-10-16T08:00:00Z"), "GET",
+                "/api/v1/users", null, "Bearer", null, null, false, 200, 1_000);
+        CapturedRequest request = new CapturedRequest(Instant.parse("2026-10-16T08:00:01Z"), "GET",
+                "/api/v1/users/1", null, "Bearer", null, null, false, 200, 1_000);
+        doThrow(new IllegalStateException("broken")).when(failingMapper).writeValueAsBytes(broken);
+        TrafficCapture trafficCapture = new TrafficCapture(properties(true, file), failingMapper, new SimpleMeterRegistry());
+
+        trafficCapture.offer(broken);
+        trafficCapture.offer(request);
+        trafficCapture.shutdown();
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(1);
+        assertThat(objectMapper.readValue(lines.get(0), CapturedRequest.class)).isEqualTo(request);
+    }
+
+    @Test
+    @DisplayName("Verify nothing is written when capturing is disabled")
+    void disabled() throws Exception {
+        Path file = directory.resolve("traffic.ndjson");
+        TrafficCapture trafficCapture = new TrafficCapture(properties(false, file), objectMapper, new SimpleMeterRegistry());
+
+        assertThat(trafficCapture.isEnabled()).isFalse();
+        trafficCapture.shutdown();
+        assertThat(file).doesNotExist();
+    }
+
+    private static AccessLogProperties properties(boolean enabled, Path file) {
+        return new AccessLogProperties(true, null, 1.0, DataSize.ofKilobytes(2), DataSize.ofMegabytes(1), 16, 64,
+                List.of(), null, List.of(), new AccessLogProperties.Capture(enabled, file, DataSize.ofMegabytes(1)));
+    }
+}
@@ -0,0 +1,32 @@
+package com.simon.smile.user;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RolesTest {
+
+    @Test
+    @DisplayName("Verify the mask ignores case and unknown roles")
+    void maskOfRoles() {
+        assertThat(Roles.mask("role_admin ROLE_USER")).isEqualTo(Roles.ROLE_ADMIN.getBit() | Roles.ROLE_USER.getBit());
+        assertThat(Roles.mask("ROLE_USER ROLE_CUSTOMER")).isEqualTo(Roles.ROLE_USER.getBit());
+        assertThat(Roles.mask(null)).isZero();
+    }
+
+    @Test
+    @DisplayName("Verify there is no exact mask for blank roles or unknown roles")
+    void exactMaskOfRoles() {
+        assertThat(Roles.exactMask("ROLE_ADMIN")).contains(Roles.ROLE_ADMIN.getBit());
+        assertThat(Roles.exactMask("ROLE_USER ROLE_CUSTOMER")).isEmpty();
+        assertThat(Roles.exactMask(" ")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Verify the masks containing a role are every combination with that role")
+    void masksContainingRole() {
+        assertThat(Roles.masksContaining(Roles.ROLE_USER.getBit())).containsExactly(2, 3);
+        assertThat(Roles.masksContaining(0)).containsExactly(0, 1, 2, 3);
+    }
+}
@@ -1,7 +1,13 @@
 package com.simon.smile.user;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.json.JSONObject;
+import com.simon.smile.common.Logins;
+import com.simon.smile.common.QueryCounter;
+import com.simon.smile.common.QueryCounter.StatementCounts;
+import com.simon.smile.common.QueryCounterConfiguration;
+import com.simon.smile.user.address.Address;
+import com.simon.smile.user.address.AddressRepository;
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -9,20 +15,30 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
 
 import static com.simon.smile.common.Person.ADMIN;
-import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static com.simon.smile.common.Person.INVALID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
-import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
+@Import(QueryCounterConfiguration.class)
 @DisplayName("Verify user controller integration")
 @Tag("integration")
 class UserControllerIntegrationTest {
@@ -33,6 +49,21 @@ class UserControllerIntegrationTest {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    QueryCounter queryCounter;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    AddressRepository addressRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     @Value("${api.base-url}")
     String baseUrl;
 
@@ -53,14 +84,7 @@ class UserControllerIntegrationTest {
     @Test
     @DisplayName("Verify retrieve current user information success")
     void testRetrieveCurrentUserSuccess() throws Exception {
-        String responseContent = mockMvc.perform(post(baseUrl + "/login")
-                        .with(httpBasic(ADMIN.username(), ADMIN.password()))
-                        .accept(MediaType.APPLICATION_JSON))
-                .andDo(print())
-                .andReturn()
-                .getResponse()
-                .getContentAsString();
-        String token = new JSONObject(responseContent).getJSONObject("data").getString("token");
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
 
         mockMvc.perform(get(baseUrl + "/users/current_user")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
@@ -68,6 +92,223 @@ class UserControllerIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.flag").value(true))
                 .andExpect(jsonPath("$.message").value("Retrieve current user success"))
-                .andExpect(jsonPath("$.data.username").value(ADMIN.username()));
+                .andExpect(jsonPath("$.data.id").value(1))
+                .andExpect(jsonPath("$.data.username").value(ADMIN.username()))
+                .andExpect(jsonPath("$.data.email").value(ADMIN.email()))
+                .andExpect(jsonPath("$.data.enabled").value(true))
+                .andExpect(header().string("RateLimit-Limit", "100"))
+                .andExpect(header().exists("RateLimit-Remaining"));
+    }
+
+    @Test
+    @DisplayName("Verify filter users by role matches the roles in any case")
+    void testFilterUsersByRole() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+
+        mockMvc.perform(post(baseUrl + "/users/filter")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roles\": \"role_admin\"}")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.data", Matchers.hasSize(1)))
+                .andExpect(jsonPath("$.data[0].username").value(ADMIN.username()));
+
+        mockMvc.perform(post(baseUrl + "/users/filter")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roles\": \"ROLE_USER\", \"enabled\": false}")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", Matchers.hasSize(1)))
+                .andExpect(jsonPath("$.data[0].username").value(INVALID.username()));
+    }
+
+    @Test
+    @DisplayName("Verify a request body larger than the limit is rejected before it is read")
+    void testFilterUsersErrorWhenBodyIsTooLarge() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+        byte[] body = new byte[1024 * 1024 + 1];
+
+        mockMvc.perform(post(baseUrl + "/users/filter")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.flag").value(false))
+                .andExpect(jsonPath("$.message").value("The request body is too large"));
+    }
+
+    @Test
+    @DisplayName("Verify the phases of a request are sent to an admin asking for them")
+    void testServerTimingHeader() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+
+        mockMvc.perform(get(baseUrl + "/users/1")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .header("X-Server-Timing", "true")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", Matchers.allOf(
+                        Matchers.matchesPattern("security;dur=\\d+\\.\\d{3}, handler;dur=.*"),
+                        Matchers.containsString("db;dur="),
+                        Matchers.containsString("convert;dur="))));
+
+        mockMvc.perform(get(baseUrl + "/users/current_user")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Server-Timing"));
+    }
+
+    @Test
+    @DisplayName("Verify find all users runs one select however many users there are")
+    void testFindUsersStatementCount() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+        queryCounter.reset();
+
+        mockMvc.perform(get(baseUrl + "/users")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(1, 0, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Verify filter users runs one select")
+    void testFilterUsersStatementCount() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+        queryCounter.reset();
+
+        mockMvc.perform(post(baseUrl + "/users/filter")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roles\": \"ROLE_USER\"}")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(1, 0, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Verify find user by ID runs one select and doesn't load the addresses")
+    void testFindUserByIdStatementCount() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+        AppUser appUser = saveUser("qc_find");
+        saveAddresses(appUser);
+        queryCounter.reset();
+
+        mockMvc.perform(get(baseUrl + "/users/{id}", appUser.getId())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(1, 0, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Verify the current user is answered from the token without a statement")
+    void testRetrieveCurrentUserStatementCount() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+        queryCounter.reset();
+
+        mockMvc.perform(get(baseUrl + "/users/current_user")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(0, 0, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Verify create user checks the username and email and inserts the user")
+    void testCreateUserStatementCount() throws Exception {
+        queryCounter.reset();
+
+        MvcResult result = mockMvc.perform(post(baseUrl + "/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"qc_create\", \"email\": \"qc_create@example.com\", \"password\": \"PassW0rd\"}")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(2, 1, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Verify update user loads the user once and updates it without loading the addresses")
+    void testUpdateUserStatementCount() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+        AppUser appUser = saveUser("qc_update");
+        saveAddresses(appUser);
+        queryCounter.reset();
+
+        MvcResult result = mockMvc.perform(put(baseUrl + "/users/{id}", appUser.getId())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"qc_update\", \"nickname\": \"Updated\", \"email\": \"qc_update@example.com\", \"roles\": \"ROLE_USER\", \"enabled\": true}")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(1, 0, 1, 0));
+    }
+
+    @Test
+    @DisplayName("Verify delete user loads the user and its addresses once and deletes them")
+    void testDeleteUserStatementCount() throws Exception {
+        String token = Logins.login(mockMvc, baseUrl, ADMIN);
+        AppUser appUser = saveUser("qc_delete");
+        saveAddresses(appUser);
+        queryCounter.reset();
+
+        mockMvc.perform(delete(baseUrl + "/users/{id}", appUser.getId())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        // The user, then the addresses the removal cascades to.
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(2, 0, 0, 3));
+    }
+
+    @Test
+    @DisplayName("Verify role masks missing from older rows are derived in place, ignoring unknown roles and case")
+    void testBackfillRoleMasks() {
+        AppUser both = userRepository.save(saveUser("both").setRoles("role_user ROLE_CUSTOMER  ROLE_ADMIN"));
+        AppUser unknown = userRepository.save(saveUser("unknown").setRoles("ROLE_CUSTOMER ROLE_USERS"));
+        try {
+            jdbcTemplate.update("update app_user set role_mask = null where id in (?, ?)", both.getId(), unknown.getId());
+
+            assertThat(userService.backfillRoleMasks()).isEqualTo(2);
+
+            assertThat(jdbcTemplate.queryForObject("select role_mask from app_user where id = ?", Integer.class, both.getId()))
+                    .isEqualTo(Roles.mask(both.getRoles()))
+                    .isEqualTo(3);
+            assertThat(jdbcTemplate.queryForObject("select role_mask from app_user where id = ?", Integer.class, unknown.getId()))
+                    .isZero();
+        } finally {
+            // The admin would show up in the other tests filtering by role.
+            userRepository.deleteAllById(List.of(both.getId(), unknown.getId()));
+        }
+    }
+
+    private AppUser saveUser(String username) {
+        return userRepository.save(new AppUser()
+                .setUsername(username)
+                .setEmail(username + "@example.com")
+                .setPassword("{noop}unused")
+                .setRoles(Roles.ROLE_USER.getRole())
+                .setEnabled(true));
+    }
+
+    private void saveAddresses(AppUser owner) {
+        addressRepository.saveAll(List.of(
+                new Address().setFullAddress("1 Main Street").setPhone("13012345678").setDefault(true).setOwner(owner),
+                new Address().setFullAddress("2 Main Street").setPhone("13012345678").setOwner(owner)));
     }
 }
@@ -13,23 +13,34 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.security.InvalidParameterException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static com.simon.smile.common.Constant.DEFAULT_PASSWORD;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -259,12 +270,15 @@ class UserControllerTest {
                 .setRoles("ROLE_USER")
                 .setEnabled(true);
 
-        given(userService.create(any(AppUser.class))).willReturn(appUser);
+        given(userService.createAsync(any(AppUser.class))).willReturn(CompletableFuture.completedFuture(appUser));
 
-        mockMvc.perform(post(usersUrl)
+        MvcResult mvcResult = mockMvc.perform(post(usersUrl)
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(appUser)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.flag").value(true))
                 .andExpect(jsonPath("$.message").value("Create user success"))
@@ -449,13 +463,16 @@ class UserControllerTest {
                 .setRoles("ROLE_USER")
                 .setEnabled(true);
 
-        given(userService.update(anyInt(), any(AppUser.class)))
-                .willThrow(new ObjectNotFoundException("Not found user with ID: 1"));
+        given(userService.updateAsync(anyInt(), any(AppUser.class)))
+                .willReturn(CompletableFuture.failedFuture(new ObjectNotFoundException("Not found user with ID: 1")));
 
-        mockMvc.perform(put(usersUrl + "/{id}", 1)
+        MvcResult mvcResult = mockMvc.perform(put(usersUrl + "/{id}", 1)
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(appUser)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.flag").value(false))
                 .andExpect(jsonPath("$.message").value("Not found user with ID: 1"))
@@ -494,12 +511,15 @@ class UserControllerTest {
                 .setRoles("ROLE_USER")
                 .setEnabled(true);
 
-        given(userService.update(anyInt(), any(AppUser.class))).willReturn(appUser);
+        given(userService.updateAsync(anyInt(), any(AppUser.class))).willReturn(CompletableFuture.completedFuture(appUser));
 
-        mockMvc.perform(put(usersUrl + "/{id}", 1)
+        MvcResult mvcResult = mockMvc.perform(put(usersUrl + "/{id}", 1)
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(appUser)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.flag").value(true))
                 .andExpect(jsonPath("$.message").value("Update user success"))
@@ -510,4 +530,53 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.data.enabled").value(appUser.getEnabled()))
                 .andExpect(jsonPath("$.data.password").doesNotHaveJsonPath());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Verify the current user is answered from the user snapshot of the token")
+    void testGetCurrentUserFromTokenSnapshot() throws Exception {
+        admin.setNickname("Administrator").setProfileVersion(3);
+        given(userService.isCurrent(any(UserSnapshot.class))).willReturn(true);
+
+        mockMvc.perform(get(usersUrl + "/current_user")
+                        .principal(new JwtAuthenticationToken(jwtWithSnapshot(admin)))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.id").value(admin.getId()))
+                .andExpect(jsonPath("$.data.username").value(admin.getUsername()))
+                .andExpect(jsonPath("$.data.nickname").value("Administrator"))
+                .andExpect(jsonPath("$.data.email").value(admin.getEmail()))
+                .andExpect(jsonPath("$.data.roles").value(admin.getRoles()))
+                .andExpect(jsonPath("$.data.enabled").value(true));
+
+        verify(userService, never()).findByUsername(anyString());
+    }
+
+    @Test
+    @DisplayName("Verify the current user is loaded when the token snapshot is outdated")
+    void testGetCurrentUserWhenTokenSnapshotIsOutdated() throws Exception {
+        Jwt jwt = jwtWithSnapshot(admin.setNickname("Administrator"));
+        admin.setNickname("Renamed");
+        given(userService.isCurrent(any(UserSnapshot.class))).willReturn(false);
+        given(userService.findByUsername(admin.getUsername())).willReturn(Optional.of(admin));
+
+        mockMvc.perform(get(usersUrl + "/current_user")
+                        .principal(new JwtAuthenticationToken(jwt))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.nickname").value("Renamed"));
+    }
+
+    private static Jwt jwtWithSnapshot(AppUser appUser) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(appUser.getUsername())
+                .claim(UserSnapshot.CLAIM, Map.of(
+                        "ver", Objects.requireNonNullElse(appUser.getProfileVersion(), 0),
+                        "id", appUser.getId(),
+                        "nickname", appUser.getNickname(),
+                        "email", appUser.getEmail(),
+                        "roles", appUser.getRoles(),
+                        "enabled", appUser.getEnabled()))
+                .build();
+    }
+}
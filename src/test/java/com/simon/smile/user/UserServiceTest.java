@@ -1,18 +1,30 @@
 package com.simon.smile.user;
 
+import com.simon.smile.auth.AppUserPrincipal;
 import com.simon.smile.common.exception.ObjectNotFoundException;
+import com.simon.smile.security.PasswordHashingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
@@ -30,7 +42,11 @@ class UserServiceTest {
     @Mock
     PasswordEncoder passwordEncoder;
     @Mock
+    PasswordHashingExecutor passwordHashingExecutor;
+    @Mock
     private UserRepository userRepository;
+    @Spy
+    private UserPrincipalCache userPrincipalCache = new UserPrincipalCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
     @InjectMocks
     private UserService userService;
     private List<AppUser> users;
@@ -60,6 +76,71 @@ class UserServiceTest {
         verify(userRepository, times(1)).save(any(AppUser.class));
     }
 
+    @Test
+    @DisplayName("Verify create user asynchronously hashes the password on the password hashing executor")
+    void createUserAsyncSuccess() {
+        AppUser testUser = new AppUser()
+                .setUsername("Titian")
+                .setPassword("Pass@W0rd");
+        List<Runnable> savingTasks = new ArrayList<>();
+        ReflectionTestUtils.setField(userService, "applicationTaskExecutor", (Executor) savingTasks::add);
+
+        given(passwordHashingExecutor.supplyAsync(any())).willAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.<Supplier<?>>getArgument(0).get()));
+        given(passwordEncoder.encode("Pass@W0rd")).willReturn("{bcrypt}hash");
+        given(userRepository.save(any(AppUser.class))).willAnswer(invocation -> invocation.getArgument(0));
+
+        CompletableFuture<AppUser> created = userService.createAsync(testUser);
+
+        // The user is saved on the application task executor, not on the hashing thread.
+        assertThat(created).isNotDone();
+        assertThat(savingTasks).hasSize(1);
+        savingTasks.get(0).run();
+        AppUser createdUser = created.join();
+        assertThat(createdUser.getPassword()).isEqualTo("{bcrypt}hash");
+        verify(passwordHashingExecutor, times(1)).supplyAsync(any());
+        verify(userRepository, times(1)).save(testUser);
+    }
+
+    @Test
+    @DisplayName("Verify update user asynchronously hashes a new password on the password hashing executor")
+    void updateUserAsyncHashesPassword() {
+        AppUser changes = new AppUser()
+                .setUsername("admin")
+                .setPassword("Pass@W0rd");
+        List<Runnable> savingTasks = new ArrayList<>();
+        ReflectionTestUtils.setField(userService, "applicationTaskExecutor", (Executor) savingTasks::add);
+
+        given(passwordHashingExecutor.supplyAsync(any())).willAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.<Supplier<?>>getArgument(0).get()));
+        given(passwordEncoder.encode("Pass@W0rd")).willReturn("{bcrypt}hash");
+        given(userRepository.findById(1)).willReturn(Optional.of(admin));
+        given(userRepository.save(any(AppUser.class))).willAnswer(invocation -> invocation.getArgument(0));
+
+        CompletableFuture<AppUser> updated = userService.updateAsync(1, changes);
+
+        // The user is saved on the application task executor, not on the hashing thread.
+        assertThat(updated).isNotDone();
+        assertThat(savingTasks).hasSize(1);
+        savingTasks.get(0).run();
+        assertThat(updated.join().getPassword()).isEqualTo("{bcrypt}hash");
+        verify(passwordHashingExecutor, times(1)).supplyAsync(any());
+        verify(userPrincipalCache, times(1)).evict(1);
+    }
+
+    @Test
+    @DisplayName("Verify update user without a password keeps the current one and doesn't hash")
+    void updateUserAsyncKeepsPassword() {
+        admin.setPassword("{bcrypt}current");
+        given(userRepository.findById(1)).willReturn(Optional.of(admin));
+        given(userRepository.save(any(AppUser.class))).willAnswer(invocation -> invocation.getArgument(0));
+
+        AppUser updated = userService.updateAsync(1, new AppUser().setUsername("admin")).join();
+
+        assertThat(updated.getPassword()).isEqualTo("{bcrypt}current");
+        verify(passwordHashingExecutor, times(0)).supplyAsync(any());
+    }
+
     @Test
     @DisplayName("Verify delete user error when ID not exist")
     void deleteUserErrorWhenIdNotExist() {
@@ -108,15 +189,15 @@ class UserServiceTest {
 
         // filter by username
         appUser.setUsername("ad");
-        given(userRepository.findAll(any(), any(Sort.class))).willReturn(List.of(admin));
+        given(userRepository.findAll(any(Specification.class), any(Sort.class))).willReturn(List.of(admin));
         List<AppUser> filteredUsers = userService.filter(appUser);
         assertThat(filteredUsers).hasSize(1);
         assertThat(filteredUsers.get(0).getUsername()).isEqualTo(admin.getUsername());
-        verify(userRepository, times(1)).findAll(any(), any(Sort.class));
+        verify(userRepository, times(1)).findAll(any(Specification.class), any(Sort.class));
 
         // filter by email
         appUser.setUsername(null).setEmail("@example");
-        given(userRepository.findAll(any(), any(Sort.class))).willReturn(List.of(admin, inactiveUser));
+        given(userRepository.findAll(any(Specification.class), any(Sort.class))).willReturn(List.of(admin, inactiveUser));
         filteredUsers = userService.filter(appUser);
         assertThat(filteredUsers).hasSize(2);
         assertThat(filteredUsers.get(0).getUsername()).isEqualTo(admin.getUsername());
@@ -124,7 +205,7 @@ class UserServiceTest {
 
         // filter by enabled
         appUser.setEmail(null).setEnabled(true);
-        given(userRepository.findAll(any(), any(Sort.class))).willReturn(List.of(admin, normalUser));
+        given(userRepository.findAll(any(Specification.class), any(Sort.class))).willReturn(List.of(admin, normalUser));
         filteredUsers = userService.filter(appUser);
         assertThat(filteredUsers).hasSize(2);
         assertThat(filteredUsers.get(0).getUsername()).isEqualTo(admin.getUsername());
@@ -132,7 +213,7 @@ class UserServiceTest {
 
         // filter by roles
         appUser = new AppUser().setRoles(Roles.ROLE_USER.getRole());
-        given(userRepository.findAll(any(), any(Sort.class))).willReturn(List.of(normalUser, inactiveUser));
+        given(userRepository.findAll(any(Specification.class), any(Sort.class))).willReturn(List.of(normalUser, inactiveUser));
         filteredUsers = userService.filter(appUser);
         assertThat(filteredUsers).hasSize(2);
         assertThat(filteredUsers.get(0).getUsername()).isEqualTo(normalUser.getUsername());
@@ -140,14 +221,14 @@ class UserServiceTest {
 
         // filter by enabled and roles
         appUser = new AppUser().setEnabled(true).setRoles(Roles.ROLE_USER.getRole());
-        given(userRepository.findAll(any(), any(Sort.class))).willReturn(List.of(normalUser));
+        given(userRepository.findAll(any(Specification.class), any(Sort.class))).willReturn(List.of(normalUser));
         filteredUsers = userService.filter(appUser);
         assertThat(filteredUsers).hasSize(1);
         assertThat(filteredUsers.get(0).getUsername()).isEqualTo(normalUser.getUsername());
 
         // filter by enabled and roles
         appUser = new AppUser().setUsername("words").setEnabled(false).setRoles(Roles.ROLE_ADMIN.getRole());
-        given(userRepository.findAll(any(), any(Sort.class))).willReturn(List.of());
+        given(userRepository.findAll(any(Specification.class), any(Sort.class))).willReturn(List.of());
         filteredUsers = userService.filter(appUser);
         assertThat(filteredUsers).isEmpty();
     }
@@ -270,6 +351,96 @@ class UserServiceTest {
         users = List.of(admin, normalUser, inactiveUser);
     }
 
+    @Test
+    @DisplayName("Verify load user by username or email queries the database once and then hits the cache")
+    void loadUserByUsernameIsCached() {
+        given(userRepository.findByUsernameOrEmailIgnoreCase("admin@example.com")).willReturn(List.of(admin));
+
+        AppUserPrincipal first = (AppUserPrincipal) userService.loadUserByUsername("admin@example.com");
+        AppUserPrincipal second = (AppUserPrincipal) userService.loadUserByUsername("admin@example.com");
+
+        // Every lookup gets a copy, the cached user can't be changed through it.
+        assertThat(first.appUser()).isEqualTo(admin).isNotSameAs(admin);
+        assertThat(second.appUser()).isEqualTo(admin).isNotSameAs(first.appUser());
+        verify(userRepository, times(1)).findByUsernameOrEmailIgnoreCase("admin@example.com");
+    }
+
+    @Test
+    @DisplayName("Verify the cached user is a snapshot, changing the loaded entity doesn't change it")
+    void loadUserByUsernameCachesSnapshot() {
+        admin.setPassword("hash");
+        given(userRepository.findByUsernameOrEmailIgnoreCase("admin")).willReturn(List.of(admin));
+        userService.loadUserByUsername("admin");
+
+        admin.setPassword("changed").setEnabled(false);
+        AppUserPrincipal cached = (AppUserPrincipal) userService.loadUserByUsername("admin");
+
+        assertThat(cached.appUser().getPassword()).isEqualTo("hash");
+        assertThat(cached.appUser().getEnabled()).isTrue();
+        verify(userRepository, times(1)).findByUsernameOrEmailIgnoreCase("admin");
+    }
+
+    @Test
+    @DisplayName("Verify evicting a user reloads it once, whether by username or email, and serves both from that")
+    void evictByIdCoversEveryLookup() {
+        given(userRepository.findByUsernameOrEmailIgnoreCase("admin")).willReturn(List.of(admin));
+        given(userRepository.findByUsernameOrEmailIgnoreCase("admin@example.com")).willReturn(List.of(admin));
+        userService.loadUserByUsername("admin");
+        userService.loadUserByUsername("admin@example.com");
+
+        userPrincipalCache.evict(1);
+        admin.setEnabled(false);
+        AppUserPrincipal byEmail = (AppUserPrincipal) userService.loadUserByUsername("admin@example.com");
+        AppUserPrincipal byUsername = (AppUserPrincipal) userService.loadUserByUsername("admin");
+
+        assertThat(byEmail.appUser().getEnabled()).isFalse();
+        assertThat(byUsername.appUser().getEnabled()).isFalse();
+        verify(userRepository, times(2)).findByUsernameOrEmailIgnoreCase("admin@example.com");
+        verify(userRepository, times(1)).findByUsernameOrEmailIgnoreCase("admin");
+    }
+
+    @Test
+    @DisplayName("Verify load user by username error when neither username nor email exist")
+    void loadUserByUsernameErrorWhenNotExist() {
+        given(userRepository.findByUsernameOrEmailIgnoreCase(anyString())).willReturn(List.of());
+
+        Throwable throwable = catchThrowable(() -> userService.loadUserByUsername("unknown"));
+
+        assertThat(throwable).isInstanceOf(UsernameNotFoundException.class)
+                .hasMessage("No user found with username or email: unknown");
+    }
+
+    @Test
+    @DisplayName("Verify update user evicts the cached principal")
+    void updateUserEvictsCachedPrincipal() {
+        given(userRepository.findByUsernameOrEmailIgnoreCase("admin")).willReturn(List.of(admin));
+        given(userRepository.findById(1)).willReturn(Optional.of(admin));
+        given(userRepository.save(any(AppUser.class))).willAnswer(invocation -> invocation.getArgument(0));
+        userService.loadUserByUsername("admin");
+
+        userService.update(1, new AppUser().setUsername("admin").setEnabled(false));
+        userService.loadUserByUsername("admin");
+
+        verify(userPrincipalCache, times(1)).evict(1);
+        verify(userRepository, times(2)).findByUsernameOrEmailIgnoreCase("admin");
+    }
+
+    @Test
+    @DisplayName("Verify update user bumps the profile version and outdates token snapshots")
+    void updateUserBumpsProfileVersion() {
+        ReflectionTestUtils.setField(userService, "checkSnapshotVersion", true);
+        UserSnapshot snapshot = UserSnapshot.of(admin.setProfileVersion(2));
+        given(userRepository.findById(1)).willReturn(Optional.of(admin));
+        given(userRepository.save(any(AppUser.class))).willAnswer(invocation -> invocation.getArgument(0));
+        given(userRepository.findProfileVersionById(1)).willReturn(Optional.of(2), Optional.of(3));
+
+        assertThat(userService.isCurrent(snapshot)).isTrue();
+        AppUser updatedUser = userService.update(1, new AppUser().setUsername("admin").setEnabled(false));
+
+        assertThat(updatedUser.getProfileVersion()).isEqualTo(3);
+        assertThat(userService.isCurrent(snapshot)).isFalse();
+    }
+
     @Test
     @DisplayName("Verify update user error when ID not exist")
     void updateUserErrorWhenIdNotExist() {
@@ -0,0 +1,145 @@
+package com.simon.smile.user.address;
+
+import com.simon.smile.common.Logins;
+import com.simon.smile.common.QueryCounter;
+import com.simon.smile.common.QueryCounter.StatementCounts;
+import com.simon.smile.common.QueryCounterConfiguration;
+import com.simon.smile.user.AppUser;
+import com.simon.smile.user.Roles;
+import com.simon.smile.user.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.simon.smile.common.Person.ADMIN;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(QueryCounterConfiguration.class)
+@DisplayName("Verify the statements run by the address endpoints")
+@Tag("integration")
+class AddressControllerIntegrationTest {
+
+    private static final AtomicInteger USER_NUMBER = new AtomicInteger();
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    QueryCounter queryCounter;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    AddressRepository addressRepository;
+
+    @Value("${api.base-url}")
+    String baseUrl;
+
+    private String token;
+
+    private AppUser owner;
+
+    private List<Address> addresses;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        token = Logins.login(mockMvc, baseUrl, ADMIN);
+        String username = "address_qc" + USER_NUMBER.incrementAndGet();
+        owner = userRepository.save(new AppUser()
+                .setUsername(username)
+                .setEmail(username + "@example.com")
+                .setPassword("{noop}unused")
+                .setRoles(Roles.ROLE_USER.getRole())
+                .setEnabled(true));
+        addresses = addressRepository.saveAll(List.of(
+                new Address().setFullAddress("1 Main Street").setPhone("13012345678").setDefault(true).setOwner(owner),
+                new Address().setFullAddress("2 Main Street").setPhone("13012345678").setOwner(owner),
+                new Address().setFullAddress("3 Main Street").setPhone("13012345678").setOwner(owner)));
+        queryCounter.reset();
+    }
+
+    @Test
+    @DisplayName("Verify find address by ID loads the address and its owner in one select")
+    void testFindAddressByIdStatementCount() throws Exception {
+        mockMvc.perform(get(baseUrl + "/users/address/{id}", addresses.get(0).getId())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(1, 0, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Verify find addresses by owner runs one select for the addresses and one for their owner")
+    void testFindAddressesByUserIdStatementCount() throws Exception {
+        mockMvc.perform(get(baseUrl + "/users/{userId}/address", owner.getId())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(3)));
+
+        // The owner is loaded once, not once per address.
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(2, 0, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Verify create address loads the owner and inserts the address")
+    void testCreateAddressStatementCount() throws Exception {
+        mockMvc.perform(post(baseUrl + "/users/{userId}/address", owner.getId())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fullAddress\": \"4 Main Street\", \"phone\": \"13012345678\"}")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(1, 1, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Verify update address loads the owner and the address and updates it")
+    void testUpdateAddressStatementCount() throws Exception {
+        Integer addressId = addresses.get(1).getId();
+
+        mockMvc.perform(put(baseUrl + "/users/{userId}/address/{addressId}", owner.getId(), addressId)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\": " + addressId + ", \"fullAddress\": \"2 Side Street\", \"phone\": \"13012345678\"}")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(2, 0, 1, 0));
+    }
+
+    @Test
+    @DisplayName("Verify delete address loads the address once and deletes it")
+    void testDeleteAddressStatementCount() throws Exception {
+        mockMvc.perform(delete(baseUrl + "/users/address/{addressId}", addresses.get(2).getId())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.counts()).isEqualTo(new StatementCounts(1, 0, 0, 1));
+    }
+}